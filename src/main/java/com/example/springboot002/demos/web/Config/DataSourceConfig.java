@@ -0,0 +1,28 @@
+package com.example.springboot002.demos.web.Config;
+
+import com.example.springboot002.demos.web.Service.ConnectionPoolMetrics;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class DataSourceConfig {
+
+    /**
+     * 连接池启动前注册指标采集（连接池在第一次获取连接时才启动）
+     */
+    @Bean
+    public static BeanPostProcessor connectionPoolMetricsPostProcessor(ObjectProvider<ConnectionPoolMetrics> metrics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource) {
+                    ((HikariDataSource) bean).setMetricsTrackerFactory(metrics.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
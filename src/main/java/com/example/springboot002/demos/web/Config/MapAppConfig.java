@@ -1,22 +1,89 @@
 package com.example.springboot002.demos.web.Config;
 
-import org.springframework.boot.web.client.RestTemplateBuilder;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 import java.time.Duration;
 
 @Configuration
 public class MapAppConfig {
+
+    /**
+     * 地图API连接池
+     * Reactor Netty 按远端地址分别建池，maxConnections 即为单个主机的连接上限
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider mapConnectionProvider(
+            @Value("${map.http.max-connections:50}") int maxConnections,
+            @Value("${map.http.pending-acquire-max:500}") int pendingAcquireMax,
+            @Value("${map.http.pending-acquire-timeout-ms:5000}") long pendingAcquireTimeoutMs,
+            @Value("${map.http.max-idle-seconds:30}") long maxIdleSeconds) {
+        return ConnectionProvider.builder("map-api")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMax)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofSeconds(maxIdleSeconds))
+                .maxLifeTime(Duration.ofMinutes(5))
+                .evictInBackground(Duration.ofSeconds(30))
+                .build();
+    }
+
     /**
-     * RestTemplate Bean配置
+     * 地图API非阻塞客户端（keep-alive，共享连接池）
      */
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
+    public WebClient mapWebClient(WebClient.Builder builder,
+                                  ConnectionProvider mapConnectionProvider,
+                                  @Value("${map.http.connect-timeout-ms:10000}") int connectTimeoutMs,
+                                  @Value("${map.http.response-timeout-ms:30000}") long responseTimeoutMs) {
+        HttpClient httpClient = HttpClient.create(mapConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .keepAlive(true);
+
         return builder
-                .setConnectTimeout(Duration.ofSeconds(10))
-                .setReadTimeout(Duration.ofSeconds(30))
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .build();
     }
+
+    /**
+     * 地图服务后台任务线程池（缓存写入、坐标吸附等地图响应的后续处理）
+     * 任务由 Netty 事件循环或定时线程提交，不能拒绝也不能在提交线程执行（会阻塞 I/O 线程），
+     * 因此使用无界队列；排队数量不超过在途地图请求数，受连接池上限和等待队列约束。
+     */
+    @Bean(name = "mapApiExecutor")
+    public ThreadPoolTaskExecutor mapApiExecutor(@Value("${map.executor.pool-size:8}") int poolSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setThreadNamePrefix("map-api-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 通勤重算任务的工作线程池
+     */
+    @Bean(name = "commuteJobExecutor")
+    public ThreadPoolTaskExecutor commuteJobExecutor(@Value("${commute.recompute.workers:4}") int workers) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        // 领取数量不超过空闲线程数，队列只需容纳少量提交间隙
+        executor.setQueueCapacity(workers);
+        executor.setThreadNamePrefix("commute-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
 }
@@ -0,0 +1,87 @@
+package com.example.springboot002.demos.web.Controller;
+
+import com.example.springboot002.demos.web.Service.ConnectionPoolMetrics;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.AddressPointIndex;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.CommuteCalibrationService;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.CommuteHeatmapService;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.CommuteWriteBuffer;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.PeakRouteRefreshService;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.WorkAnalysisCacheService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 通勤数据管理接口（需要 ADMIN 角色）
+ */
+@RestController
+@RequestMapping("/api/admin/commute")
+@RequiredArgsConstructor
+public class CommuteAdminController {
+
+    private final CommuteWriteBuffer commuteWriteBuffer;
+    private final WorkAnalysisCacheService workAnalysisCacheService;
+    private final ConnectionPoolMetrics connectionPoolMetrics;
+    private final PeakRouteRefreshService peakRouteRefreshService;
+    private final CommuteCalibrationService commuteCalibrationService;
+    private final CommuteHeatmapService commuteHeatmapService;
+    private final AddressPointIndex addressPointIndex;
+
+    /**
+     * 通勤打卡写缓冲统计
+     */
+    @GetMapping("/stats/write-buffer")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getWriteBufferStats() {
+        return ResponseEntity.ok(ApiResponse.success(commuteWriteBuffer.stats()));
+    }
+
+    /**
+     * 工作分析读缓存统计（命中率、数据新鲜度）
+     */
+    @GetMapping("/stats/analysis-cache")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getAnalysisCacheStats() {
+        return ResponseEntity.ok(ApiResponse.success(workAnalysisCacheService.stats()));
+    }
+
+    /**
+     * 数据库连接池统计（获取连接等待时间分布、超时次数、连接占用时长）
+     */
+    @GetMapping("/stats/db-pool")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getDbPoolStats() {
+        return ResponseEntity.ok(ApiResponse.success(connectionPoolMetrics.stats()));
+    }
+
+    /**
+     * 高峰路线刷新统计
+     */
+    @GetMapping("/stats/peak-refresh")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getPeakRefreshStats() {
+        return ResponseEntity.ok(ApiResponse.success(peakRouteRefreshService.stats()));
+    }
+
+    /**
+     * 通勤时长校准模型统计（系数数量、样本数、各出行方式系数）
+     */
+    @GetMapping("/stats/calibration")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getCalibrationStats() {
+        return ResponseEntity.ok(ApiResponse.success(commuteCalibrationService.stats()));
+    }
+
+    /**
+     * 地址空间索引统计（已知地址数、附近匹配命中率）
+     */
+    @GetMapping("/stats/address-index")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getAddressIndexStats() {
+        return ResponseEntity.ok(ApiResponse.success(addressPointIndex.stats()));
+    }
+
+    /**
+     * 按现有工作分析和通勤统计重建热力图格子
+     */
+    @PostMapping("/heatmap/rebuild")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> rebuildHeatmap() {
+        return ResponseEntity.ok(ApiResponse.success(commuteHeatmapService.rebuild()));
+    }
+}
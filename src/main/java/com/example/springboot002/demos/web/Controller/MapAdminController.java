@@ -0,0 +1,94 @@
+package com.example.springboot002.demos.web.Controller;
+
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.GeocodeCacheService;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.MapApiService;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.MapCircuitBreaker;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.MapQuotaGovernor;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.RouteCacheService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 地图服务管理接口（需要 ADMIN 角色）
+ */
+@RestController
+@RequestMapping("/api/admin/map")
+@RequiredArgsConstructor
+public class MapAdminController {
+
+    private final GeocodeCacheService geocodeCacheService;
+    private final RouteCacheService routeCacheService;
+    private final MapApiService mapApiService;
+    private final MapQuotaGovernor mapQuotaGovernor;
+    private final MapCircuitBreaker mapCircuitBreaker;
+
+    /**
+     * 地理编码缓存统计
+     */
+    @GetMapping("/cache/geocode/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getGeocodeCacheStats() {
+        return ResponseEntity.ok(ApiResponse.success(geocodeCacheService.stats()));
+    }
+
+    /**
+     * 删除指定地址的地理编码缓存
+     */
+    @DeleteMapping("/cache/geocode")
+    public ResponseEntity<ApiResponse<Void>> evictGeocode(@RequestParam String address) {
+        geocodeCacheService.evict(address);
+        return ResponseEntity.ok(ApiResponse.success(null, "缓存已删除"));
+    }
+
+    /**
+     * 清空地理编码缓存
+     */
+    @DeleteMapping("/cache/geocode/all")
+    public ResponseEntity<ApiResponse<Long>> evictAllGeocode() {
+        long deleted = geocodeCacheService.evictAll();
+        return ResponseEntity.ok(ApiResponse.success(deleted, "缓存已清空"));
+    }
+
+    /**
+     * 路线缓存统计
+     */
+    @GetMapping("/cache/route/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getRouteCacheStats() {
+        return ResponseEntity.ok(ApiResponse.success(routeCacheService.stats()));
+    }
+
+    /**
+     * 清空路线缓存
+     */
+    @DeleteMapping("/cache/route/all")
+    public ResponseEntity<ApiResponse<Long>> evictAllRoutes() {
+        long deleted = routeCacheService.evictAll();
+        return ResponseEntity.ok(ApiResponse.success(deleted, "缓存已清空"));
+    }
+
+    /**
+     * 并发请求合并统计
+     */
+    @GetMapping("/stats/coalescing")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getCoalescingStats() {
+        return ResponseEntity.ok(ApiResponse.success(mapApiService.coalescingStats()));
+    }
+
+    /**
+     * 地图API配额使用统计
+     */
+    @GetMapping("/stats/quota")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getQuotaStats() {
+        return ResponseEntity.ok(ApiResponse.success(mapQuotaGovernor.stats()));
+    }
+
+    /**
+     * 熔断器状态
+     */
+    @GetMapping("/stats/circuit")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getCircuitStats() {
+        return ResponseEntity.ok(ApiResponse.success(mapCircuitBreaker.stats()));
+    }
+}
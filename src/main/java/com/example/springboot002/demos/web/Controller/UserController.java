@@ -2,19 +2,24 @@ package com.example.springboot002.demos.web.Controller;
 
 import com.example.springboot002.demos.web.DTO.Response.Response;
 import com.example.springboot002.demos.web.Entity.User;
+import com.example.springboot002.demos.web.Service.ResourceVersionService;
 import com.example.springboot002.demos.web.Service.UserService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/users") // 添加基础路径映射
@@ -22,20 +27,33 @@ public class UserController {
 
     @Autowired
     private UserService userService;
+
+    @Autowired
+    private ResourceVersionService resourceVersionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
     //根据邮箱查询用户信息
     @Operation(summary = "根据邮箱查找用户", description = "根据邮箱查找用户")
     @GetMapping("/email/{email}")
-    public ResponseEntity<?> getUserByEmail(@Parameter(description = "邮箱", required = true) @PathVariable String email) {
-        User user = userService.findByEmail(email);
-        if (user == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new Response("NOT_FOUND", "邮箱不存在"));
-        }
-        return ResponseEntity.ok(user);
+    public ResponseEntity<?> getUserByEmail(@Parameter(description = "邮箱", required = true) @PathVariable String email,
+                                            WebRequest webRequest) {
+        return conditionalUser(UserService.emailVersionKey(email), webRequest,
+                () -> userService.findByEmail(email), "邮箱不存在");
     }
     //获取用户信息（通过用户ID）
     @Operation(summary = "根据用户ID获取用户信息", description = "根据用户ID获取用户信息")
     @GetMapping("/ID/{userID}")
-    public ResponseEntity<?> getUserByID(@Parameter(description = "ID", required = true) @PathVariable UUID userID) {
+    public ResponseEntity<?> getUserByID(@Parameter(description = "ID", required = true) @PathVariable UUID userID,
+                                         WebRequest webRequest) {
+        // 版本表命中且与客户端 ETag 一致时直接返回 304，不查询数据库
+        String cachedETag = resourceVersionService.get(UserService.versionKey(userID));
+        if (cachedETag != null && webRequest.checkNotModified(cachedETag)) {
+            return null;
+        }
+
+        // 查询前取失效代数，查询期间用户被更新则不记录版本
+        String generation = resourceVersionService.generation(UserService.versionKey(userID));
         User user = userService.findById(userID);
         if (user == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new Response("NOT_FOUND", "ID不存在"));
@@ -48,7 +66,15 @@ public class UserController {
         userInfo.setAvatarUrl(user.getAvatarUrl());
         userInfo.setAccountType(user.getAccountType());
 
-        return ResponseEntity.ok(userInfo);
+        String etag = ResourceVersionService.etag(null, user.getUpdatedAt());
+        resourceVersionService.put(UserService.versionKey(userID), etag, generation);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .lastModified(ResourceVersionService.toEpochMilli(user.getUpdatedAt()))
+                .body(userInfo);
 
     }
     //更新用户基础信息
@@ -81,28 +107,69 @@ public class UserController {
     @GetMapping("/phone/{phone}")
     public ResponseEntity<?> getUserByPhone(
             @Parameter(description = "用户名", required = true)
-            @PathVariable String phone) {
-        User user = userService.findByPhone(phone);
-        if (user == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new Response("NOT_FOUND", "电话不存在"));
-        }
-        return ResponseEntity.ok(user);
+            @PathVariable String phone,
+            WebRequest webRequest) {
+        return conditionalUser(UserService.phoneVersionKey(phone), webRequest,
+                () -> userService.findByPhone(phone), "电话不存在");
     }
     //获取所有活跃用户
     @Operation(summary = "获取所有活跃用户", description = "获取所有活跃用户")
     @GetMapping("/active")
-    public ResponseEntity<List<?>> getActiveUsers() {
+    public ResponseEntity<List<?>> getActiveUsers(WebRequest webRequest) {
         List<?> users = userService.findActiveUsers();
-        return ResponseEntity.ok(users);
+        return withContentETag(users, webRequest);
     }
     //统计活跃用户数量
     @Operation(summary = "统计活跃用户数量", description = "统计系统中活跃用户的数量")
     @GetMapping("/count/active")
-    public ResponseEntity<Map<String, Long>> countActiveUsers() {
+    public ResponseEntity<Map<String, Long>> countActiveUsers(WebRequest webRequest) {
         Long count = userService.countActiveUsers();
         Map<String, Long> response = new HashMap<>();
         response.put("count", count);
-        return ResponseEntity.ok(response);
+        return withContentETag(response, webRequest);
+    }
+
+    /**
+     * 按邮箱/电话查询完整用户信息的条件 GET，版本表命中且与客户端 ETag 一致时直接返回 304
+     */
+    private ResponseEntity<?> conditionalUser(String versionKey, WebRequest webRequest,
+                                              Supplier<User> loader, String notFoundMessage) {
+        String cachedETag = resourceVersionService.get(versionKey);
+        if (cachedETag != null && webRequest.checkNotModified(cachedETag)) {
+            return null;
+        }
+
+        String generation = resourceVersionService.generation(versionKey);
+        User user = loader.get();
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new Response("NOT_FOUND", notFoundMessage));
+        }
+
+        String etag = ResourceVersionService.etag(null, user.getUpdatedAt());
+        resourceVersionService.put(versionKey, etag, generation);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .lastModified(ResourceVersionService.toEpochMilli(user.getUpdatedAt()))
+                .body(user);
+    }
+
+    /**
+     * 列表/计数接口按响应内容生成弱 ETag；成员随注册、登录等变化，不记录版本表，每次仍需查询
+     */
+    private <T> ResponseEntity<T> withContentETag(T body, WebRequest webRequest) {
+        String etag;
+        try {
+            etag = ResourceVersionService.weakEtag(objectMapper.writeValueAsBytes(body));
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.ok(body);
+        }
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(body);
     }
 
 }
@@ -1,18 +1,37 @@
 package com.example.springboot002.demos.web.Controller;
 
 import com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest.ActualCommuteRequest;
+import com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest.BulkActualCommuteRequest;
 import com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest.CommuteCalculationRequest;
+import com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest.CommuteMatrixRequest;
+import com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest.ScenarioRequest;
 import com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest.WorkAnalysisRequest;
 import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteCalculationResponse;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteJobStatusResponse;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteRecordPageResponse;
 import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteStatisticsResponse;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.HeatmapResponse;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.PeakSlotResponse;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.ScenarioResponse;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.TimeValueResponse;
 import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.WorkAnalysisResponse;
+import com.example.springboot002.demos.web.Service.ResourceVersionService;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.CommuteHeatmapService;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.CommuteMatrixService;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.CommuteRecomputeService;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.CommuteWriteBuffer;
+import com.example.springboot002.demos.web.Service.WorkAnalysisService.ScenarioSimulationService;
 import com.example.springboot002.demos.web.Service.WorkAnalysisService.WorkAnalysisService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/work-analysis")
@@ -20,6 +39,11 @@ import javax.validation.Valid;
 public class WorkAnalysisController {
 
     private final WorkAnalysisService workAnalysisService;
+    private final CommuteMatrixService commuteMatrixService;
+    private final CommuteWriteBuffer commuteWriteBuffer;
+    private final CommuteRecomputeService commuteRecomputeService;
+    private final ScenarioSimulationService scenarioSimulationService;
+    private final CommuteHeatmapService commuteHeatmapService;
 
     /**
      * 创建工作分析记录
@@ -32,7 +56,7 @@ public class WorkAnalysisController {
     }
 
     /**
-     * 更新工作分析记录
+     * 更新工作分析记录（地址或通勤方式变更时通勤信息在后台重算，commuteStatus 为 PENDING）
      */
     @PutMapping("/{id}")
     public ResponseEntity<ApiResponse<WorkAnalysisResponse>> updateWorkAnalysis(
@@ -43,22 +67,65 @@ public class WorkAnalysisController {
     }
 
     /**
-     * 获取工作分析记录
+     * 获取工作分析记录（支持 If-None-Match / If-Modified-Since 条件请求）
      */
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<WorkAnalysisResponse>> getWorkAnalysis(
-            @PathVariable String id) {
+            @PathVariable String id, WebRequest webRequest) {
+        // 版本表命中且与客户端 ETag 一致时直接返回 304，不读取数据
+        String etag = workAnalysisService.getWorkAnalysisETag(id);
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
         WorkAnalysisResponse response = workAnalysisService.getWorkAnalysis(id);
-        return ResponseEntity.ok(ApiResponse.success(response));
+        return conditionalOk(response);
     }
 
     /**
-     * 根据用户ID获取工作分析记录
+     * 根据用户ID获取工作分析记录（支持条件请求）
      */
     @GetMapping("/user/{userId}")
     public ResponseEntity<ApiResponse<WorkAnalysisResponse>> getWorkAnalysisByUserId(
-            @PathVariable String userId) {
+            @PathVariable String userId, WebRequest webRequest) {
+        String etag = workAnalysisService.getWorkAnalysisETagByUserId(userId);
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            return null;
+        }
         WorkAnalysisResponse response = workAnalysisService.getWorkAnalysisByUserId(userId);
+        return conditionalOk(response);
+    }
+
+    /**
+     * 获取时间价值（实际时薪、通勤占用比例、每年通勤小时数），支持 If-None-Match
+     */
+    @GetMapping("/{id}/time-value")
+    public ResponseEntity<ApiResponse<TimeValueResponse>> getTimeValue(
+            @PathVariable String id, WebRequest webRequest) {
+        TimeValueResponse response = workAnalysisService.getTimeValue(id);
+        String etag = ResourceVersionService.etag(response.getGeneration(), response.getComputedAt());
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(ApiResponse.success(response));
+    }
+
+    /**
+     * 假设场景模拟：在该工作分析基础上覆盖地址、通勤方式、薪资等，并行计算并排序，不保存结果
+     */
+    @PostMapping("/{id}/scenarios")
+    public ResponseEntity<ApiResponse<ScenarioResponse>> simulateScenarios(
+            @PathVariable String id,
+            @Valid @RequestBody ScenarioRequest request) {
+        ScenarioResponse response = scenarioSimulationService.simulate(id, request);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
+    /**
+     * 查询通勤重算状态（更新后轮询，READY 表示已完成）
+     */
+    @GetMapping("/{id}/commute/status")
+    public ResponseEntity<ApiResponse<CommuteJobStatusResponse>> getCommuteStatus(@PathVariable String id) {
+        CommuteJobStatusResponse response = commuteRecomputeService.getStatus(id);
         return ResponseEntity.ok(ApiResponse.success(response));
     }
 
@@ -72,6 +139,14 @@ public class WorkAnalysisController {
         return ResponseEntity.ok(ApiResponse.success(response));
     }
 
+    /**
+     * 批量计算通勤矩阵（SSE 流式返回，每完成一个单元格推送一次）
+     */
+    @PostMapping(value = "/commute/matrix", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter calculateCommuteMatrix(@Valid @RequestBody CommuteMatrixRequest request) {
+        return commuteMatrixService.streamMatrix(request);
+    }
+
     /**
      * 记录实际通勤时间
      */
@@ -82,6 +157,25 @@ public class WorkAnalysisController {
         return ResponseEntity.ok(ApiResponse.success(null, "通勤记录保存成功"));
     }
 
+    /**
+     * 通勤打卡（高频上报，写入缓冲后异步落库，返回 202）
+     */
+    @PostMapping("/commute/check-in")
+    public ResponseEntity<ApiResponse<Void>> checkIn(@Valid @RequestBody ActualCommuteRequest request) {
+        commuteWriteBuffer.submit(request);
+        return ResponseEntity.accepted().body(ApiResponse.success(null, "通勤打卡已接收"));
+    }
+
+    /**
+     * 批量上传实际通勤记录（离线记录）
+     */
+    @PostMapping("/commute/record/bulk")
+    public ResponseEntity<ApiResponse<Integer>> recordActualCommutes(
+            @Valid @RequestBody BulkActualCommuteRequest request) {
+        int saved = workAnalysisService.recordActualCommutes(request.getRecords());
+        return ResponseEntity.ok(ApiResponse.success(saved, "通勤记录保存成功"));
+    }
+
     /**
      * 获取通勤统计
      */
@@ -91,6 +185,51 @@ public class WorkAnalysisController {
         CommuteStatisticsResponse response = workAnalysisService.getCommuteStatistics(id);
         return ResponseEntity.ok(ApiResponse.success(response));
     }
+
+    /**
+     * 获取通勤路线高峰时段实测时长
+     */
+    @GetMapping("/{id}/commute/peak-slots")
+    public ResponseEntity<ApiResponse<List<PeakSlotResponse>>> getPeakSlots(@PathVariable String id) {
+        List<PeakSlotResponse> response = workAnalysisService.getPeakSlots(id);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
+    /**
+     * 获取范围内的通勤热力图格子
+     */
+    @GetMapping("/heatmap")
+    public ResponseEntity<ApiResponse<HeatmapResponse>> getHeatmap(
+            @RequestParam double minLng,
+            @RequestParam double minLat,
+            @RequestParam double maxLng,
+            @RequestParam double maxLat,
+            @RequestParam(required = false) Integer precision) {
+        HeatmapResponse response = commuteHeatmapService.getTiles(minLng, minLat, maxLng, maxLat, precision);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
+    /**
+     * 分页获取通勤记录
+     */
+    @GetMapping("/{id}/commute/records")
+    public ResponseEntity<ApiResponse<CommuteRecordPageResponse>> getCommuteRecords(
+            @PathVariable String id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        CommuteRecordPageResponse response = workAnalysisService.getCommuteRecords(id, cursor, size);
+        return ResponseEntity.ok(ApiResponse.success(response));
+    }
+
+    /**
+     * 带 ETag/Last-Modified 的响应，客户端条件与之匹配时由框架返回 304
+     */
+    private ResponseEntity<ApiResponse<WorkAnalysisResponse>> conditionalOk(WorkAnalysisResponse response) {
+        return ResponseEntity.ok()
+                .eTag(ResourceVersionService.etag(response.getVersion(), response.getUpdatedAt()))
+                .lastModified(ResourceVersionService.toEpochMilli(response.getUpdatedAt()))
+                .body(ApiResponse.success(response));
+    }
 }
 
 // 统一响应格式
@@ -5,6 +5,9 @@ import lombok.Data;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.PastOrPresent;
+import javax.validation.constraints.Size;
+import java.time.LocalDateTime;
 
 // 实际通勤记录请求
 @Data
@@ -17,7 +20,12 @@ public class ActualCommuteRequest {
     private Integer actualDurationMinutes;
 
     @NotNull
+    @Size(max = 20)
     private String commuteType; // "morning" or "evening"
 
+    @Size(max = 200)
     private String commuteModes; // 实际使用的通勤方式组合
+
+    @PastOrPresent
+    private LocalDateTime recordDate; // 离线记录的实际通勤时间，为空时取服务器当前时间
 }
@@ -0,0 +1,17 @@
+package com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest;
+
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+// 批量上传实际通勤记录请求（客户端离线记录后一次性上传）
+@Data
+public class BulkActualCommuteRequest {
+    @NotEmpty
+    @Size(max = 500)
+    @Valid
+    private List<ActualCommuteRequest> records;
+}
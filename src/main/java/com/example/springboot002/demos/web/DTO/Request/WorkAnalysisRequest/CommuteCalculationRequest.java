@@ -3,6 +3,7 @@ package com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest;
 import lombok.Data;
 
 import javax.validation.constraints.NotBlank;
+import java.time.LocalTime;
 
 // 通勤时间计算请求
 @Data
@@ -14,4 +15,5 @@ public class CommuteCalculationRequest {
     private String destination; // 终点地址或坐标
     private String mode; // 通勤方式
     private Boolean isPeakHour; // 是否高峰期
+    private LocalTime departureTime; // 出发时间（可选），按该时段的校准系数修正
 }
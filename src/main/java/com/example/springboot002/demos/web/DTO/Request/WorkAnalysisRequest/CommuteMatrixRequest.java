@@ -0,0 +1,23 @@
+package com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest;
+
+import lombok.Data;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+// 通勤矩阵计算请求（多个起点 × 多个终点 × 多种通勤方式）
+@Data
+public class CommuteMatrixRequest {
+    @NotEmpty(message = "起点不能为空")
+    @Size(max = 20, message = "起点最多20个")
+    private List<String> origins; // 地址或 "经度,纬度"
+
+    @NotEmpty(message = "终点不能为空")
+    @Size(max = 20, message = "终点最多20个")
+    private List<String> destinations; // 地址或 "经度,纬度"
+
+    private List<String> modes; // 为空时计算全部通勤方式
+
+    private Boolean isPeakHour; // 是否高峰期
+}
@@ -0,0 +1,19 @@
+package com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest;
+
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+// 假设场景模拟请求（基于某个工作分析，多个场景并行计算，不保存结果）
+@Data
+public class ScenarioRequest {
+    @NotEmpty(message = "场景不能为空")
+    @Size(max = 50, message = "场景最多50个")
+    @Valid
+    private List<ScenarioVariantRequest> scenarios;
+
+    private String rankBy; // effectiveHourlyWage（默认，降序）或 dailyCommuteMinutes（升序）
+}
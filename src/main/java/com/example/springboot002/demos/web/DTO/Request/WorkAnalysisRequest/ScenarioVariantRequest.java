@@ -0,0 +1,29 @@
+package com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest;
+
+import lombok.Data;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import java.math.BigDecimal;
+
+// 假设场景：只填写需要覆盖的字段，其余沿用基准工作分析
+@Data
+public class ScenarioVariantRequest {
+    private String name; // 场景名称，为空时按序号命名
+
+    private String homeAddress; // 地址或 "经度,纬度"
+    private String companyAddress; // 地址或 "经度,纬度"
+    private String commuteMode; // DRIVING, TRANSIT, WALKING, CYCLING, MIXED
+
+    // 填写任一薪资字段时，薪资只按本场景的薪资字段计算
+    @DecimalMin(value = "0.0", inclusive = false, message = "月薪必须大于0")
+    private BigDecimal monthlySalary;
+
+    @DecimalMin(value = "0.0", inclusive = false, message = "年薪必须大于0")
+    private BigDecimal annualSalary;
+
+    @Min(value = 1, message = "工作日天数至少为1天")
+    @Max(value = 31, message = "工作日天数不能超过31天")
+    private Integer workDaysPerMonth;
+}
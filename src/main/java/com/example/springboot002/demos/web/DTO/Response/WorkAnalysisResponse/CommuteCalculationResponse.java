@@ -10,6 +10,9 @@ public class CommuteCalculationResponse {
     private Integer durationMinutes;
     private String durationText;
     private Integer correctedDuration; // 修正后的时长
+    private Boolean estimated; // 是否为地图服务不可用时的离线估算结果
+    private Boolean peakObserved; // 高峰时长是否来自高峰时段实测数据（否则为固定系数修正）
+    private Boolean calibrated; // 修正时长是否使用了由实际打卡数据校准的系数
     private String[] routes; // 路线信息
     private MapApiResponse apiResponse;
 }
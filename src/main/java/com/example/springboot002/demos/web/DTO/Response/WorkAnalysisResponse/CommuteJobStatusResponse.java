@@ -0,0 +1,15 @@
+package com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// 通勤重算状态（轮询用）
+@Data
+public class CommuteJobStatusResponse {
+    private String workAnalysisId;
+    private String commuteStatus; // READY / PENDING / FAILED
+    private Integer attempts;
+    private LocalDateTime nextAttemptAt;
+    private String lastError;
+}
@@ -0,0 +1,13 @@
+package com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse;
+
+import lombok.Data;
+
+// 通勤矩阵单元格结果（每完成一个即推送一次）
+@Data
+public class CommuteMatrixCellResponse {
+    private Integer originIndex;
+    private Integer destinationIndex;
+    private String mode;
+    private CommuteCalculationResponse result;
+    private String error; // 该单元格计算失败时的原因
+}
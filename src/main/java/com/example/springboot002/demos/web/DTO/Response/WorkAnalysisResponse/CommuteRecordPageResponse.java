@@ -0,0 +1,13 @@
+package com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse;
+
+import lombok.Data;
+
+import java.util.List;
+
+// 通勤记录分页响应（游标分页）
+@Data
+public class CommuteRecordPageResponse {
+    private List<CommuteRecordResponse> records;
+    private String nextCursor; // 下一页游标，没有更多记录时为 null
+    private Boolean hasMore;
+}
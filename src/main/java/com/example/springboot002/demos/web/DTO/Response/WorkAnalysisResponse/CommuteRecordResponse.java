@@ -0,0 +1,23 @@
+package com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// 通勤记录列表项（查询时直接投影，不加载实体）
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommuteRecordResponse {
+    private String id;
+    private String commuteType;
+    private Integer distanceMeters;
+    private Integer durationMinutes;
+    private Integer actualDurationMinutes;
+    private String commuteModes;
+    private Boolean isPeakHour;
+    private Boolean isEstimated;
+    private LocalDateTime recordDate;
+}
@@ -8,4 +8,22 @@ public class CommuteStatisticsResponse {
     private Integer averageMorningDuration;
     private Integer averageEveningDuration;
     private Integer totalRecords;
+
+    private Integer minMorningDuration;
+    private Integer maxMorningDuration;
+    private Double morningDurationStdDev;
+    private Integer minEveningDuration;
+    private Integer maxEveningDuration;
+    private Double eveningDurationStdDev;
+
+    private Integer averagePeakDuration;
+    private Integer averageOffPeakDuration;
+
+    // 时长分位数（分钟）
+    private Integer morningP50;
+    private Integer morningP90;
+    private Integer morningP99;
+    private Integer eveningP50;
+    private Integer eveningP90;
+    private Integer eveningP99;
 }
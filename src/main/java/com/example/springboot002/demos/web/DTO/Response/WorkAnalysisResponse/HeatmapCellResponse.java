@@ -0,0 +1,17 @@
+package com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse;
+
+import lombok.Data;
+
+// 通勤热力图格子
+@Data
+public class HeatmapCellResponse {
+    private String cell; // geohash
+    private Double centerLongitude;
+    private Double centerLatitude;
+    private Long residents; // 家在该格子的用户数
+    private Integer averageOfficeDistanceMeters; // 家到公司的平均直线距离
+    private Long records; // 实际通勤打卡数
+    private Double averageDuration; // 实际单程通勤平均时长(分钟)
+    private Integer p50Duration;
+    private Integer p90Duration;
+}
@@ -0,0 +1,13 @@
+package com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse;
+
+import lombok.Data;
+
+import java.util.List;
+
+// 通勤热力图瓦片
+@Data
+public class HeatmapResponse {
+    private Integer precision; // 格子的 geohash 长度
+    private List<HeatmapCellResponse> cells;
+    private Integer suppressedCells; // 人数不足最小值、未返回的格子数
+}
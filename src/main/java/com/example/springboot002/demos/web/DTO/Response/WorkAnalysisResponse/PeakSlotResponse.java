@@ -0,0 +1,16 @@
+package com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// 高峰时段实测时长响应
+@Data
+public class PeakSlotResponse {
+    private String commuteType; // "morning"（家→公司）或 "evening"（公司→家）
+    private String slotStart; // 时段开始时间，如 "08:15"
+    private Integer durationMinutes;
+    private Integer distanceMeters;
+    private Integer sampleCount;
+    private LocalDateTime sampledAt;
+}
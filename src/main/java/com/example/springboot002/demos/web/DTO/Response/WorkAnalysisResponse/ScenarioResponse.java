@@ -0,0 +1,13 @@
+package com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse;
+
+import lombok.Data;
+
+import java.util.List;
+
+// 假设场景模拟响应
+@Data
+public class ScenarioResponse {
+    private ScenarioResultResponse baseline; // 基准工作分析按同样方式计算的结果
+    private List<ScenarioResultResponse> results; // 按排名排序
+    private Long elapsedMillis;
+}
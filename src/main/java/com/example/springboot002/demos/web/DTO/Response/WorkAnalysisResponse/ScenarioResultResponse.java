@@ -0,0 +1,27 @@
+package com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+// 单个场景的模拟结果
+@Data
+public class ScenarioResultResponse {
+    private Integer rank; // 排名，计算失败的场景为 null
+    private String name;
+    private String homeAddress;
+    private String companyAddress;
+    private String commuteMode;
+    private Integer morningMinutes; // 早高峰 家→公司
+    private Integer eveningMinutes; // 晚高峰 公司→家
+    private Integer dailyCommuteMinutes;
+    private Integer distanceMeters; // 单程距离
+    private BigDecimal monthlyIncome;
+    private BigDecimal nominalHourlyWage;
+    private BigDecimal effectiveHourlyWage;
+    private BigDecimal effectiveHourlyWageDelta; // 相对基准的实际时薪变化
+    private BigDecimal commuteCostShare;
+    private BigDecimal yearlyCommuteHours;
+    private Boolean estimated; // 是否包含离线估算的路线
+    private String error; // 计算失败时的原因
+}
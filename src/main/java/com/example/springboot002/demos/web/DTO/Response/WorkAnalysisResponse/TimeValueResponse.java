@@ -0,0 +1,24 @@
+package com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// 时间价值响应
+@Data
+public class TimeValueResponse {
+    private String workAnalysisId;
+    private BigDecimal monthlyIncome;
+    private Integer dailyCommuteMinutes;
+    private String commuteSource; // actual（实际打卡）/ planned（路线规划）/ mixed
+    private BigDecimal monthlyWorkHours;
+    private BigDecimal monthlyCommuteHours;
+    private BigDecimal nominalHourlyWage; // 名义时薪
+    private BigDecimal effectiveHourlyWage; // 计入通勤后的实际时薪
+    private BigDecimal commuteCostShare; // 通勤占用的时间比例（0-1）
+    private BigDecimal monthlyCommuteCost; // 通勤时间按名义时薪折算的月成本
+    private BigDecimal yearlyCommuteHours; // 每年通勤耗费的小时数
+    private Long generation; // 结果对应的输入版本
+    private LocalDateTime computedAt;
+}
@@ -3,6 +3,7 @@ package com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse;
 import lombok.Data;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 // DTO 响应类
 @Data
@@ -16,4 +17,7 @@ public class WorkAnalysisResponse {
     private String companyAddress;
     private String commuteMode;
     private CommuteInfoResponse commuteInfo;
+    private String commuteStatus; // READY / PENDING（后台重算中）/ FAILED
+    private Long version;
+    private LocalDateTime updatedAt;
 }
\ No newline at end of file
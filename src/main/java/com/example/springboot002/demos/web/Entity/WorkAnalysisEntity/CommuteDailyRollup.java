@@ -0,0 +1,33 @@
+package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+
+// 通勤日汇总实体 - 超过保留期的通勤记录分区删除前按天汇总到这里
+@Data
+@Entity
+@Table(name = "commute_daily_rollup")
+public class CommuteDailyRollup {
+
+    @EmbeddedId
+    private CommuteDailyRollupId id;
+
+    @Column(name = "record_count", nullable = false)
+    private Long recordCount; // 全部记录数（含地图计算记录）
+
+    @Column(name = "actual_count", nullable = false)
+    private Long actualCount; // 有实际通勤时长的记录数
+
+    @Column(name = "actual_duration_sum", nullable = false)
+    private Long actualDurationSum;
+
+    @Column(name = "actual_duration_min")
+    private Integer actualDurationMin;
+
+    @Column(name = "actual_duration_max")
+    private Integer actualDurationMax;
+
+    @Column(name = "actual_duration_sum_sq", nullable = false)
+    private Long actualDurationSumSq;
+}
@@ -0,0 +1,30 @@
+package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// 通勤日汇总主键：工作分析ID + 日期 + 通勤类型 + 是否高峰
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Embeddable
+public class CommuteDailyRollupId implements Serializable {
+
+    @Column(name = "work_analysis_id", nullable = false, length = 36)
+    private String workAnalysisId;
+
+    @Column(name = "rollup_date", nullable = false)
+    private LocalDate rollupDate;
+
+    @Column(name = "commute_type", nullable = false, length = 20)
+    private String commuteType;
+
+    @Column(name = "is_peak_hour", nullable = false)
+    private Boolean isPeakHour;
+}
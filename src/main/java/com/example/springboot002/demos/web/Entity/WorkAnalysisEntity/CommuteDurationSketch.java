@@ -0,0 +1,25 @@
+package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// 通勤时长分布实体 - 存储 DurationSketch 序列化后的字节，用于计算分位数
+@Data
+@Entity
+@Table(name = "commute_duration_sketch")
+public class CommuteDurationSketch {
+
+    @EmbeddedId
+    private CommuteDurationSketchId id;
+
+    @Column(name = "sketch", nullable = false)
+    private byte[] sketch;
+
+    @Column(name = "total_count", nullable = false)
+    private Long totalCount;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
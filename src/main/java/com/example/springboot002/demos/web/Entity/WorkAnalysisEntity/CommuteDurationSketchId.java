@@ -0,0 +1,23 @@
+package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+
+// 通勤时长分布主键：工作分析ID + 通勤类型
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Embeddable
+public class CommuteDurationSketchId implements Serializable {
+
+    @Column(name = "work_analysis_id", nullable = false, length = 36)
+    private String workAnalysisId;
+
+    @Column(name = "commute_type", nullable = false, length = 20)
+    private String commuteType; // "morning" or "evening"
+}
@@ -0,0 +1,42 @@
+package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// 通勤热力图格子实体 - 按家庭地址 geohash 格子预聚合居住人数、到公司距离和实际通勤时长分布
+@Data
+@Entity
+@Table(name = "commute_heatmap_cell", indexes = @Index(name = "idx_commute_heatmap_cell_center",
+        columnList = "center_latitude, center_longitude"))
+public class CommuteHeatmapCell {
+
+    @Id
+    @Column(name = "cell", length = 12)
+    private String cell; // 家庭坐标 geohash 前缀
+
+    @Column(name = "center_longitude", nullable = false)
+    private Double centerLongitude;
+
+    @Column(name = "center_latitude", nullable = false)
+    private Double centerLatitude;
+
+    @Column(name = "resident_count", nullable = false)
+    private Long residentCount; // 家在该格子的工作分析数
+
+    @Column(name = "office_distance_sum", nullable = false)
+    private Long officeDistanceSum; // 家到公司直线距离之和(米)
+
+    @Column(name = "record_count", nullable = false)
+    private Long recordCount; // 实际通勤打卡数
+
+    @Column(name = "duration_sum", nullable = false)
+    private Long durationSum;
+
+    @Column(name = "sketch", nullable = false)
+    private byte[] sketch; // 实际通勤时长分布（DurationSketch）
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,18 @@
+package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
+
+// 通勤重算任务状态（成功的任务直接删除）
+public enum CommuteJobStatus {
+    PENDING("等待执行"),
+    RUNNING("执行中"),
+    FAILED("重试耗尽");
+
+    private final String description;
+
+    CommuteJobStatus(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// 已删除分区中的最新规划/API时长 - 通勤记录分区删除前保存，最新时长查询与现存通勤记录合并取最新
+@Data
+@Entity
+@Table(name = "commute_latest_duration")
+public class CommuteLatestDuration {
+
+    @EmbeddedId
+    private CommuteLatestDurationId id;
+
+    @Column(name = "planned_duration_minutes")
+    private Integer plannedDurationMinutes; // 最新规划时长（duration_minutes）
+
+    @Column(name = "planned_at")
+    private LocalDateTime plannedAt; // 对应记录的 created_at
+
+    @Column(name = "api_duration_minutes")
+    private Integer apiDurationMinutes; // 最新地图API原始时长（不含离线估算）
+
+    @Column(name = "api_at")
+    private LocalDateTime apiAt;
+}
@@ -0,0 +1,51 @@
+package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// 通勤重算任务（outbox）- 以工作分析ID为主键，同一分析的多次变更合并为一个任务
+@Data
+@Entity
+@Table(name = "commute_recompute_job",
+        indexes = {
+                @Index(name = "idx_recompute_job_status_next", columnList = "status, next_attempt_at")
+        })
+public class CommuteRecomputeJob {
+
+    @Id
+    @Column(name = "work_analysis_id", updatable = false, nullable = false, length = 36)
+    private String workAnalysisId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private CommuteJobStatus status;
+
+    @Column(name = "recompute_home", nullable = false)
+    private Boolean recomputeHome; // 需要重新解析家庭地址
+
+    @Column(name = "recompute_company", nullable = false)
+    private Boolean recomputeCompany; // 需要重新解析公司地址
+
+    @Column(name = "generation", nullable = false)
+    private Long generation; // 每次合并新的变更加一，执行期间发生变更时结果作废
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
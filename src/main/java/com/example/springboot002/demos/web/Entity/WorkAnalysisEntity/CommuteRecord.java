@@ -7,10 +7,13 @@ import javax.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
-// 3. 通勤记录实体 - CommuteRecord.java
+// 3. 通勤记录实体 - CommuteRecord.java（按 record_date 月分区，见 db/commute_record_partitioning.sql）
 @Data
 @Entity
-@Table(name = "commute_record")
+@Table(name = "commute_record",
+        indexes = {
+                @Index(name = "idx_commute_record_analysis_date", columnList = "work_analysis_id, record_date, id")
+        })
 public class CommuteRecord {
 
     @Id
@@ -46,12 +49,21 @@ public class CommuteRecord {
     @Column(name = "commute_modes", length = 200)
     private String commuteModes; // JSON格式存储多种通勤方式
 
-    @Column(name = "record_date")
+    @Column(name = "record_date", nullable = false)
     private LocalDateTime recordDate;
 
     @Column(name = "is_peak_hour")
     private Boolean isPeakHour;
 
+    @Column(name = "is_estimated")
+    private Boolean isEstimated; // 离线估算结果，待地图服务恢复后对账
+
+    @Column(name = "reconcile_attempts")
+    private Integer reconcileAttempts; // 对账失败次数，达到上限后不再自动对账
+
+    @Column(name = "reconcile_after")
+    private LocalDateTime reconcileAfter; // 对账失败后的下次重试时间
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -0,0 +1,34 @@
+package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// 通勤统计预聚合实体 - 记录实际通勤时间时增量更新，只统计实际通勤时长
+@Data
+@Entity
+@Table(name = "commute_statistics")
+public class CommuteStatistics {
+
+    @EmbeddedId
+    private CommuteStatisticsId id;
+
+    @Column(name = "record_count", nullable = false)
+    private Long recordCount;
+
+    @Column(name = "duration_sum", nullable = false)
+    private Long durationSum;
+
+    @Column(name = "duration_min")
+    private Integer durationMin;
+
+    @Column(name = "duration_max")
+    private Integer durationMax;
+
+    @Column(name = "duration_sum_sq", nullable = false)
+    private Long durationSumSq; // 时长平方和，用于计算标准差
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,18 @@
+package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
+
+// 通勤信息计算状态
+public enum CommuteStatus {
+    READY("已完成"),
+    PENDING("计算中"),
+    FAILED("计算失败");
+
+    private final String description;
+
+    CommuteStatus(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// 高峰时段路线时长实体 - 高峰期间定时按实时路况刷新，读取时直接使用实测值
+@Data
+@Entity
+@Table(name = "peak_slot_duration")
+public class PeakSlotDuration {
+
+    @EmbeddedId
+    private PeakSlotDurationId id;
+
+    @Column(name = "duration_minutes", nullable = false)
+    private Integer durationMinutes; // 最近一次实测时长
+
+    @Column(name = "distance_meters")
+    private Integer distanceMeters;
+
+    @Column(name = "sample_count", nullable = false)
+    private Integer sampleCount;
+
+    @Column(name = "sampled_at", nullable = false)
+    private LocalDateTime sampledAt;
+}
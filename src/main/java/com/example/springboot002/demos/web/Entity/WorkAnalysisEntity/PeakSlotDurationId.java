@@ -0,0 +1,23 @@
+package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+
+// 高峰时段时长主键：路线key + 时段序号
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Embeddable
+public class PeakSlotDurationId implements Serializable {
+
+    @Column(name = "route_key", nullable = false, length = 200)
+    private String routeKey; // 与路线缓存相同的 key（出行方式:起点网格:终点网格）
+
+    @Column(name = "slot", nullable = false)
+    private Integer slot; // 一天中的第几个时段（按时段长度划分，如 15 分钟一段）
+}
@@ -1,5 +1,6 @@
 package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
 
+import com.example.springboot002.demos.web.Util.GeoHash;
 import lombok.Data;
 import org.hibernate.annotations.GenericGenerator;
 
@@ -9,9 +10,15 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "work_analysis")
+@Table(name = "work_analysis", indexes = {
+        @Index(name = "idx_work_analysis_home_geohash", columnList = "home_geohash"),
+        @Index(name = "idx_work_analysis_company_geohash", columnList = "company_geohash")
+})
 public class WorkAnalysis {
 
+    // geohash 长度 9，格子约 5 米
+    public static final int GEOHASH_PRECISION = 9;
+
     @Id
     @GeneratedValue(generator = "UUID")
     @GenericGenerator(
@@ -55,20 +62,52 @@ public class WorkAnalysis {
     @Column(name = "commute_mode", length = 50)
     private CommuteMode commuteMode;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "commute_status", length = 20)
+    private CommuteStatus commuteStatus; // 通勤信息计算状态，为空视为 READY
+
+    @Column(name = "home_geohash", length = 12)
+    private String homeGeohash; // 家庭坐标的 geohash，坐标变化时自动更新，前缀查询即可按格子筛选
+
+    @Column(name = "company_geohash", length = 12)
+    private String companyGeohash;
+
+    @Column(name = "heatmap_cell", length = 12)
+    private String heatmapCell; // 已计入通勤热力图的格子，家庭坐标变化时据此从旧格子移出
+
+    @Column(name = "heatmap_distance_meters")
+    private Integer heatmapDistanceMeters; // 计入热力图时的家到公司直线距离
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(name = "version", columnDefinition = "BIGINT DEFAULT 0")
+    private long version; // 乐观锁版本号，同时用于生成 ETag
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
+        refreshGeohash();
     }
 
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
+        refreshGeohash();
+    }
+
+    /**
+     * 按当前坐标重新计算 geohash
+     */
+    public void refreshGeohash() {
+        homeGeohash = homeLongitude != null && homeLatitude != null
+                ? GeoHash.encode(homeLongitude, homeLatitude, GEOHASH_PRECISION) : null;
+        companyGeohash = companyLongitude != null && companyLatitude != null
+                ? GeoHash.encode(companyLongitude, companyLatitude, GEOHASH_PRECISION) : null;
     }
 }
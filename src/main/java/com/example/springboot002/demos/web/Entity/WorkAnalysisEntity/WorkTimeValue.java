@@ -0,0 +1,60 @@
+package com.example.springboot002.demos.web.Entity.WorkAnalysisEntity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// 时间价值实体 - 计入通勤时间后的实际时薪等指标，输入变化时标记过期并增量重算
+@Data
+@Entity
+@Table(name = "work_time_value", indexes = @Index(name = "idx_work_time_value_stale", columnList = "stale"))
+public class WorkTimeValue {
+
+    @Id
+    @Column(name = "work_analysis_id", length = 36)
+    private String workAnalysisId;
+
+    @Column(name = "monthly_income", precision = 12, scale = 2)
+    private BigDecimal monthlyIncome; // 月收入（有年薪时按年薪/12，含奖金）
+
+    @Column(name = "daily_commute_minutes")
+    private Integer dailyCommuteMinutes; // 每个工作日往返通勤时长
+
+    @Column(name = "commute_source", length = 20)
+    private String commuteSource; // 通勤时长来源：actual / planned / mixed
+
+    @Column(name = "monthly_work_hours", precision = 8, scale = 2)
+    private BigDecimal monthlyWorkHours;
+
+    @Column(name = "monthly_commute_hours", precision = 8, scale = 2)
+    private BigDecimal monthlyCommuteHours;
+
+    @Column(name = "nominal_hourly_wage", precision = 10, scale = 2)
+    private BigDecimal nominalHourlyWage; // 名义时薪（只计工作时间）
+
+    @Column(name = "effective_hourly_wage", precision = 10, scale = 2)
+    private BigDecimal effectiveHourlyWage; // 实际时薪（工作时间 + 通勤时间）
+
+    @Column(name = "commute_cost_share", precision = 5, scale = 4)
+    private BigDecimal commuteCostShare; // 通勤占用的时间比例，即时薪被稀释的比例
+
+    @Column(name = "monthly_commute_cost", precision = 12, scale = 2)
+    private BigDecimal monthlyCommuteCost; // 通勤时间按名义时薪折算的月成本
+
+    @Column(name = "yearly_commute_hours", precision = 8, scale = 2)
+    private BigDecimal yearlyCommuteHours; // 每年通勤耗费的小时数
+
+    @Column(name = "input_generation", nullable = false)
+    private Long inputGeneration; // 输入每变化一次加一
+
+    @Column(name = "computed_generation")
+    private Long computedGeneration; // 当前结果对应的输入版本
+
+    @Column(name = "stale", nullable = false)
+    private Boolean stale;
+
+    @Column(name = "computed_at")
+    private LocalDateTime computedAt;
+}
@@ -0,0 +1,42 @@
+package com.example.springboot002.demos.web.Repository.WorkAnalysisRespository;
+
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteDurationSketch;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteDurationSketchId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CommuteDurationSketchRepository extends JpaRepository<CommuteDurationSketch, CommuteDurationSketchId> {
+
+    List<CommuteDurationSketch> findByIdWorkAnalysisId(String workAnalysisId);
+
+    List<CommuteDurationSketch> findByIdWorkAnalysisIdInAndIdCommuteType(Collection<String> workAnalysisIds,
+                                                                         String commuteType);
+
+    /**
+     * 插入空草图行，已存在时不做任何操作；返回 1 表示本次新建
+     */
+    @Modifying
+    @Query(value = "INSERT INTO commute_duration_sketch (work_analysis_id, commute_type, sketch, total_count, updated_at) " +
+            "VALUES (:workAnalysisId, :commuteType, :sketch, 0, NOW()) " +
+            "ON CONFLICT (work_analysis_id, commute_type) DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("workAnalysisId") String workAnalysisId,
+                       @Param("commuteType") String commuteType,
+                       @Param("sketch") byte[] sketch);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM CommuteDurationSketch s WHERE s.id = :id")
+    Optional<CommuteDurationSketch> findForUpdate(@Param("id") CommuteDurationSketchId id);
+
+    List<CommuteDurationSketch> findByIdWorkAnalysisIdIn(Collection<String> workAnalysisIds);
+}
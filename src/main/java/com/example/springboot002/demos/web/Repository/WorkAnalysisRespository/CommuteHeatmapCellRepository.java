@@ -0,0 +1,51 @@
+package com.example.springboot002.demos.web.Repository.WorkAnalysisRespository;
+
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteHeatmapCell;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CommuteHeatmapCellRepository extends JpaRepository<CommuteHeatmapCell, String> {
+
+    /**
+     * 原子累加居住人数和距离（格子不存在时新建）
+     */
+    @Modifying
+    @Query(value = "INSERT INTO commute_heatmap_cell (cell, center_longitude, center_latitude, resident_count, " +
+            "office_distance_sum, record_count, duration_sum, sketch, updated_at) " +
+            "VALUES (:cell, :centerLongitude, :centerLatitude, :residents, :distance, 0, 0, :emptySketch, NOW()) " +
+            "ON CONFLICT (cell) DO UPDATE SET " +
+            "resident_count = commute_heatmap_cell.resident_count + EXCLUDED.resident_count, " +
+            "office_distance_sum = commute_heatmap_cell.office_distance_sum + EXCLUDED.office_distance_sum, " +
+            "updated_at = EXCLUDED.updated_at",
+            nativeQuery = true)
+    int addResidents(@Param("cell") String cell,
+                     @Param("centerLongitude") double centerLongitude,
+                     @Param("centerLatitude") double centerLatitude,
+                     @Param("residents") long residents,
+                     @Param("distance") long distance,
+                     @Param("emptySketch") byte[] emptySketch);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CommuteHeatmapCell c WHERE c.cell = :cell")
+    Optional<CommuteHeatmapCell> findForUpdate(@Param("cell") String cell);
+
+    @Query("SELECT c FROM CommuteHeatmapCell c WHERE c.centerLatitude BETWEEN :minLatitude AND :maxLatitude " +
+            "AND c.centerLongitude BETWEEN :minLongitude AND :maxLongitude")
+    List<CommuteHeatmapCell> findInBounds(@Param("minLongitude") double minLongitude,
+                                          @Param("minLatitude") double minLatitude,
+                                          @Param("maxLongitude") double maxLongitude,
+                                          @Param("maxLatitude") double maxLatitude);
+
+    @Modifying
+    @Query(value = "DELETE FROM commute_heatmap_cell", nativeQuery = true)
+    int deleteAllCells();
+}
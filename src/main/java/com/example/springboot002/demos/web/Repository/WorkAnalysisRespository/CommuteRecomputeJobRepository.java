@@ -0,0 +1,54 @@
+package com.example.springboot002.demos.web.Repository.WorkAnalysisRespository;
+
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteRecomputeJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CommuteRecomputeJobRepository extends JpaRepository<CommuteRecomputeJob, String> {
+
+    /**
+     * 入队；同一工作分析已有任务时合并（地址标记取并集、generation 加一、重置重试），
+     * 执行中的任务保持 RUNNING，由执行线程发现 generation 变化后重新排队
+     */
+    @Modifying
+    @Query(value = "INSERT INTO commute_recompute_job (work_analysis_id, status, recompute_home, recompute_company, " +
+            "generation, attempts, next_attempt_at, created_at, updated_at) " +
+            "VALUES (:workAnalysisId, 'PENDING', :recomputeHome, :recomputeCompany, 1, 0, NOW(), NOW(), NOW()) " +
+            "ON CONFLICT (work_analysis_id) DO UPDATE SET " +
+            "recompute_home = commute_recompute_job.recompute_home OR EXCLUDED.recompute_home, " +
+            "recompute_company = commute_recompute_job.recompute_company OR EXCLUDED.recompute_company, " +
+            "generation = commute_recompute_job.generation + 1, " +
+            "status = CASE WHEN commute_recompute_job.status = 'RUNNING' THEN 'RUNNING' ELSE 'PENDING' END, " +
+            "attempts = 0, next_attempt_at = NOW(), last_error = NULL, updated_at = NOW()",
+            nativeQuery = true)
+    int enqueue(@Param("workAnalysisId") String workAnalysisId,
+                @Param("recomputeHome") boolean recomputeHome,
+                @Param("recomputeCompany") boolean recomputeCompany);
+
+    /**
+     * 锁定可执行的任务：到期的 PENDING，以及租约已过期的 RUNNING（执行节点崩溃）；
+     * SKIP LOCKED 使多个节点可以并发领取互不重复的任务
+     */
+    @Query(value = "SELECT * FROM commute_recompute_job " +
+            "WHERE (status = 'PENDING' AND next_attempt_at <= :now) " +
+            "OR (status = 'RUNNING' AND locked_at < :leaseExpiredBefore) " +
+            "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<CommuteRecomputeJob> lockClaimable(@Param("now") LocalDateTime now,
+                                            @Param("leaseExpiredBefore") LocalDateTime leaseExpiredBefore,
+                                            @Param("limit") int limit);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM CommuteRecomputeJob j WHERE j.workAnalysisId = :workAnalysisId")
+    Optional<CommuteRecomputeJob> findForUpdate(@Param("workAnalysisId") String workAnalysisId);
+}
@@ -1,26 +1,56 @@
 package com.example.springboot002.demos.web.Repository.WorkAnalysisRespository;
 
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteRecordResponse;
 import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteRecord;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface CommuteRecordRepository extends JpaRepository<CommuteRecord, String> {
 
-    List<CommuteRecord> findByWorkAnalysisIdOrderByRecordDateDesc(String workAnalysisId);
+    /**
+     * 通勤记录第一页（按 record_date、id 倒序）
+     */
+    @Query("SELECT new com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteRecordResponse(" +
+            "c.id, c.commuteType, c.distanceMeters, c.durationMinutes, c.actualDurationMinutes, " +
+            "c.commuteModes, c.isPeakHour, c.isEstimated, c.recordDate) " +
+            "FROM CommuteRecord c WHERE c.workAnalysisId = :workAnalysisId " +
+            "ORDER BY c.recordDate DESC, c.id DESC")
+    List<CommuteRecordResponse> findRecordPage(@Param("workAnalysisId") String workAnalysisId, Pageable pageable);
 
-    @Query("SELECT c FROM CommuteRecord c WHERE c.workAnalysisId = :workAnalysisId " +
-            "AND c.recordDate >= :startDate AND c.recordDate <= :endDate")
-    List<CommuteRecord> findByWorkAnalysisIdAndDateRange(
-            @Param("workAnalysisId") String workAnalysisId,
-            @Param("startDate") LocalDateTime startDate,
-            @Param("endDate") LocalDateTime endDate
-    );
+    /**
+     * 通勤记录后续页：从上一页最后一条 (record_date, id) 之后继续
+     * 行值比较可直接作为 idx_commute_record_analysis_date 的扫描起点（JPQL 不支持），
+     * 返回 [id, commute_type, distance_meters, duration_minutes, actual_duration_minutes,
+     * commute_modes, is_peak_hour, is_estimated, record_date]
+     */
+    @Query(value = "SELECT id, commute_type, distance_meters, duration_minutes, actual_duration_minutes, " +
+            "commute_modes, is_peak_hour, is_estimated, record_date FROM commute_record " +
+            "WHERE work_analysis_id = :workAnalysisId AND (record_date, id) < (:recordDate, :id) " +
+            "ORDER BY record_date DESC, id DESC",
+            nativeQuery = true)
+    List<Object[]> findRecordPageAfter(@Param("workAnalysisId") String workAnalysisId,
+                                       @Param("recordDate") LocalDateTime recordDate,
+                                       @Param("id") String id,
+                                       Pageable pageable);
+
+    /**
+     * 待对账的估算记录：未到重试时间或失败次数已达上限的记录不返回，避免少数失败记录挡住队首
+     */
+    @Query("SELECT c FROM CommuteRecord c WHERE c.isEstimated = TRUE " +
+            "AND (c.reconcileAfter IS NULL OR c.reconcileAfter <= :now) " +
+            "AND COALESCE(c.reconcileAttempts, 0) < :maxAttempts " +
+            "ORDER BY c.createdAt ASC")
+    List<CommuteRecord> findReconcilable(@Param("now") LocalDateTime now,
+                                         @Param("maxAttempts") int maxAttempts,
+                                         Pageable pageable);
 
     @Query("SELECT AVG(c.actualDurationMinutes) FROM CommuteRecord c " +
             "WHERE c.workAnalysisId = :workAnalysisId AND c.commuteType = :commuteType " +
@@ -28,7 +58,44 @@ public interface CommuteRecordRepository extends JpaRepository<CommuteRecord, St
     Double getAverageDurationByType(@Param("workAnalysisId") String workAnalysisId,
                                     @Param("commuteType") String commuteType);
 
+    @Query("SELECT c.actualDurationMinutes FROM CommuteRecord c " +
+            "WHERE c.workAnalysisId = :workAnalysisId AND c.commuteType = :commuteType " +
+            "AND c.actualDurationMinutes IS NOT NULL")
+    List<Integer> findActualDurations(@Param("workAnalysisId") String workAnalysisId,
+                                      @Param("commuteType") String commuteType);
+
     @Query("SELECT c FROM CommuteRecord c WHERE c.workAnalysisId = :workAnalysisId " +
             "AND c.isPeakHour = true ORDER BY c.recordDate DESC")
     List<CommuteRecord> findPeakHourRecords(@Param("workAnalysisId") String workAnalysisId);
+
+    /**
+     * 每个工作分析、每种通勤类型最近一次地图API原始时长（不含离线估算），返回 [work_analysis_id, commute_type, api_duration_minutes]
+     * 合并已删除分区保存下来的最新时长（commute_latest_duration）
+     */
+    @Query(value = "SELECT DISTINCT ON (work_analysis_id, commute_type) work_analysis_id, commute_type, " +
+            "api_duration_minutes FROM (" +
+            "SELECT work_analysis_id, commute_type, api_duration_minutes, created_at FROM commute_record " +
+            "WHERE work_analysis_id IN (:workAnalysisIds) " +
+            "AND api_duration_minutes IS NOT NULL AND (is_estimated IS NULL OR is_estimated = FALSE) " +
+            "UNION ALL " +
+            "SELECT work_analysis_id, commute_type, api_duration_minutes, api_at FROM commute_latest_duration " +
+            "WHERE work_analysis_id IN (:workAnalysisIds) AND api_duration_minutes IS NOT NULL) d " +
+            "ORDER BY work_analysis_id, commute_type, created_at DESC",
+            nativeQuery = true)
+    List<Object[]> findLatestApiDurations(@Param("workAnalysisIds") Collection<String> workAnalysisIds);
+
+    /**
+     * 最近一次规划（地图计算）的通勤时长，返回 [commute_type, duration_minutes]
+     * 合并已删除分区保存下来的最新时长（commute_latest_duration）
+     */
+    @Query(value = "SELECT DISTINCT ON (commute_type) commute_type, duration_minutes FROM (" +
+            "SELECT commute_type, duration_minutes, created_at FROM commute_record " +
+            "WHERE work_analysis_id = :workAnalysisId AND duration_minutes IS NOT NULL " +
+            "AND actual_duration_minutes IS NULL " +
+            "UNION ALL " +
+            "SELECT commute_type, planned_duration_minutes, planned_at FROM commute_latest_duration " +
+            "WHERE work_analysis_id = :workAnalysisId AND planned_duration_minutes IS NOT NULL) d " +
+            "ORDER BY commute_type, created_at DESC",
+            nativeQuery = true)
+    List<Object[]> findLatestPlannedDurations(@Param("workAnalysisId") String workAnalysisId);
 }
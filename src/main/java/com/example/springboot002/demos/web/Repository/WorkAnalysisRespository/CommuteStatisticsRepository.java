@@ -0,0 +1,90 @@
+package com.example.springboot002.demos.web.Repository.WorkAnalysisRespository;
+
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteStatistics;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteStatisticsId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CommuteStatisticsRepository extends JpaRepository<CommuteStatistics, CommuteStatisticsId> {
+
+    List<CommuteStatistics> findByIdWorkAnalysisId(String workAnalysisId);
+
+    boolean existsByIdWorkAnalysisId(String workAnalysisId);
+
+    /**
+     * 原子累加一批通勤时长的增量（并发写入同一行时由数据库行锁串行化）
+     */
+    @Modifying
+    @Query(value = "INSERT INTO commute_statistics (work_analysis_id, commute_type, is_peak_hour, " +
+            "record_count, duration_sum, duration_min, duration_max, duration_sum_sq, updated_at) " +
+            "VALUES (:workAnalysisId, :commuteType, :isPeakHour, :count, :sum, :min, :max, :sumSq, NOW()) " +
+            "ON CONFLICT (work_analysis_id, commute_type, is_peak_hour) DO UPDATE SET " +
+            "record_count = commute_statistics.record_count + EXCLUDED.record_count, " +
+            "duration_sum = commute_statistics.duration_sum + EXCLUDED.duration_sum, " +
+            "duration_min = LEAST(commute_statistics.duration_min, EXCLUDED.duration_min), " +
+            "duration_max = GREATEST(commute_statistics.duration_max, EXCLUDED.duration_max), " +
+            "duration_sum_sq = commute_statistics.duration_sum_sq + EXCLUDED.duration_sum_sq, " +
+            "updated_at = EXCLUDED.updated_at",
+            nativeQuery = true)
+    int accumulate(@Param("workAnalysisId") String workAnalysisId,
+                   @Param("commuteType") String commuteType,
+                   @Param("isPeakHour") boolean isPeakHour,
+                   @Param("count") long count,
+                   @Param("sum") long sum,
+                   @Param("min") int min,
+                   @Param("max") int max,
+                   @Param("sumSq") long sumSq);
+
+    /**
+     * 按通勤记录全量重建某个工作分析的统计（用于统计表上线前的历史数据）；
+     * 已删除分区的部分从日汇总（commute_daily_rollup）补上
+     */
+    @Modifying
+    @Query(value = "INSERT INTO commute_statistics (work_analysis_id, commute_type, is_peak_hour, " +
+            "record_count, duration_sum, duration_min, duration_max, duration_sum_sq, updated_at) " +
+            "SELECT :workAnalysisId, commute_type, is_peak_hour, SUM(cnt), SUM(total), MIN(low), MAX(high), " +
+            "SUM(total_sq), NOW() FROM (" +
+            "SELECT commute_type, COALESCE(is_peak_hour, FALSE) AS is_peak_hour, COUNT(*) AS cnt, " +
+            "SUM(actual_duration_minutes) AS total, MIN(actual_duration_minutes) AS low, " +
+            "MAX(actual_duration_minutes) AS high, " +
+            "SUM(CAST(actual_duration_minutes AS BIGINT) * actual_duration_minutes) AS total_sq " +
+            "FROM commute_record WHERE work_analysis_id = :workAnalysisId " +
+            "AND commute_type IS NOT NULL AND actual_duration_minutes IS NOT NULL " +
+            "GROUP BY commute_type, COALESCE(is_peak_hour, FALSE) " +
+            "UNION ALL " +
+            "SELECT commute_type, is_peak_hour, actual_count, actual_duration_sum, actual_duration_min, " +
+            "actual_duration_max, actual_duration_sum_sq FROM commute_daily_rollup " +
+            "WHERE work_analysis_id = :workAnalysisId AND commute_type <> 'unknown' AND actual_count > 0) s " +
+            "GROUP BY commute_type, is_peak_hour " +
+            "ON CONFLICT (work_analysis_id, commute_type, is_peak_hour) DO UPDATE SET " +
+            "record_count = EXCLUDED.record_count, " +
+            "duration_sum = EXCLUDED.duration_sum, " +
+            "duration_min = EXCLUDED.duration_min, " +
+            "duration_max = EXCLUDED.duration_max, " +
+            "duration_sum_sq = EXCLUDED.duration_sum_sq, " +
+            "updated_at = EXCLUDED.updated_at",
+            nativeQuery = true)
+    int rebuild(@Param("workAnalysisId") String workAnalysisId);
+
+    /**
+     * 补齐早晚 × 高峰/平峰的零值行，有行即表示该工作分析的统计已初始化
+     */
+    @Modifying
+    @Query(value = "INSERT INTO commute_statistics (work_analysis_id, commute_type, is_peak_hour, " +
+            "record_count, duration_sum, duration_min, duration_max, duration_sum_sq, updated_at) " +
+            "SELECT :workAnalysisId, t.commute_type, p.is_peak_hour, 0, 0, NULL, NULL, 0, NOW() " +
+            "FROM (VALUES ('morning'), ('evening')) AS t(commute_type) " +
+            "CROSS JOIN (VALUES (TRUE), (FALSE)) AS p(is_peak_hour) " +
+            "ON CONFLICT (work_analysis_id, commute_type, is_peak_hour) DO NOTHING",
+            nativeQuery = true)
+    int initialize(@Param("workAnalysisId") String workAnalysisId);
+
+    List<CommuteStatistics> findByIdWorkAnalysisIdIn(Collection<String> workAnalysisIds);
+}
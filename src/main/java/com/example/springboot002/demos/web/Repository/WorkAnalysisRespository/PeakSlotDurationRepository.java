@@ -0,0 +1,41 @@
+package com.example.springboot002.demos.web.Repository.WorkAnalysisRespository;
+
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.PeakSlotDuration;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.PeakSlotDurationId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PeakSlotDurationRepository extends JpaRepository<PeakSlotDuration, PeakSlotDurationId> {
+
+    List<PeakSlotDuration> findByIdRouteKeyOrderByIdSlotAsc(String routeKey);
+
+    List<PeakSlotDuration> findByIdRouteKeyInAndIdSlotAndSampledAtGreaterThanEqual(Collection<String> routeKeys,
+                                                                                  Integer slot,
+                                                                                  LocalDateTime since);
+
+    /**
+     * 写入某条路线某个时段的实测时长
+     */
+    @Modifying
+    @Query(value = "INSERT INTO peak_slot_duration (route_key, slot, duration_minutes, distance_meters, " +
+            "sample_count, sampled_at) VALUES (:routeKey, :slot, :duration, :distance, 1, :sampledAt) " +
+            "ON CONFLICT (route_key, slot) DO UPDATE SET " +
+            "duration_minutes = EXCLUDED.duration_minutes, " +
+            "distance_meters = EXCLUDED.distance_meters, " +
+            "sample_count = peak_slot_duration.sample_count + 1, " +
+            "sampled_at = EXCLUDED.sampled_at",
+            nativeQuery = true)
+    int upsertSample(@Param("routeKey") String routeKey,
+                     @Param("slot") int slot,
+                     @Param("duration") int duration,
+                     @Param("distance") int distance,
+                     @Param("sampledAt") LocalDateTime sampledAt);
+}
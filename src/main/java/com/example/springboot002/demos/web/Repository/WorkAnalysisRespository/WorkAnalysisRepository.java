@@ -1,7 +1,9 @@
 package com.example.springboot002.demos.web.Repository.WorkAnalysisRespository;
 
 import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkAnalysis;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -20,4 +22,41 @@ public interface WorkAnalysisRepository extends JpaRepository<WorkAnalysis, Stri
     @Query("SELECT w FROM WorkAnalysis w WHERE w.userId = :userId AND w.createdAt >= :startDate")
     List<WorkAnalysis> findRecentByUserId(@Param("userId") String userId,
                                           @Param("startDate") LocalDateTime startDate);
+
+    /**
+     * 活跃的工作分析：已解析坐标，且近期有更新或有通勤打卡；最近更新的在前，超过分页上限时结果稳定
+     */
+    @Query("SELECT w FROM WorkAnalysis w WHERE w.homeLongitude IS NOT NULL AND w.companyLongitude IS NOT NULL " +
+            "AND (w.updatedAt >= :since OR EXISTS (SELECT 1 FROM CommuteRecord r " +
+            "WHERE r.workAnalysisId = w.id AND r.recordDate >= :since)) " +
+            "ORDER BY w.updatedAt DESC, w.id")
+    List<WorkAnalysis> findActiveSince(@Param("since") LocalDateTime since, Pageable pageable);
+
+    /**
+     * 清除全部热力图计入标记（重建热力图前调用）
+     */
+    @Modifying
+    @Query("UPDATE WorkAnalysis w SET w.heatmapCell = NULL, w.heatmapDistanceMeters = NULL")
+    int clearHeatmapCells();
+
+    /**
+     * 直接写入空间索引列（热力图重建用，不触发实体回调）
+     */
+    @Modifying
+    @Query("UPDATE WorkAnalysis w SET w.homeGeohash = :homeGeohash, w.companyGeohash = :companyGeohash, " +
+            "w.heatmapCell = :heatmapCell, w.heatmapDistanceMeters = :heatmapDistanceMeters WHERE w.id = :id")
+    int updateSpatialColumns(@Param("id") String id,
+                             @Param("homeGeohash") String homeGeohash,
+                             @Param("companyGeohash") String companyGeohash,
+                             @Param("heatmapCell") String heatmapCell,
+                             @Param("heatmapDistanceMeters") Integer heatmapDistanceMeters);
+
+    /**
+     * 按 ID 游标分页读取地址和坐标（加载地址空间索引用）
+     * 每行依次为 id、家庭地址、家庭经度、家庭纬度、公司地址、公司经度、公司纬度
+     */
+    @Query("SELECT w.id, w.homeAddress, w.homeLongitude, w.homeLatitude, " +
+            "w.companyAddress, w.companyLongitude, w.companyLatitude " +
+            "FROM WorkAnalysis w WHERE w.id > :afterId ORDER BY w.id")
+    List<Object[]> findAddressPointsAfter(@Param("afterId") String afterId, Pageable pageable);
 }
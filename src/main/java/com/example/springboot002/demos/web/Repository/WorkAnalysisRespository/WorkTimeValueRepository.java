@@ -0,0 +1,37 @@
+package com.example.springboot002.demos.web.Repository.WorkAnalysisRespository;
+
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkTimeValue;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WorkTimeValueRepository extends JpaRepository<WorkTimeValue, String> {
+
+    /**
+     * 标记时间价值过期（没有记录时插入空记录），与输入的修改在同一事务中执行
+     */
+    @Modifying
+    @Query(value = "INSERT INTO work_time_value (work_analysis_id, input_generation, stale) " +
+            "SELECT id, 1, TRUE FROM work_analysis WHERE id IN (:workAnalysisIds) " +
+            "ON CONFLICT (work_analysis_id) DO UPDATE SET " +
+            "input_generation = work_time_value.input_generation + 1, stale = TRUE",
+            nativeQuery = true)
+    int markStale(@Param("workAnalysisIds") Collection<String> workAnalysisIds);
+
+    @Query("SELECT t.workAnalysisId FROM WorkTimeValue t WHERE t.stale = true")
+    List<String> findStaleIds(Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM WorkTimeValue t WHERE t.workAnalysisId = :workAnalysisId")
+    Optional<WorkTimeValue> findForUpdate(@Param("workAnalysisId") String workAnalysisId);
+}
@@ -0,0 +1,52 @@
+package com.example.springboot002.demos.web.Service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * PostgreSQL 事务级 advisory 锁
+ * 用于跨节点串行化同一资源的初始化、定时维护等操作；锁随事务提交或回滚自动释放，
+ * 因此必须在事务内调用。锁 key 由命名空间和资源 key 的哈希组成，哈希冲突只会造成多余的等待。
+ */
+@Service
+@RequiredArgsConstructor
+public class AdvisoryLockService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 获取锁，已被其他事务持有时阻塞等待
+     */
+    public void lock(String namespace, String key) {
+        requireTransaction();
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, ?)", (ResultSetExtractor<Void>) rs -> null,
+                namespace.hashCode(), key.hashCode());
+    }
+
+    /**
+     * 获取共享锁：多个事务可同时持有，与同一 key 的排他锁互斥
+     */
+    public void lockShared(String namespace, String key) {
+        requireTransaction();
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock_shared(?, ?)", (ResultSetExtractor<Void>) rs -> null,
+                namespace.hashCode(), key.hashCode());
+    }
+
+    /**
+     * 尝试获取锁，已被其他事务持有时立即返回 false
+     */
+    public boolean tryLock(String namespace, String key) {
+        requireTransaction();
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?, ?)",
+                Boolean.class, namespace.hashCode(), key.hashCode()));
+    }
+
+    private void requireTransaction() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("advisory 锁必须在事务内获取");
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.springboot002.demos.web.Service;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 数据库连接池指标
+ * 记录获取连接的等待时间分布、获取超时次数和连接占用时长，用于判断连接池是否被长事务占满。
+ */
+@Component
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+
+    // 等待时间分桶上界(毫秒)，最后一个桶为超出上界的部分
+    private static final long[] WAIT_BUCKETS_MS = {1, 5, 10, 50, 100, 500, 1000, 5000};
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder waitNanosTotal = new LongAdder();
+    private final AtomicLong waitNanosMax = new AtomicLong();
+    private final LongAdder[] waitBuckets = new LongAdder[WAIT_BUCKETS_MS.length + 1];
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder usages = new LongAdder();
+    private final LongAdder usageMillisTotal = new LongAdder();
+    private final AtomicLong usageMillisMax = new AtomicLong();
+
+    private volatile PoolStats poolStats;
+
+    public ConnectionPoolMetrics() {
+        for (int i = 0; i < waitBuckets.length; i++) {
+            waitBuckets[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquired.increment();
+                waitNanosTotal.add(elapsedAcquiredNanos);
+                waitNanosMax.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+                waitBuckets[bucketOf(TimeUnit.NANOSECONDS.toMillis(elapsedAcquiredNanos))].increment();
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usages.increment();
+                usageMillisTotal.add(elapsedBorrowedMillis);
+                usageMillisMax.accumulateAndGet(elapsedBorrowedMillis, Math::max);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        PoolStats pool = poolStats;
+        if (pool != null) {
+            stats.put("activeConnections", pool.getActiveConnections());
+            stats.put("idleConnections", pool.getIdleConnections());
+            stats.put("totalConnections", pool.getTotalConnections());
+            stats.put("maxConnections", pool.getMaxConnections());
+            stats.put("pendingThreads", pool.getPendingThreads());
+        }
+
+        long count = acquired.sum();
+        stats.put("acquired", count);
+        stats.put("acquireTimeouts", timeouts.sum());
+        stats.put("averageWaitMillis", count > 0 ? waitNanosTotal.sum() / count / 1_000_000.0 : 0.0);
+        stats.put("maxWaitMillis", waitNanosMax.get() / 1_000_000.0);
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < WAIT_BUCKETS_MS.length; i++) {
+            histogram.put("<=" + WAIT_BUCKETS_MS[i] + "ms", waitBuckets[i].sum());
+        }
+        histogram.put(">" + WAIT_BUCKETS_MS[WAIT_BUCKETS_MS.length - 1] + "ms", waitBuckets[WAIT_BUCKETS_MS.length].sum());
+        stats.put("waitHistogram", histogram);
+
+        long used = usages.sum();
+        stats.put("averageUsageMillis", used > 0 ? (double) usageMillisTotal.sum() / used : 0.0);
+        stats.put("maxUsageMillis", usageMillisMax.get());
+        return stats;
+    }
+
+    private static int bucketOf(long millis) {
+        for (int i = 0; i < WAIT_BUCKETS_MS.length; i++) {
+            if (millis <= WAIT_BUCKETS_MS[i]) {
+                return i;
+            }
+        }
+        return WAIT_BUCKETS_MS.length;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.springboot002.demos.web.Service;
+
+import com.example.springboot002.demos.web.Util.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 资源版本表（Redis）
+ * 记录资源当前的 ETag，条件 GET 时先比对这里的版本，命中即可直接返回 304 而不查询数据库。
+ * 资源更新时在事务提交后删除对应条目，下次完整读取时重新写入。
+ * 删除时同时自增该资源的失效代数；读取方在查询数据库前取代数，写入时用 Lua 比对，
+ * 查询期间资源已被更新则不写入，避免旧 ETag 覆盖。
+ */
+@Slf4j
+@Service
+public class ResourceVersionService {
+
+    // Redis key 前缀
+    private static final String ETAG_PREFIX = "etag:";
+    private static final String GENERATION_SUFFIX = ":gen";
+
+    // KEYS[1]=ETag key, KEYS[2]=代数 key；ARGV[1]=读取前的代数, ARGV[2]=ETag, ARGV[3]=TTL 毫秒
+    private static final RedisScript<Long> PUT_IF_GENERATION_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[2]) or '0') ~= ARGV[1] then return 0 end "
+                    + "redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) return 1", Long.class);
+    // KEYS[1]=ETag key, KEYS[2]=代数 key；ARGV[1]=代数 TTL 毫秒
+    private static final RedisScript<Long> EVICT_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[1]) local gen = redis.call('INCR', KEYS[2]) "
+                    + "redis.call('PEXPIRE', KEYS[2], ARGV[1]) return gen", Long.class);
+
+    private final RedisUtil redisUtil;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final long ttlMillis;
+
+    public ResourceVersionService(RedisUtil redisUtil,
+                                  StringRedisTemplate stringRedisTemplate,
+                                  @Value("${resource-version.ttl-minutes:30}") long ttlMinutes) {
+        this.redisUtil = redisUtil;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+    }
+
+    /**
+     * 由版本号和更新时间生成强 ETag
+     */
+    public static String etag(Long version, LocalDateTime updatedAt) {
+        return "\"" + (version != null ? version : 0) + "-" + toEpochMilli(updatedAt) + "\"";
+    }
+
+    /**
+     * 由响应内容生成弱 ETag（用于列表等没有单一版本号的资源）
+     */
+    public static String weakEtag(byte[] content) {
+        return "W/\"" + DigestUtils.md5DigestAsHex(content) + "\"";
+    }
+
+    public static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+    }
+
+    /**
+     * 查询资源当前 ETag，未记录或 Redis 不可用时返回 null
+     */
+    public String get(String resourceKey) {
+        try {
+            return redisUtil.get(ETAG_PREFIX + resourceKey);
+        } catch (Exception e) {
+            log.warn("读取资源版本失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 查询资源当前的失效代数，须在读取数据库之前调用；Redis 不可用时返回 null
+     */
+    public String generation(String resourceKey) {
+        try {
+            String generation = redisUtil.get(ETAG_PREFIX + resourceKey + GENERATION_SUFFIX);
+            return generation != null ? generation : "0";
+        } catch (Exception e) {
+            log.warn("读取资源版本代数失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 代数未变化时写入 ETag；generation 为 null 时不写入
+     */
+    public void put(String resourceKey, String etag, String generation) {
+        if (generation == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(PUT_IF_GENERATION_SCRIPT,
+                    Arrays.asList(ETAG_PREFIX + resourceKey, ETAG_PREFIX + resourceKey + GENERATION_SUFFIX),
+                    generation, etag, String.valueOf(ttlMillis));
+        } catch (Exception e) {
+            log.warn("写入资源版本失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 删除资源版本；在事务中调用时推迟到提交之后执行
+     */
+    public void evictAfterCommit(String resourceKey) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(resourceKey);
+                }
+            });
+        } else {
+            evict(resourceKey);
+        }
+    }
+
+    public void evict(String resourceKey) {
+        try {
+            // 代数保留时间比 ETag TTL 长，覆盖最慢的读取
+            stringRedisTemplate.execute(EVICT_SCRIPT,
+                    Arrays.asList(ETAG_PREFIX + resourceKey, ETAG_PREFIX + resourceKey + GENERATION_SUFFIX),
+                    String.valueOf(ttlMillis * 2));
+        } catch (Exception e) {
+            // 删除失败时条目最多保留到 TTL 过期
+            log.warn("删除资源版本失败: {}, {}", resourceKey, e.getMessage());
+        }
+    }
+}
@@ -27,14 +27,44 @@ public class UserService {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private ResourceVersionService resourceVersionService;
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    // 用户公开信息在资源版本表中的 key
+    public static String versionKey(UUID userId) {
+        return "user:id:" + userId;
+    }
+
+    // 按邮箱、电话查询的用户信息在资源版本表中的 key
+    public static String emailVersionKey(String email) {
+        return "user:email:" + email;
+    }
+
+    public static String phoneVersionKey(String phone) {
+        return "user:phone:" + phone;
+    }
+
+    // 用户信息变更后删除三种查询的资源版本（按邮箱/电话查询返回完整信息，登录状态变化也要删除）
+    private void evictVersions(User user) {
+        resourceVersionService.evictAfterCommit(versionKey(user.getId()));
+        if (user.getEmail() != null) {
+            resourceVersionService.evictAfterCommit(emailVersionKey(user.getEmail()));
+        }
+        if (user.getPhone() != null) {
+            resourceVersionService.evictAfterCommit(phoneVersionKey(user.getPhone()));
+        }
+    }
+
     // 创建用户
     public User createUser(User user) {
         user.setId(UUID.randomUUID());
         user.setCreatedAt(LocalDateTime.now());
         user.setUpdatedAt(LocalDateTime.now());
+        // 邮箱、电话可能曾属于其他用户
+        evictVersions(user);
         return userRepository.save(user);
     }
 
@@ -90,6 +120,7 @@ public class UserService {
             }
 
             user.setUpdatedAt(LocalDateTime.now());
+            evictVersions(user);
             return userRepository.save(user);
         }
         return null;
@@ -102,6 +133,7 @@ public class UserService {
             User u = user.get();
             u.setPasswordHash(newPasswordHash);
             u.setUpdatedAt(LocalDateTime.now());
+            evictVersions(u);
             userRepository.save(u);
         }
     }
@@ -112,6 +144,7 @@ public class UserService {
         if (user.isPresent()) {
             User u = user.get();
             u.setLastLoginTime(LocalDateTime.now());
+            evictVersions(u);
             userRepository.save(u);
         }
     }
@@ -122,6 +155,7 @@ public class UserService {
         if (user.isPresent()) {
             User u = user.get();
             u.setFailedLoginAttempts(u.getFailedLoginAttempts() + 1);
+            evictVersions(u);
             userRepository.save(u);
         }
     }
@@ -132,6 +166,7 @@ public class UserService {
         if (user.isPresent()) {
             User u = user.get();
             u.setFailedLoginAttempts(0);
+            evictVersions(u);
             userRepository.save(u);
         }
     }
@@ -142,6 +177,7 @@ public class UserService {
         if (user.isPresent()) {
             User u = user.get();
             u.setLockedUntil(LocalDateTime.now().plusMinutes(minutes));
+            evictVersions(u);
             userRepository.save(u);
         }
     }
@@ -153,6 +189,7 @@ public class UserService {
             User u = user.get();
             u.setLockedUntil(null);
             u.setFailedLoginAttempts(0);
+            evictVersions(u);
             userRepository.save(u);
         }
     }
@@ -164,6 +201,7 @@ public class UserService {
             User u = user.get();
             u.setIsActive(true);
             u.setUpdatedAt(LocalDateTime.now());
+            evictVersions(u);
             userRepository.save(u);
         }
     }
@@ -175,6 +213,7 @@ public class UserService {
             User u = user.get();
             u.setIsActive(false);
             u.setUpdatedAt(LocalDateTime.now());
+            evictVersions(u);
             userRepository.save(u);
         }
     }
@@ -186,6 +225,8 @@ public class UserService {
             User u = user.get();
             u.setIsActive(false);
             u.setDeletedAt(LocalDateTime.now());
+            u.setUpdatedAt(LocalDateTime.now());
+            evictVersions(u);
             userRepository.save(u);
         }
     }
@@ -0,0 +1,315 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkAnalysis;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.WorkAnalysisRepository;
+import com.example.springboot002.demos.web.Util.KdTree;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 已解析地址的空间索引
+ * 启动时从工作分析加载地址和坐标，之后随地理编码结果和工作分析保存增量加入；
+ * 按坐标在 KD 树中做范围查询，返回 N 米内规范化文本互为前缀的最近已知地址，
+ * 命中时直接复用已知坐标，不再调用地图服务，相同坐标也能命中路线缓存。
+ * 吸附后大量地址共用同一坐标，树中每个坐标只有一个节点，节点上挂该坐标的全部地址。
+ */
+@Slf4j
+@Service
+public class AddressPointIndex {
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+    private static final double METERS_PER_DEGREE = 111320.0;
+    // 层数超过平衡树层数的倍数时重建
+    private static final int MAX_DEPTH_FACTOR = 3;
+    // 因层数重建前至少新增上次重建时节点数的 1/N，单调插入（如沿街道依次解析）时重建开销可摊销
+    private static final int MIN_GROWTH_DIVISOR = 16;
+
+    private final WorkAnalysisRepository workAnalysisRepository;
+    private final GeocodeCacheService geocodeCacheService;
+    private final double radiusMeters;
+    private final int minPrefixChars;
+    private final int maxSuffixChars;
+    private final int maxEntries;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // 规范化地址 -> 当前坐标
+    private final Map<String, KnownAddress> addresses = new HashMap<>();
+    // 坐标 -> 该坐标上的地址；坐标上的地址全部移走后树中的节点不再生效，失效节点过多时整体重建
+    private final Map<String, Location> locations = new HashMap<>();
+    private KdTree<Location> tree = new KdTree<>();
+    private int sizeAtBuild;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong matches = new AtomicLong();
+
+    public AddressPointIndex(WorkAnalysisRepository workAnalysisRepository,
+                             GeocodeCacheService geocodeCacheService,
+                             @Value("${map.nearby.radius-meters:50}") double radiusMeters,
+                             @Value("${map.nearby.min-prefix-chars:6}") int minPrefixChars,
+                             @Value("${map.nearby.max-suffix-chars:8}") int maxSuffixChars,
+                             @Value("${map.nearby.max-entries:500000}") int maxEntries) {
+        this.workAnalysisRepository = workAnalysisRepository;
+        this.geocodeCacheService = geocodeCacheService;
+        this.radiusMeters = radiusMeters;
+        this.minPrefixChars = minPrefixChars;
+        this.maxSuffixChars = maxSuffixChars;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 从工作分析加载已解析的家庭和公司地址
+     */
+    @PostConstruct
+    public void load() {
+        Map<String, KnownAddress> loaded = new HashMap<>();
+        try {
+            String afterId = "";
+            List<Object[]> rows;
+            do {
+                rows = workAnalysisRepository.findAddressPointsAfter(afterId, PageRequest.of(0, LOAD_PAGE_SIZE));
+                for (Object[] row : rows) {
+                    putLoaded(loaded, (String) row[1], (Double) row[2], (Double) row[3]);
+                    putLoaded(loaded, (String) row[4], (Double) row[5], (Double) row[6]);
+                    afterId = (String) row[0];
+                }
+            } while (rows.size() == LOAD_PAGE_SIZE && loaded.size() < maxEntries);
+        } catch (RuntimeException e) {
+            log.warn("地址空间索引加载失败，从空索引开始", e);
+        }
+
+        lock.writeLock().lock();
+        try {
+            // 加载期间新加入的地址优先
+            loaded.forEach((text, known) -> {
+                if (addresses.putIfAbsent(text, known) == null) {
+                    attach(known);
+                }
+            });
+            rebuild();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("地址空间索引已加载: {}个地址", addresses.size());
+    }
+
+    /**
+     * 查找坐标附近 N 米内文本匹配的最近已知地址，返回其坐标；未找到返回 null
+     */
+    public double[] nearest(String address, double longitude, double latitude) {
+        lookups.incrementAndGet();
+        String normalized = geocodeCacheService.normalize(address);
+        if (normalized.length() < minPrefixChars) {
+            return null;
+        }
+
+        double latDelta = radiusMeters / METERS_PER_DEGREE;
+        double lngDelta = radiusMeters / (METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+        Location[] best = new Location[1];
+        double[] bestDistance = {radiusMeters};
+
+        lock.readLock().lock();
+        try {
+            tree.search(longitude - lngDelta, latitude - latDelta, longitude + lngDelta, latitude + latDelta,
+                    point -> {
+                        Location location = point.getValue();
+                        double distance = CommuteEstimator.haversineMeters(
+                                longitude, latitude, location.longitude, location.latitude);
+                        if (distance > bestDistance[0]) {
+                            return;
+                        }
+                        for (KnownAddress known : location.addresses) {
+                            if (textMatches(normalized, known.text)) {
+                                bestDistance[0] = distance;
+                                best[0] = location;
+                                return;
+                            }
+                        }
+                    });
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (best[0] == null) {
+            return null;
+        }
+        matches.incrementAndGet();
+        return new double[]{best[0].longitude, best[0].latitude};
+    }
+
+    /**
+     * 加入或更新已解析的地址
+     */
+    public void add(String address, Double longitude, Double latitude) {
+        if (address == null || longitude == null || latitude == null) {
+            return;
+        }
+        KnownAddress known = new KnownAddress(geocodeCacheService.normalize(address), longitude, latitude);
+        if (known.text.isEmpty()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            KnownAddress previous = addresses.get(known.text);
+            if (previous != null && previous.longitude == longitude && previous.latitude == latitude) {
+                return;
+            }
+            if (previous == null && addresses.size() >= maxEntries) {
+                return;
+            }
+            if (previous != null) {
+                detach(previous);
+            }
+            addresses.put(known.text, known);
+            Location created = attach(known);
+            if (created != null) {
+                tree.insert(created.longitude, created.latitude, created);
+            }
+            if (needsRebuild()) {
+                rebuild();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 加入工作分析的家庭和公司地址
+     */
+    public void add(WorkAnalysis analysis) {
+        add(analysis.getHomeAddress(), analysis.getHomeLongitude(), analysis.getHomeLatitude());
+        add(analysis.getCompanyAddress(), analysis.getCompanyLongitude(), analysis.getCompanyLatitude());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("addresses", addresses.size());
+            stats.put("locations", locations.size());
+            stats.put("treeNodes", tree.size());
+            stats.put("treeDepth", tree.depth());
+        } finally {
+            lock.readLock().unlock();
+        }
+        long lookupCount = lookups.get();
+        stats.put("lookups", lookupCount);
+        stats.put("matches", matches.get());
+        stats.put("matchRatio", lookupCount == 0 ? 0.0 : (double) matches.get() / lookupCount);
+        return stats;
+    }
+
+    /**
+     * 一个文本是另一个的前缀，公共部分不少于最小长度，且较长文本多出的部分不超过上限
+     * （如 "xx路1号院" 与 "xx路1号院3栋"；"xx路1号" 与 "xx路10号" 不匹配）
+     */
+    private boolean textMatches(String query, String known) {
+        String shorter = query.length() <= known.length() ? query : known;
+        String longer = shorter == query ? known : query;
+        return shorter.length() >= minPrefixChars
+                && longer.length() - shorter.length() <= maxSuffixChars
+                && longer.startsWith(shorter);
+    }
+
+    private void putLoaded(Map<String, KnownAddress> loaded, String address, Double longitude, Double latitude) {
+        if (address == null || longitude == null || latitude == null) {
+            return;
+        }
+        String normalized = geocodeCacheService.normalize(address);
+        if (!normalized.isEmpty()) {
+            loaded.put(normalized, new KnownAddress(normalized, longitude, latitude));
+        }
+    }
+
+    /**
+     * 把地址挂到所在坐标上，坐标是新出现的返回新建的 Location（由调用方加入树），需持有写锁
+     */
+    private Location attach(KnownAddress known) {
+        String key = locationKey(known.longitude, known.latitude);
+        Location location = locations.get(key);
+        Location created = null;
+        if (location == null) {
+            location = new Location(known.longitude, known.latitude);
+            locations.put(key, location);
+            created = location;
+        }
+        location.addresses.add(known);
+        return created;
+    }
+
+    /**
+     * 把地址从原坐标上移走，坐标上不再有地址时移除该坐标，需持有写锁
+     */
+    private void detach(KnownAddress known) {
+        String key = locationKey(known.longitude, known.latitude);
+        Location location = locations.get(key);
+        if (location != null && location.addresses.remove(known) && location.addresses.isEmpty()) {
+            locations.remove(key);
+        }
+    }
+
+    private static String locationKey(double longitude, double latitude) {
+        return longitude + "," + latitude;
+    }
+
+    /**
+     * 失效节点超过一半、上次重建后节点数翻倍，或逐点插入使层数过深时重建，需持有写锁
+     */
+    private boolean needsRebuild() {
+        int size = tree.size();
+        int balancedDepth = 32 - Integer.numberOfLeadingZeros(size);
+        return size > locations.size() * 2
+                || size > Math.max(sizeAtBuild, 1) * 2
+                || tree.depth() > MAX_DEPTH_FACTOR * balancedDepth
+                && size - sizeAtBuild >= sizeAtBuild / MIN_GROWTH_DIVISOR;
+    }
+
+    /**
+     * 用当前有效坐标重建平衡树，需持有写锁
+     */
+    private void rebuild() {
+        List<KdTree.Point<Location>> points = new ArrayList<>(locations.size());
+        for (Location location : locations.values()) {
+            points.add(new KdTree.Point<>(location.longitude, location.latitude, location));
+        }
+        tree = KdTree.build(points);
+        sizeAtBuild = tree.size();
+    }
+
+    private static final class KnownAddress {
+        private final String text;
+        private final double longitude;
+        private final double latitude;
+
+        private KnownAddress(String text, double longitude, double latitude) {
+            this.text = text;
+            this.longitude = longitude;
+            this.latitude = latitude;
+        }
+    }
+
+    private static final class Location {
+        private final double longitude;
+        private final double latitude;
+        private final Set<KnownAddress> addresses = new HashSet<>();
+
+        private Location(double longitude, double latitude) {
+            this.longitude = longitude;
+            this.latitude = latitude;
+        }
+    }
+}
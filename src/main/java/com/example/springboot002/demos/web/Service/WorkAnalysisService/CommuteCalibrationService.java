@@ -0,0 +1,342 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteRecord;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkAnalysis;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteRecordRepository;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.WorkAnalysisRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 通勤时长校准
+ * 用实际打卡时长与地图API原始时长之比，在线拟合修正系数：actual ≈ factor × api，
+ * 采用指数加权最小二乘（每个新样本前将历史累计量乘以遗忘因子），近期样本权重更高。
+ * 系数按层级维护：路线+时段(小时)、路线+高峰/平峰、出行方式+时段、出行方式+高峰/平峰，
+ * 查询时取有效样本足够的最具体一层。模型常驻内存，查询不访问数据库，定期快照到 Redis，启动时恢复。
+ */
+@Slf4j
+@Service
+public class CommuteCalibrationService {
+
+    private static final String SNAPSHOT_KEY = "commute:calibration";
+
+    private static final String PEAK = "peak";
+    private static final String OFF_PEAK = "offpeak";
+
+    private final WorkAnalysisRepository workAnalysisRepository;
+    private final CommuteRecordRepository commuteRecordRepository;
+    private final RouteCacheService routeCacheService;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final double decay;
+    private final double minWeight;
+    private final double minRatio;
+    private final double maxRatio;
+    private final int maxKeys;
+
+    private final Map<String, Estimate> estimates = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong observed = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong calibratedLookups = new AtomicLong();
+
+    public CommuteCalibrationService(WorkAnalysisRepository workAnalysisRepository,
+                                     CommuteRecordRepository commuteRecordRepository,
+                                     RouteCacheService routeCacheService,
+                                     StringRedisTemplate stringRedisTemplate,
+                                     @Value("${commute.calibration.half-life-samples:30}") double halfLifeSamples,
+                                     @Value("${commute.calibration.min-weight:5}") double minWeight,
+                                     @Value("${commute.calibration.min-ratio:0.3}") double minRatio,
+                                     @Value("${commute.calibration.max-ratio:4.0}") double maxRatio,
+                                     @Value("${commute.calibration.max-keys:200000}") int maxKeys) {
+        this.workAnalysisRepository = workAnalysisRepository;
+        this.commuteRecordRepository = commuteRecordRepository;
+        this.routeCacheService = routeCacheService;
+        this.stringRedisTemplate = stringRedisTemplate;
+        // 样本数达到半衰期时，旧样本权重衰减一半
+        this.decay = Math.pow(0.5, 1.0 / halfLifeSamples);
+        this.minWeight = minWeight;
+        this.minRatio = minRatio;
+        this.maxRatio = maxRatio;
+        this.maxKeys = maxKeys;
+    }
+
+    @PostConstruct
+    public void restore() {
+        try {
+            Map<Object, Object> snapshot = stringRedisTemplate.opsForHash().entries(SNAPSHOT_KEY);
+            snapshot.forEach((key, value) -> {
+                Estimate estimate = Estimate.parse(value.toString());
+                if (estimate != null) {
+                    estimates.put(key.toString(), estimate);
+                }
+            });
+            log.info("通勤校准模型已恢复: {}个系数", estimates.size());
+        } catch (RuntimeException e) {
+            log.warn("通勤校准模型恢复失败，从空模型开始", e);
+        }
+    }
+
+    /**
+     * 修正系数（热路径，只读内存）：优先路线级，其次出行方式级，有效样本不足时返回 null
+     *
+     * @param routeKey  路线key（以出行方式开头）
+     * @param departure 出发时间，为空时按高峰/平峰整体系数
+     */
+    public Double correctionFactor(String routeKey, String apiMode, boolean isPeakHour, LocalTime departure) {
+        lookups.incrementAndGet();
+        String band = isPeakHour ? PEAK : OFF_PEAK;
+        String slot = departure != null ? slotOf(departure) : null;
+
+        Double factor = null;
+        if (slot != null) {
+            factor = confidentFactor(routeKey(routeKey, slot));
+        }
+        if (factor == null) {
+            factor = confidentFactor(routeKey(routeKey, band));
+        }
+        if (factor == null && slot != null) {
+            factor = confidentFactor(modeKey(apiMode, slot));
+        }
+        if (factor == null) {
+            factor = confidentFactor(modeKey(apiMode, band));
+        }
+        if (factor != null) {
+            calibratedLookups.incrementAndGet();
+        }
+        return factor;
+    }
+
+    /**
+     * 在当前事务提交后用新写入的实际通勤记录更新模型
+     */
+    public void observeAfterCommit(List<CommuteRecord> records) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    observeSafely(records);
+                }
+            });
+        } else {
+            observeSafely(records);
+        }
+    }
+
+    /**
+     * 增量更新：每条记录按 实际时长/该路线最近一次API原始时长 更新所属各层级的累计量
+     */
+    public void observe(Collection<CommuteRecord> records) {
+        Set<String> ids = new HashSet<>();
+        for (CommuteRecord record : records) {
+            if (record.getActualDurationMinutes() != null && record.getCommuteType() != null) {
+                ids.add(record.getWorkAnalysisId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        Map<String, WorkAnalysis> analyses = new HashMap<>();
+        for (WorkAnalysis analysis : workAnalysisRepository.findAllById(ids)) {
+            analyses.put(analysis.getId(), analysis);
+        }
+        Map<String, Integer> baselines = new HashMap<>();
+        for (Object[] row : commuteRecordRepository.findLatestApiDurations(ids)) {
+            baselines.put(row[0] + "|" + row[1], ((Number) row[2]).intValue());
+        }
+
+        for (CommuteRecord record : records) {
+            WorkAnalysis analysis = analyses.get(record.getWorkAnalysisId());
+            Integer api = baselines.get(record.getWorkAnalysisId() + "|" + record.getCommuteType());
+            if (analysis == null || api == null || api <= 0 || record.getActualDurationMinutes() == null
+                    || analysis.getHomeLongitude() == null || analysis.getCompanyLongitude() == null) {
+                continue;
+            }
+            double actual = record.getActualDurationMinutes();
+            double ratio = actual / api;
+            if (ratio < minRatio || ratio > maxRatio) {
+                // 明显异常的打卡（忘记打卡、中途停留等）不参与拟合
+                discarded.incrementAndGet();
+                continue;
+            }
+
+            String home = analysis.getHomeLongitude() + "," + analysis.getHomeLatitude();
+            String company = analysis.getCompanyLongitude() + "," + analysis.getCompanyLatitude();
+            boolean evening = "evening".equals(record.getCommuteType());
+            String apiMode = MapApiService.toApiMode(analysis.getCommuteMode().name());
+            String routeKey = routeCacheService.buildKey(evening ? company : home, evening ? home : company, apiMode);
+            String band = Boolean.TRUE.equals(record.getIsPeakHour()) ? PEAK : OFF_PEAK;
+            String slot = record.getRecordDate() != null ? slotOf(record.getRecordDate().toLocalTime()) : null;
+
+            update(routeKey(routeKey, band), api, actual);
+            update(modeKey(apiMode, band), api, actual);
+            if (slot != null) {
+                update(routeKey(routeKey, slot), api, actual);
+                update(modeKey(apiMode, slot), api, actual);
+            }
+            observed.incrementAndGet();
+        }
+    }
+
+    /**
+     * 将有变化的系数写入 Redis 快照（多节点各自学习，同一系数以最后写入为准）
+     */
+    @Scheduled(fixedDelayString = "${commute.calibration.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        Map<String, String> changed = new HashMap<>();
+        for (String key : new ArrayList<>(dirty)) {
+            dirty.remove(key);
+            Estimate estimate = estimates.get(key);
+            if (estimate != null) {
+                changed.put(key, estimate.format());
+            }
+        }
+        try {
+            stringRedisTemplate.opsForHash().putAll(SNAPSHOT_KEY, changed);
+        } catch (RuntimeException e) {
+            dirty.addAll(changed.keySet());
+            log.warn("通勤校准模型快照失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshot();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("factors", estimates.size());
+        stats.put("observed", observed.get());
+        stats.put("discarded", discarded.get());
+        stats.put("lookups", lookups.get());
+        stats.put("calibratedLookups", calibratedLookups.get());
+        stats.put("pendingSnapshot", dirty.size());
+
+        Map<String, Object> modes = new LinkedHashMap<>();
+        estimates.forEach((key, estimate) -> {
+            if (key.startsWith("m|")) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                synchronized (estimate) {
+                    item.put("factor", estimate.factor());
+                    item.put("weight", estimate.weight);
+                }
+                modes.put(key.substring(2), item);
+            }
+        });
+        stats.put("modeFactors", modes);
+        return stats;
+    }
+
+    private void observeSafely(Collection<CommuteRecord> records) {
+        try {
+            observe(records);
+        } catch (RuntimeException e) {
+            // 校准失败不影响打卡写入
+            log.warn("通勤校准模型更新失败", e);
+        }
+    }
+
+    private void update(String key, double api, double actual) {
+        Estimate estimate = estimates.get(key);
+        if (estimate == null) {
+            if (estimates.size() >= maxKeys && key.startsWith("r|")) {
+                return;
+            }
+            estimate = estimates.computeIfAbsent(key, k -> new Estimate());
+        }
+        synchronized (estimate) {
+            estimate.sxy = estimate.sxy * decay + api * actual;
+            estimate.sxx = estimate.sxx * decay + api * api;
+            estimate.weight = estimate.weight * decay + 1;
+            estimate.updatedAt = System.currentTimeMillis();
+        }
+        dirty.add(key);
+    }
+
+    private Double confidentFactor(String key) {
+        Estimate estimate = estimates.get(key);
+        if (estimate == null) {
+            return null;
+        }
+        synchronized (estimate) {
+            return estimate.weight >= minWeight ? estimate.factor() : null;
+        }
+    }
+
+    /**
+     * 时段按小时划分
+     */
+    private static String slotOf(LocalTime time) {
+        return "h" + time.getHour();
+    }
+
+    private static String routeKey(String routeKey, String segment) {
+        return "r|" + routeKey + "|" + segment;
+    }
+
+    private static String modeKey(String apiMode, String segment) {
+        return "m|" + apiMode + "|" + segment;
+    }
+
+    /**
+     * 单个系数的指数加权累计量：factor = Σwxy / Σwx²
+     */
+    private static final class Estimate {
+        private double sxy;
+        private double sxx;
+        private double weight; // 有效样本数
+        private long updatedAt;
+
+        private double factor() {
+            return sxx > 0 ? sxy / sxx : 1.0;
+        }
+
+        private String format() {
+            synchronized (this) {
+                return sxy + "," + sxx + "," + weight + "," + updatedAt;
+            }
+        }
+
+        private static Estimate parse(String value) {
+            String[] parts = value.split(",");
+            if (parts.length != 4) {
+                return null;
+            }
+            try {
+                Estimate estimate = new Estimate();
+                estimate.sxy = Double.parseDouble(parts[0]);
+                estimate.sxx = Double.parseDouble(parts[1]);
+                estimate.weight = Double.parseDouble(parts[2]);
+                estimate.updatedAt = Long.parseLong(parts[3]);
+                return estimate;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
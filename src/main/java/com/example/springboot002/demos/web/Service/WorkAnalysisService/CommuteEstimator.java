@@ -0,0 +1,89 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteMode;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 离线通勤估算
+ * 地图服务不可用时使用：球面直线距离 × 绕行系数 ÷ 出行方式平均速度
+ */
+@Component
+public class CommuteEstimator {
+
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    private static final Map<CommuteMode, Profile> PROFILES = new EnumMap<>(CommuteMode.class);
+
+    static {
+        // 平均速度(km/h)、绕行系数、固定耗时(分钟，如候车/停车)
+        PROFILES.put(CommuteMode.DRIVING, new Profile(28, 1.4, 5));
+        PROFILES.put(CommuteMode.TRANSIT, new Profile(20, 1.3, 10));
+        PROFILES.put(CommuteMode.WALKING, new Profile(4.8, 1.25, 0));
+        PROFILES.put(CommuteMode.CYCLING, new Profile(13, 1.3, 2));
+        PROFILES.put(CommuteMode.MIXED, new Profile(18, 1.35, 8));
+    }
+
+    /**
+     * 估算通勤距离(米)和时长(分钟)
+     *
+     * @param origin      起点坐标 "经度,纬度"
+     * @param destination 终点坐标 "经度,纬度"
+     */
+    public int[] estimate(String origin, String destination, String mode) {
+        double[] from = parseCoords(origin);
+        double[] to = parseCoords(destination);
+
+        Profile profile = PROFILES.get(parseMode(mode));
+        double routeMeters = haversineMeters(from[0], from[1], to[0], to[1]) * profile.detourFactor;
+        double minutes = routeMeters / 1000.0 / profile.speedKmh * 60 + profile.fixedMinutes;
+
+        return new int[]{(int) Math.round(routeMeters), (int) Math.ceil(minutes)};
+    }
+
+    /**
+     * 两点间球面距离(米)
+     */
+    public static double haversineMeters(double lng1, double lat1, double lng2, double lat2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private double[] parseCoords(String location) {
+        try {
+            String[] parts = location.split(",");
+            return new double[]{Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim())};
+        } catch (RuntimeException e) {
+            // 地址文本无法离线估算
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "地图服务暂不可用,请稍后重试");
+        }
+    }
+
+    private CommuteMode parseMode(String mode) {
+        try {
+            return mode != null ? CommuteMode.valueOf(mode.toUpperCase()) : CommuteMode.DRIVING;
+        } catch (IllegalArgumentException e) {
+            return CommuteMode.DRIVING;
+        }
+    }
+
+    private static final class Profile {
+        private final double speedKmh;
+        private final double detourFactor;
+        private final double fixedMinutes;
+
+        private Profile(double speedKmh, double detourFactor, double fixedMinutes) {
+            this.speedKmh = speedKmh;
+            this.detourFactor = detourFactor;
+            this.fixedMinutes = fixedMinutes;
+        }
+    }
+}
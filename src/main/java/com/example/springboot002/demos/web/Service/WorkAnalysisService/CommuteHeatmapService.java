@@ -0,0 +1,357 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.HeatmapCellResponse;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.HeatmapResponse;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteDurationSketch;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteHeatmapCell;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteRecord;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteStatistics;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkAnalysis;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteDurationSketchRepository;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteHeatmapCellRepository;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteStatisticsRepository;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.WorkAnalysisRepository;
+import com.example.springboot002.demos.web.Service.AdvisoryLockService;
+import com.example.springboot002.demos.web.Util.DurationSketch;
+import com.example.springboot002.demos.web.Util.GeoHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 通勤热力图预聚合
+ * 按家庭坐标的 geohash 格子维护居住人数、到公司直线距离之和以及实际通勤时长分布，
+ * 创建/重算工作分析、写入实际通勤记录时增量更新；瓦片查询只读取范围内的格子，
+ * 按请求精度取 geohash 前缀合并，居住人数不足最小值的格子不返回。
+ * 增量更新持有共享 advisory 锁，重建持有排他锁，重建期间的增量更新等待重建提交后再执行。
+ */
+@Slf4j
+@Service
+public class CommuteHeatmapService {
+
+    private static final int REBUILD_PAGE_SIZE = 500;
+    private static final String LOCK_NAMESPACE = "commute-heatmap";
+    private static final String LOCK_KEY = "cells";
+
+    private final CommuteHeatmapCellRepository cellRepository;
+    private final WorkAnalysisRepository workAnalysisRepository;
+    private final CommuteDurationSketchRepository sketchRepository;
+    private final CommuteStatisticsRepository statisticsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AdvisoryLockService advisoryLockService;
+    private final int cellPrecision;
+    private final int minResidents;
+    private final int maxTileCells;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public CommuteHeatmapService(CommuteHeatmapCellRepository cellRepository,
+                                 WorkAnalysisRepository workAnalysisRepository,
+                                 CommuteDurationSketchRepository sketchRepository,
+                                 CommuteStatisticsRepository statisticsRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 AdvisoryLockService advisoryLockService,
+                                 @Value("${heatmap.cell-precision:6}") int cellPrecision,
+                                 @Value("${heatmap.min-residents:5}") int minResidents,
+                                 @Value("${heatmap.max-tile-cells:20000}") int maxTileCells) {
+        this.cellRepository = cellRepository;
+        this.workAnalysisRepository = workAnalysisRepository;
+        this.sketchRepository = sketchRepository;
+        this.statisticsRepository = statisticsRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.advisoryLockService = advisoryLockService;
+        this.cellPrecision = Math.max(1, Math.min(cellPrecision, GeoHash.MAX_PRECISION));
+        this.minResidents = minResidents;
+        this.maxTileCells = maxTileCells;
+    }
+
+    /**
+     * 按工作分析当前坐标调整其所在格子的居住人数，需在保存工作分析的同一事务内调用
+     * 家庭坐标换到新格子时从旧格子移出；已累加的历史通勤时长仍留在旧格子
+     */
+    public void syncResident(WorkAnalysis analysis) {
+        String cell = cellOf(analysis);
+        Integer distance = cell != null ? officeDistance(analysis) : null;
+        if (Objects.equals(cell, analysis.getHeatmapCell())
+                && Objects.equals(distance, analysis.getHeatmapDistanceMeters())) {
+            return;
+        }
+
+        advisoryLockService.lockShared(LOCK_NAMESPACE, LOCK_KEY);
+        // 先更新实体字段，原生累加语句触发的 flush 会一并写出
+        String previousCell = analysis.getHeatmapCell();
+        Integer previousDistance = analysis.getHeatmapDistanceMeters();
+        analysis.setHeatmapCell(cell);
+        analysis.setHeatmapDistanceMeters(distance);
+        if (previousCell != null) {
+            addResidents(previousCell, -1, previousDistance);
+        }
+        if (cell != null) {
+            addResidents(cell, 1, distance);
+        }
+    }
+
+    /**
+     * 将已保存的实际通勤记录累加到所属格子的时长分布，需在保存记录的同一事务内调用
+     */
+    public void accumulate(Collection<CommuteRecord> records) {
+        Set<String> ids = records.stream()
+                .filter(record -> record.getActualDurationMinutes() != null)
+                .map(CommuteRecord::getWorkAnalysisId)
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return;
+        }
+        // 先加锁再读取格子，重建期间等待，读到的是重建后的格子
+        advisoryLockService.lockShared(LOCK_NAMESPACE, LOCK_KEY);
+        Map<String, String> cells = new HashMap<>();
+        for (WorkAnalysis analysis : workAnalysisRepository.findAllById(ids)) {
+            if (analysis.getHeatmapCell() != null) {
+                cells.put(analysis.getId(), analysis.getHeatmapCell());
+            }
+        }
+
+        // 按格子排序后依次加锁，避免并发批次互相等待
+        Map<String, Delta> deltas = new TreeMap<>();
+        for (CommuteRecord record : records) {
+            String cell = cells.get(record.getWorkAnalysisId());
+            if (cell != null && record.getActualDurationMinutes() != null) {
+                deltas.computeIfAbsent(cell, k -> new Delta()).add(record.getActualDurationMinutes());
+            }
+        }
+        deltas.forEach(this::mergeDurations);
+    }
+
+    /**
+     * 获取范围内的热力图格子
+     *
+     * @param precision 返回格子的 geohash 长度，不能超过预聚合精度
+     */
+    public HeatmapResponse getTiles(double minLongitude, double minLatitude,
+                                    double maxLongitude, double maxLatitude, Integer precision) {
+        int tilePrecision = precision != null ? precision : cellPrecision;
+        if (tilePrecision < 1 || tilePrecision > cellPrecision) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "精度范围为1到" + cellPrecision);
+        }
+        if (minLongitude > maxLongitude || minLatitude > maxLatitude) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "查询范围无效");
+        }
+
+        List<CommuteHeatmapCell> rows = cellRepository.findInBounds(
+                minLongitude, minLatitude, maxLongitude, maxLatitude);
+        if (rows.size() > maxTileCells) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "查询范围过大,请缩小范围");
+        }
+
+        Map<String, Tile> tiles = new TreeMap<>();
+        for (CommuteHeatmapCell row : rows) {
+            tiles.computeIfAbsent(row.getCell().substring(0, tilePrecision), k -> new Tile()).merge(row);
+        }
+
+        List<HeatmapCellResponse> cells = new ArrayList<>();
+        int suppressed = 0;
+        for (Map.Entry<String, Tile> entry : tiles.entrySet()) {
+            Tile tile = entry.getValue();
+            if (tile.residents <= 0) {
+                continue;
+            }
+            if (tile.residents < minResidents) {
+                suppressed++;
+                continue;
+            }
+            cells.add(toResponse(entry.getKey(), tile));
+        }
+
+        HeatmapResponse response = new HeatmapResponse();
+        response.setPrecision(tilePrecision);
+        response.setCells(cells);
+        response.setSuppressedCells(suppressed);
+        return response;
+    }
+
+    /**
+     * 清空并按现有工作分析和通勤统计重建全部格子（维护操作）
+     * 在一个事务内持有排他锁完成，期间的增量更新等待提交后基于重建结果继续累加；逐页刷新并清空持久化上下文
+     * 重建后每个工作分析的全部历史通勤时长都计入其当前所在格子
+     */
+    public Map<String, Object> rebuild() {
+        long start = System.nanoTime();
+        Long analyses = transactionTemplate.execute(status -> {
+            advisoryLockService.lock(LOCK_NAMESPACE, LOCK_KEY);
+            cellRepository.deleteAllCells();
+            workAnalysisRepository.clearHeatmapCells();
+
+            long total = 0;
+            int page = 0;
+            while (true) {
+                int count = rebuildPage(PageRequest.of(page++, REBUILD_PAGE_SIZE, Sort.by("id")));
+                if (count == 0) {
+                    return total;
+                }
+                total += count;
+                entityManager.flush();
+                entityManager.clear();
+            }
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("analyses", analyses);
+        result.put("cells", cellRepository.count());
+        result.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("通勤热力图重建完成: {}", result);
+        return result;
+    }
+
+    private int rebuildPage(PageRequest pageable) {
+        Page<WorkAnalysis> page = workAnalysisRepository.findAll(pageable);
+        if (!page.hasContent()) {
+            return 0;
+        }
+        // 只通过批量更新写列，不修改实体，避免刷新工作分析的 updatedAt
+        Map<String, String> cells = new HashMap<>();
+        for (WorkAnalysis analysis : page) {
+            String cell = cellOf(analysis);
+            Integer distance = cell != null ? officeDistance(analysis) : null;
+            if (cell != null) {
+                addResidents(cell, 1, distance);
+                cells.put(analysis.getId(), cell);
+            }
+            // 同时补齐上线前数据的 geohash 列
+            workAnalysisRepository.updateSpatialColumns(analysis.getId(),
+                    geohash(analysis.getHomeLongitude(), analysis.getHomeLatitude()),
+                    geohash(analysis.getCompanyLongitude(), analysis.getCompanyLatitude()),
+                    cell, distance);
+        }
+        if (cells.isEmpty()) {
+            return page.getNumberOfElements();
+        }
+
+        Map<String, Delta> deltas = new TreeMap<>();
+        for (CommuteStatistics row : statisticsRepository.findByIdWorkAnalysisIdIn(cells.keySet())) {
+            Delta delta = deltas.computeIfAbsent(cells.get(row.getId().getWorkAnalysisId()), k -> new Delta());
+            delta.count += row.getRecordCount();
+            delta.sum += row.getDurationSum();
+        }
+        for (CommuteDurationSketch row : sketchRepository.findByIdWorkAnalysisIdIn(cells.keySet())) {
+            deltas.computeIfAbsent(cells.get(row.getId().getWorkAnalysisId()), k -> new Delta())
+                    .sketch.merge(DurationSketch.fromBytes(row.getSketch()));
+        }
+        deltas.forEach(this::mergeDurations);
+        return page.getNumberOfElements();
+    }
+
+    private void addResidents(String cell, long residents, Integer distance) {
+        double[] center = GeoHash.center(cell);
+        cellRepository.addResidents(cell, center[0], center[1], residents,
+                residents * (distance != null ? distance : 0), new DurationSketch().toBytes());
+    }
+
+    /**
+     * 在行锁内把增量时长合并进格子
+     */
+    private void mergeDurations(String cell, Delta delta) {
+        addResidents(cell, 0, null);
+        CommuteHeatmapCell row = cellRepository.findForUpdate(cell)
+                .orElseThrow(() -> new IllegalStateException("热力图格子不存在: " + cell));
+        DurationSketch sketch = DurationSketch.fromBytes(row.getSketch());
+        sketch.merge(delta.sketch);
+        row.setSketch(sketch.toBytes());
+        row.setRecordCount(row.getRecordCount() + delta.count);
+        row.setDurationSum(row.getDurationSum() + delta.sum);
+        row.setUpdatedAt(LocalDateTime.now());
+        cellRepository.save(row);
+    }
+
+    private String cellOf(WorkAnalysis analysis) {
+        if (analysis.getHomeLongitude() == null || analysis.getHomeLatitude() == null) {
+            return null;
+        }
+        return GeoHash.encode(analysis.getHomeLongitude(), analysis.getHomeLatitude(), cellPrecision);
+    }
+
+    private String geohash(Double longitude, Double latitude) {
+        return longitude != null && latitude != null
+                ? GeoHash.encode(longitude, latitude, WorkAnalysis.GEOHASH_PRECISION) : null;
+    }
+
+    private Integer officeDistance(WorkAnalysis analysis) {
+        if (analysis.getCompanyLongitude() == null || analysis.getCompanyLatitude() == null) {
+            return 0;
+        }
+        return (int) Math.round(CommuteEstimator.haversineMeters(analysis.getHomeLongitude(),
+                analysis.getHomeLatitude(), analysis.getCompanyLongitude(), analysis.getCompanyLatitude()));
+    }
+
+    private HeatmapCellResponse toResponse(String cell, Tile tile) {
+        double[] center = GeoHash.center(cell);
+        HeatmapCellResponse response = new HeatmapCellResponse();
+        response.setCell(cell);
+        response.setCenterLongitude(center[0]);
+        response.setCenterLatitude(center[1]);
+        response.setResidents(tile.residents);
+        response.setAverageOfficeDistanceMeters((int) Math.round((double) tile.distanceSum / tile.residents));
+        response.setRecords(tile.recordCount);
+        if (tile.recordCount > 0) {
+            response.setAverageDuration(Math.round((double) tile.durationSum / tile.recordCount * 10) / 10.0);
+            response.setP50Duration(tile.sketch.quantile(0.5));
+            response.setP90Duration(tile.sketch.quantile(0.9));
+        }
+        return response;
+    }
+
+    /**
+     * 待合并进格子的通勤时长增量
+     */
+    private static final class Delta {
+        private long count;
+        private long sum;
+        private final DurationSketch sketch = new DurationSketch();
+
+        private void add(int duration) {
+            count++;
+            sum += duration;
+            sketch.add(duration);
+        }
+    }
+
+    /**
+     * 按请求精度合并后的瓦片
+     */
+    private static final class Tile {
+        private long residents;
+        private long distanceSum;
+        private long recordCount;
+        private long durationSum;
+        private final DurationSketch sketch = new DurationSketch();
+
+        private void merge(CommuteHeatmapCell row) {
+            residents += row.getResidentCount();
+            distanceSum += row.getOfficeDistanceSum();
+            recordCount += row.getRecordCount();
+            durationSum += row.getDurationSum();
+            sketch.merge(DurationSketch.fromBytes(row.getSketch()));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest.CommuteMatrixRequest;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteMatrixCellResponse;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteMode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 通勤矩阵计算
+ * 起点 × 终点 × 通勤方式逐格计算，通过缓存和请求合并访问地图服务，
+ * 并发数有上限，每个单元格完成后立即以 SSE 事件推送。
+ * 一次请求最多产生数百次地图调用，按后台优先级限流，不挤占交互请求的配额。
+ */
+@Slf4j
+@Service
+public class CommuteMatrixService {
+
+    private final MapApiService mapApiService;
+    private final int maxParallelism;
+    private final int maxCells;
+    private final long timeoutMs;
+
+    public CommuteMatrixService(MapApiService mapApiService,
+                                @Value("${map.matrix.max-parallelism:8}") int maxParallelism,
+                                @Value("${map.matrix.max-cells:400}") int maxCells,
+                                @Value("${map.matrix.timeout-ms:60000}") long timeoutMs) {
+        this.mapApiService = mapApiService;
+        this.maxParallelism = maxParallelism;
+        this.maxCells = maxCells;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * 计算通勤矩阵，结果以 "cell" 事件逐格推送，全部完成后推送 "done" 事件
+     */
+    public SseEmitter streamMatrix(CommuteMatrixRequest request) {
+        List<String> modes = resolveModes(request.getModes());
+        int total = request.getOrigins().size() * request.getDestinations().size() * modes.size();
+        if (total > maxCells) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "矩阵单元格数量不能超过" + maxCells);
+        }
+        boolean isPeakHour = Boolean.TRUE.equals(request.getIsPeakHour());
+
+        // 每个不同的地址只解析一次
+        Map<String, CompletableFuture<String>> locations = new HashMap<>();
+        for (String location : request.getOrigins()) {
+            locations.computeIfAbsent(location,
+                    key -> mapApiService.resolveLocationAsync(key, MapCallPriority.BACKGROUND));
+        }
+        for (String location : request.getDestinations()) {
+            locations.computeIfAbsent(location,
+                    key -> mapApiService.resolveLocationAsync(key, MapCallPriority.BACKGROUND));
+        }
+
+        Queue<CommuteMatrixCellResponse> pending = new ConcurrentLinkedQueue<>();
+        for (int o = 0; o < request.getOrigins().size(); o++) {
+            for (int d = 0; d < request.getDestinations().size(); d++) {
+                for (String mode : modes) {
+                    CommuteMatrixCellResponse cell = new CommuteMatrixCellResponse();
+                    cell.setOriginIndex(o);
+                    cell.setDestinationIndex(d);
+                    cell.setMode(mode);
+                    pending.add(cell);
+                }
+            }
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        MatrixRun run = new MatrixRun(request, locations, pending, total, isPeakHour, emitter);
+        emitter.onTimeout(() -> run.cancelled.set(true));
+        emitter.onError(e -> run.cancelled.set(true));
+
+        for (int i = 0; i < Math.min(maxParallelism, total); i++) {
+            startNext(run);
+        }
+        return emitter;
+    }
+
+    private void startNext(MatrixRun run) {
+        if (run.cancelled.get()) {
+            return;
+        }
+        CommuteMatrixCellResponse cell = run.pending.poll();
+        if (cell == null) {
+            return;
+        }
+
+        CompletableFuture<String> origin = run.locations.get(run.request.getOrigins().get(cell.getOriginIndex()));
+        CompletableFuture<String> destination =
+                run.locations.get(run.request.getDestinations().get(cell.getDestinationIndex()));
+
+        origin.thenCombine(destination, (from, to) -> new String[]{from, to})
+                .thenCompose(pair -> mapApiService.calculateCommuteAsync(
+                        pair[0], pair[1], cell.getMode(), run.isPeakHour, MapCallPriority.BACKGROUND))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        cell.setError(cause instanceof ResponseStatusException
+                                ? ((ResponseStatusException) cause).getReason() : cause.getMessage());
+                    } else {
+                        cell.setResult(result);
+                    }
+                    send(run, SseEmitter.event().name("cell").data(cell));
+
+                    if (run.remaining.decrementAndGet() == 0) {
+                        send(run, SseEmitter.event().name("done").data(run.total));
+                        run.emitter.complete();
+                    } else {
+                        startNext(run);
+                    }
+                });
+    }
+
+    private void send(MatrixRun run, SseEmitter.SseEventBuilder event) {
+        if (run.cancelled.get()) {
+            return;
+        }
+        try {
+            run.emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开，停止派发剩余单元格
+            run.cancelled.set(true);
+            log.info("通勤矩阵推送中断: {}", e.getMessage());
+        }
+    }
+
+    private List<String> resolveModes(List<String> requested) {
+        List<String> modes = new ArrayList<>();
+        if (requested == null || requested.isEmpty()) {
+            for (CommuteMode mode : CommuteMode.values()) {
+                if (mode != CommuteMode.MIXED) {
+                    modes.add(mode.name());
+                }
+            }
+            return modes;
+        }
+        for (String mode : requested) {
+            try {
+                modes.add(CommuteMode.valueOf(mode.toUpperCase()).name());
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的通勤方式: " + mode);
+            }
+        }
+        return modes;
+    }
+
+    /**
+     * 单次矩阵计算的运行状态
+     */
+    private static final class MatrixRun {
+        private final CommuteMatrixRequest request;
+        private final Map<String, CompletableFuture<String>> locations;
+        private final Queue<CommuteMatrixCellResponse> pending;
+        private final int total;
+        private final boolean isPeakHour;
+        private final SseEmitter emitter;
+        private final AtomicInteger remaining;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        private MatrixRun(CommuteMatrixRequest request, Map<String, CompletableFuture<String>> locations,
+                          Queue<CommuteMatrixCellResponse> pending, int total, boolean isPeakHour,
+                          SseEmitter emitter) {
+            this.request = request;
+            this.locations = locations;
+            this.pending = pending;
+            this.total = total;
+            this.isPeakHour = isPeakHour;
+            this.emitter = emitter;
+            this.remaining = new AtomicInteger(total);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.Service.AdvisoryLockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 通勤记录分区维护
+ * commute_record 按 record_date 月分区（迁移脚本见 db/commute_record_partitioning.sql）。
+ * 定时预建未来几个月的分区；超过保留期的分区先按天汇总到 commute_daily_rollup，
+ * 并把各工作分析最新的规划/API时长保存到 commute_latest_duration，再在同一事务内 DETACH 并删除。
+ * 每一步在各自的短事务内持有 advisory 锁，多节点同时触发时只有一个节点执行。
+ * 未执行迁移（非分区表）时不做任何操作。
+ */
+@Slf4j
+@Service
+public class CommutePartitionManager {
+
+    private static final String PARENT_TABLE = "commute_record";
+    private static final String DEFAULT_PARTITION = "commute_record_default";
+    private static final Pattern PARTITION_NAME = Pattern.compile("commute_record_p(\\d{6})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String ROLLUP_SQL =
+            "INSERT INTO commute_daily_rollup (work_analysis_id, rollup_date, commute_type, is_peak_hour, " +
+            "record_count, actual_count, actual_duration_sum, actual_duration_min, actual_duration_max, " +
+            "actual_duration_sum_sq) " +
+            "SELECT work_analysis_id, CAST(record_date AS DATE), COALESCE(commute_type, 'unknown'), " +
+            "COALESCE(is_peak_hour, FALSE), COUNT(*), COUNT(actual_duration_minutes), " +
+            "COALESCE(SUM(actual_duration_minutes), 0), MIN(actual_duration_minutes), MAX(actual_duration_minutes), " +
+            "COALESCE(SUM(CAST(actual_duration_minutes AS BIGINT) * actual_duration_minutes), 0) " +
+            "FROM %s WHERE record_date < ? " +
+            "GROUP BY work_analysis_id, CAST(record_date AS DATE), COALESCE(commute_type, 'unknown'), " +
+            "COALESCE(is_peak_hour, FALSE) " +
+            "ON CONFLICT (work_analysis_id, rollup_date, commute_type, is_peak_hour) DO UPDATE SET " +
+            "record_count = commute_daily_rollup.record_count + EXCLUDED.record_count, " +
+            "actual_count = commute_daily_rollup.actual_count + EXCLUDED.actual_count, " +
+            "actual_duration_sum = commute_daily_rollup.actual_duration_sum + EXCLUDED.actual_duration_sum, " +
+            "actual_duration_min = LEAST(commute_daily_rollup.actual_duration_min, EXCLUDED.actual_duration_min), " +
+            "actual_duration_max = GREATEST(commute_daily_rollup.actual_duration_max, EXCLUDED.actual_duration_max), " +
+            "actual_duration_sum_sq = commute_daily_rollup.actual_duration_sum_sq + EXCLUDED.actual_duration_sum_sq";
+
+    // 分区中每个工作分析、每种通勤类型最新的规划时长和API时长（口径同 CommuteRecordRepository.findLatest*Durations），
+    // 只覆盖更早的已保存值；删除分区后最新时长查询合并此表，结果不变
+    private static final String SAVE_LATEST_PLANNED_SQL =
+            "INSERT INTO commute_latest_duration (work_analysis_id, commute_type, planned_duration_minutes, planned_at) " +
+            "SELECT DISTINCT ON (work_analysis_id, commute_type) work_analysis_id, commute_type, duration_minutes, " +
+            "created_at FROM %s WHERE record_date < ? AND commute_type IS NOT NULL " +
+            "AND duration_minutes IS NOT NULL AND actual_duration_minutes IS NULL " +
+            "ORDER BY work_analysis_id, commute_type, created_at DESC " +
+            "ON CONFLICT (work_analysis_id, commute_type) DO UPDATE SET " +
+            "planned_duration_minutes = EXCLUDED.planned_duration_minutes, planned_at = EXCLUDED.planned_at " +
+            "WHERE commute_latest_duration.planned_duration_minutes IS NULL " +
+            "OR commute_latest_duration.planned_at < EXCLUDED.planned_at";
+
+    private static final String SAVE_LATEST_API_SQL =
+            "INSERT INTO commute_latest_duration (work_analysis_id, commute_type, api_duration_minutes, api_at) " +
+            "SELECT DISTINCT ON (work_analysis_id, commute_type) work_analysis_id, commute_type, api_duration_minutes, " +
+            "created_at FROM %s WHERE record_date < ? AND commute_type IS NOT NULL " +
+            "AND api_duration_minutes IS NOT NULL AND (is_estimated IS NULL OR is_estimated = FALSE) " +
+            "ORDER BY work_analysis_id, commute_type, created_at DESC " +
+            "ON CONFLICT (work_analysis_id, commute_type) DO UPDATE SET " +
+            "api_duration_minutes = EXCLUDED.api_duration_minutes, api_at = EXCLUDED.api_at " +
+            "WHERE commute_latest_duration.api_duration_minutes IS NULL " +
+            "OR commute_latest_duration.api_at < EXCLUDED.api_at";
+
+    private static final String LOCK_NAMESPACE = "commute-partition";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AdvisoryLockService advisoryLockService;
+    private final int premakeMonths;
+    private final int retentionMonths;
+
+    public CommutePartitionManager(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   AdvisoryLockService advisoryLockService,
+                                   @Value("${commute.partition.premake-months:3}") int premakeMonths,
+                                   @Value("${commute.partition.retention-months:12}") int retentionMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.advisoryLockService = advisoryLockService;
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${commute.partition.cron:0 30 3 * * *}")
+    public void maintainPartitions() {
+        try {
+            if (!isPartitioned()) {
+                log.debug("commute_record 未分区，跳过分区维护");
+                return;
+            }
+            createUpcomingPartitions();
+            expireOldPartitions();
+        } catch (RuntimeException e) {
+            log.error("通勤记录分区维护失败", e);
+        }
+    }
+
+    private boolean isPartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid " +
+                        "WHERE c.relname = ?)", Boolean.class, PARENT_TABLE);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    private void createUpcomingPartitions() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= premakeMonths; i++) {
+            YearMonth month = current.plusMonths(i);
+            String name = partitionName(month);
+            try {
+                runLocked(name, () -> jdbcTemplate.execute(String.format(
+                        "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                        name, PARENT_TABLE, month.atDay(1), month.plusMonths(1).atDay(1))));
+            } catch (RuntimeException e) {
+                // 兜底分区中已有该月数据时无法直接建分区，需人工迁移
+                log.warn("通勤记录分区创建失败: {}", name, e);
+            }
+        }
+    }
+
+    /**
+     * 汇总并删除早于保留期起点的整月分区，兜底分区中早于起点的行同样汇总后删除
+     */
+    private void expireOldPartitions() {
+        LocalDate cutoff = YearMonth.now().minusMonths(retentionMonths).atDay(1);
+        Timestamp cutoffTs = Timestamp.valueOf(cutoff.atStartOfDay());
+
+        for (String partition : listPartitions()) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.parse(matcher.group(1), PARTITION_SUFFIX);
+            if (!month.plusMonths(1).atDay(1).isAfter(cutoff)) {
+                runLocked(partition, () -> {
+                    // 加锁前其他节点可能已处理完，重新确认分区仍挂在父表上，避免重复汇总
+                    if (!listPartitions().contains(partition)) {
+                        return;
+                    }
+                    int rows = jdbcTemplate.update(String.format(ROLLUP_SQL, partition), cutoffTs);
+                    int saved = saveLatestDurations(partition, cutoffTs);
+                    jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + partition);
+                    jdbcTemplate.execute("DROP TABLE " + partition);
+                    log.info("通勤记录分区已汇总并删除: {}, 日汇总{}行, 保存最新时长{}行", partition, rows, saved);
+                });
+            }
+        }
+
+        runLocked(DEFAULT_PARTITION, () -> {
+            if (!listPartitions().contains(DEFAULT_PARTITION)) {
+                return;
+            }
+            jdbcTemplate.update(String.format(ROLLUP_SQL, DEFAULT_PARTITION), cutoffTs);
+            saveLatestDurations(DEFAULT_PARTITION, cutoffTs);
+            int deleted = jdbcTemplate.update(
+                    "DELETE FROM " + DEFAULT_PARTITION + " WHERE record_date < ?", cutoffTs);
+            if (deleted > 0) {
+                log.info("兜底分区过期记录已汇总并删除: {}行", deleted);
+            }
+        });
+    }
+
+    private List<String> listPartitions() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent " +
+                        "WHERE p.relname = ? ORDER BY c.relname", String.class, PARENT_TABLE);
+    }
+
+    /**
+     * 把分区中早于保留期起点的记录里最新的规划/API时长保存到 commute_latest_duration
+     */
+    private int saveLatestDurations(String partition, Timestamp cutoffTs) {
+        return jdbcTemplate.update(String.format(SAVE_LATEST_PLANNED_SQL, partition), cutoffTs)
+                + jdbcTemplate.update(String.format(SAVE_LATEST_API_SQL, partition), cutoffTs);
+    }
+
+    /**
+     * 在短事务内尝试获取该步骤的 advisory 锁，已被其他节点持有时跳过
+     */
+    private void runLocked(String step, Runnable action) {
+        transactionTemplate.execute(status -> {
+            if (!advisoryLockService.tryLock(LOCK_NAMESPACE, step)) {
+                log.debug("其他节点正在维护通勤记录分区，跳过: {}", step);
+                return null;
+            }
+            action.run();
+            return null;
+        });
+    }
+
+    private String partitionName(YearMonth month) {
+        return PARENT_TABLE + "_p" + month.format(PARTITION_SUFFIX);
+    }
+}
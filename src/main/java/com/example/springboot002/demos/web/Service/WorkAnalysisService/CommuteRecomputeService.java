@@ -0,0 +1,283 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteJobStatusResponse;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteJobStatus;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteRecomputeJob;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteRecord;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteStatus;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkAnalysis;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteRecomputeJobRepository;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteRecordRepository;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.WorkAnalysisRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 通勤重算任务队列
+ * 任务持久化在 commute_recompute_job 表（按工作分析ID去重），定时领取到期任务交给工作线程执行：
+ * 地图调用在事务外完成，结果在短事务内写回；失败按指数退避重试，超过次数后标记失败。
+ */
+@Slf4j
+@Service
+public class CommuteRecomputeService {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final CommuteRecomputeJobRepository jobRepository;
+    private final WorkAnalysisRepository workAnalysisRepository;
+    private final CommuteRecordRepository commuteRecordRepository;
+    private final WorkAnalysisService workAnalysisService;
+    private final WorkAnalysisCacheService workAnalysisCacheService;
+    private final TimeValueService timeValueService;
+    private final CommuteHeatmapService commuteHeatmapService;
+    private final AddressPointIndex addressPointIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final AsyncTaskExecutor jobExecutor;
+    private final int workers;
+    private final int maxAttempts;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final long leaseSeconds;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public CommuteRecomputeService(CommuteRecomputeJobRepository jobRepository,
+                                   WorkAnalysisRepository workAnalysisRepository,
+                                   CommuteRecordRepository commuteRecordRepository,
+                                   WorkAnalysisService workAnalysisService,
+                                   WorkAnalysisCacheService workAnalysisCacheService,
+                                   TimeValueService timeValueService,
+                                   CommuteHeatmapService commuteHeatmapService,
+                                   AddressPointIndex addressPointIndex,
+                                   TransactionTemplate transactionTemplate,
+                                   @Qualifier("commuteJobExecutor") AsyncTaskExecutor jobExecutor,
+                                   @Value("${commute.recompute.workers:4}") int workers,
+                                   @Value("${commute.recompute.max-attempts:5}") int maxAttempts,
+                                   @Value("${commute.recompute.backoff-base-ms:2000}") long backoffBaseMs,
+                                   @Value("${commute.recompute.backoff-max-ms:300000}") long backoffMaxMs,
+                                   @Value("${commute.recompute.lease-seconds:300}") long leaseSeconds) {
+        this.jobRepository = jobRepository;
+        this.workAnalysisRepository = workAnalysisRepository;
+        this.commuteRecordRepository = commuteRecordRepository;
+        this.workAnalysisService = workAnalysisService;
+        this.workAnalysisCacheService = workAnalysisCacheService;
+        this.timeValueService = timeValueService;
+        this.commuteHeatmapService = commuteHeatmapService;
+        this.addressPointIndex = addressPointIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.jobExecutor = jobExecutor;
+        this.workers = workers;
+        this.maxAttempts = maxAttempts;
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    /**
+     * 查询通勤重算状态
+     */
+    public CommuteJobStatusResponse getStatus(String workAnalysisId) {
+        WorkAnalysis analysis = workAnalysisRepository.findById(workAnalysisId)
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "Work analysis not found with id: " + workAnalysisId));
+
+        CommuteJobStatusResponse response = new CommuteJobStatusResponse();
+        response.setWorkAnalysisId(workAnalysisId);
+        response.setCommuteStatus(analysis.getCommuteStatus() != null
+                ? analysis.getCommuteStatus().name() : CommuteStatus.READY.name());
+        jobRepository.findById(workAnalysisId).ifPresent(job -> {
+            response.setAttempts(job.getAttempts());
+            response.setNextAttemptAt(job.getNextAttemptAt());
+            response.setLastError(job.getLastError());
+        });
+        return response;
+    }
+
+    /**
+     * 领取到期任务并提交给工作线程，每次最多领取空闲工作线程数
+     */
+    @Scheduled(fixedDelayString = "${commute.recompute.poll-interval-ms:1000}")
+    public void pollJobs() {
+        int capacity = workers - inFlight.get();
+        if (capacity <= 0) {
+            return;
+        }
+
+        List<CommuteRecomputeJob> claimed;
+        try {
+            claimed = transactionTemplate.execute(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                List<CommuteRecomputeJob> jobs =
+                        jobRepository.lockClaimable(now, now.minusSeconds(leaseSeconds), capacity);
+                for (CommuteRecomputeJob job : jobs) {
+                    job.setStatus(CommuteJobStatus.RUNNING);
+                    job.setLockedAt(now);
+                    job.setAttempts(job.getAttempts() + 1);
+                    job.setUpdatedAt(now);
+                }
+                return jobRepository.saveAll(jobs);
+            });
+        } catch (RuntimeException e) {
+            log.warn("领取通勤重算任务失败", e);
+            return;
+        }
+
+        for (CommuteRecomputeJob job : claimed != null ? claimed : Collections.<CommuteRecomputeJob>emptyList()) {
+            inFlight.incrementAndGet();
+            try {
+                jobExecutor.execute(() -> {
+                    try {
+                        process(job);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                // 租约过期后会被重新领取
+                inFlight.decrementAndGet();
+                log.warn("通勤重算任务提交失败: {}", job.getWorkAnalysisId());
+            }
+        }
+    }
+
+    private void process(CommuteRecomputeJob job) {
+        String id = job.getWorkAnalysisId();
+        Optional<WorkAnalysis> found = workAnalysisRepository.findById(id);
+        if (!found.isPresent()) {
+            jobRepository.deleteById(id);
+            return;
+        }
+
+        // 事务外调用地图服务，analysis 为脱管对象，坐标只写在内存里
+        WorkAnalysis analysis = found.get();
+        List<CommuteRecord> records;
+        try {
+            records = workAnalysisService.recomputeCommute(
+                    analysis, Boolean.TRUE.equals(job.getRecomputeHome()),
+                    Boolean.TRUE.equals(job.getRecomputeCompany()));
+        } catch (RuntimeException e) {
+            fail(job, e);
+            return;
+        }
+
+        try {
+            apply(job, analysis, records);
+        } catch (OptimisticLockingFailureException e) {
+            // 写回时工作分析已被其他请求修改，结果作废，立即重新领取重算
+            log.info("通勤重算写回冲突，重新排队: workAnalysisId={}", id);
+            transactionTemplate.execute(status -> {
+                jobRepository.findForUpdate(id).ifPresent(this::requeue);
+                return null;
+            });
+            return;
+        } catch (RuntimeException e) {
+            fail(job, e);
+            return;
+        }
+        log.info("通勤重算完成: workAnalysisId={}, 第{}次尝试", id, job.getAttempts());
+    }
+
+    /**
+     * 在短事务内写回坐标和通勤记录并删除任务
+     */
+    private void apply(CommuteRecomputeJob job, WorkAnalysis analysis, List<CommuteRecord> records) {
+        String id = job.getWorkAnalysisId();
+        transactionTemplate.execute(status -> {
+            CommuteRecomputeJob current = jobRepository.findForUpdate(id).orElse(null);
+            if (current == null) {
+                return null;
+            }
+            if (!current.getGeneration().equals(job.getGeneration())) {
+                // 执行期间又有新的变更，结果作废，立即按合并后的任务重算
+                requeue(current);
+                return null;
+            }
+
+            WorkAnalysis managed = workAnalysisRepository.findById(id).orElse(null);
+            if (managed != null) {
+                managed.setHomeLongitude(analysis.getHomeLongitude());
+                managed.setHomeLatitude(analysis.getHomeLatitude());
+                managed.setCompanyLongitude(analysis.getCompanyLongitude());
+                managed.setCompanyLatitude(analysis.getCompanyLatitude());
+                managed.setCommuteStatus(CommuteStatus.READY);
+                commuteHeatmapService.syncResident(managed);
+                workAnalysisRepository.save(managed);
+                commuteRecordRepository.saveAll(records);
+                timeValueService.markStale(managed.getId());
+                workAnalysisCacheService.invalidate(managed.getId(), managed.getUserId());
+                addressPointIndex.add(managed);
+            }
+            jobRepository.delete(current);
+            return null;
+        });
+    }
+
+    private void fail(CommuteRecomputeJob job, RuntimeException error) {
+        String id = job.getWorkAnalysisId();
+        String message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        log.warn("通勤重算失败: workAnalysisId={}, 第{}次尝试, {}", id, job.getAttempts(), message);
+
+        transactionTemplate.execute(status -> {
+            CommuteRecomputeJob current = jobRepository.findForUpdate(id).orElse(null);
+            if (current == null) {
+                return null;
+            }
+            if (!current.getGeneration().equals(job.getGeneration())) {
+                requeue(current);
+                return null;
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            current.setLastError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+            current.setLockedAt(null);
+            current.setUpdatedAt(now);
+            if (current.getAttempts() >= maxAttempts) {
+                current.setStatus(CommuteJobStatus.FAILED);
+                workAnalysisRepository.findById(id).ifPresent(analysis -> {
+                    analysis.setCommuteStatus(CommuteStatus.FAILED);
+                    workAnalysisRepository.save(analysis);
+                    workAnalysisCacheService.invalidate(analysis.getId(), analysis.getUserId());
+                });
+            } else {
+                current.setStatus(CommuteJobStatus.PENDING);
+                current.setNextAttemptAt(now.plusNanos(backoffMillis(current.getAttempts()) * 1_000_000L));
+            }
+            jobRepository.save(current);
+            return null;
+        });
+    }
+
+    private void requeue(CommuteRecomputeJob job) {
+        job.setStatus(CommuteJobStatus.PENDING);
+        job.setAttempts(0);
+        job.setLockedAt(null);
+        job.setNextAttemptAt(LocalDateTime.now());
+        job.setUpdatedAt(LocalDateTime.now());
+        jobRepository.save(job);
+    }
+
+    /**
+     * 指数退避（带随机抖动）：base × 2^(attempts-1)，不超过上限
+     */
+    private long backoffMillis(int attempts) {
+        long delay = backoffBaseMs << Math.min(20, Math.max(0, attempts - 1));
+        delay = Math.min(delay, backoffMaxMs);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+}
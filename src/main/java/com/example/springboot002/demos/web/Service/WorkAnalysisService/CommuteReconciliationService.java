@@ -0,0 +1,153 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteCalculationResponse;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteRecord;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkAnalysis;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteRecordRepository;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.WorkAnalysisRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 离线估算结果对账
+ * 熔断关闭后，用地图API的真实结果覆盖熔断期间写入的估算通勤记录。
+ * 单条记录对账失败时按指数退避推迟重试，超过最大次数后不再自动对账；
+ * 只有熔断再次打开或地图配额用完时才中止本轮。
+ */
+@Slf4j
+@Service
+public class CommuteReconciliationService {
+
+    private static final int BATCH_SIZE = 50;
+
+    private final CommuteRecordRepository commuteRecordRepository;
+    private final WorkAnalysisRepository workAnalysisRepository;
+    private final MapApiService mapApiService;
+    private final MapCircuitBreaker circuitBreaker;
+    private final TimeValueService timeValueService;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long backoffBaseSeconds;
+
+    public CommuteReconciliationService(CommuteRecordRepository commuteRecordRepository,
+                                        WorkAnalysisRepository workAnalysisRepository,
+                                        MapApiService mapApiService,
+                                        MapCircuitBreaker circuitBreaker,
+                                        TimeValueService timeValueService,
+                                        TransactionTemplate transactionTemplate,
+                                        @Value("${map.reconcile.max-attempts:8}") int maxAttempts,
+                                        @Value("${map.reconcile.backoff-base-seconds:60}") long backoffBaseSeconds) {
+        this.commuteRecordRepository = commuteRecordRepository;
+        this.workAnalysisRepository = workAnalysisRepository;
+        this.mapApiService = mapApiService;
+        this.circuitBreaker = circuitBreaker;
+        this.timeValueService = timeValueService;
+        this.transactionTemplate = transactionTemplate;
+        this.maxAttempts = maxAttempts;
+        this.backoffBaseSeconds = backoffBaseSeconds;
+    }
+
+    @Scheduled(fixedDelayString = "${map.reconcile.interval-ms:60000}")
+    public void reconcileEstimatedRecords() {
+        if (!circuitBreaker.isClosed()) {
+            return;
+        }
+
+        List<CommuteRecord> records = commuteRecordRepository.findReconcilable(
+                LocalDateTime.now(), maxAttempts, PageRequest.of(0, BATCH_SIZE));
+        if (records.isEmpty()) {
+            return;
+        }
+
+        int reconciled = 0;
+        for (CommuteRecord record : records) {
+            Optional<WorkAnalysis> analysis = workAnalysisRepository.findById(record.getWorkAnalysisId());
+            if (!analysis.isPresent()) {
+                record.setIsEstimated(false);
+                commuteRecordRepository.save(record);
+                continue;
+            }
+
+            CommuteCalculationResponse result;
+            try {
+                result = calculate(analysis.get(), record.getCommuteType());
+            } catch (Exception e) {
+                if (isQuotaExhausted(e)) {
+                    log.info("地图配额不足，估算通勤记录对账暂停");
+                    break;
+                }
+                deferRetry(record, e);
+                continue;
+            }
+            if (Boolean.TRUE.equals(result.getEstimated())) {
+                // 熔断再次打开，等下一轮
+                break;
+            }
+
+            record.setDistanceMeters(result.getDistanceMeters());
+            record.setApiDurationMinutes(result.getDurationMinutes());
+            record.setDurationMinutes(result.getCorrectedDuration());
+            record.setIsEstimated(false);
+            record.setReconcileAttempts(null);
+            record.setReconcileAfter(null);
+            // 规划时长变化，时间价值随之过期
+            transactionTemplate.execute(status -> {
+                commuteRecordRepository.save(record);
+                timeValueService.markStale(record.getWorkAnalysisId());
+                return null;
+            });
+            reconciled++;
+        }
+        log.info("估算通勤记录对账完成: {}条", reconciled);
+    }
+
+    /**
+     * 记录失败次数并按指数退避推迟下次对账
+     */
+    private void deferRetry(CommuteRecord record, Exception e) {
+        int attempts = (record.getReconcileAttempts() != null ? record.getReconcileAttempts() : 0) + 1;
+        long delaySeconds = backoffBaseSeconds << Math.min(attempts - 1, 16);
+        record.setReconcileAttempts(attempts);
+        record.setReconcileAfter(LocalDateTime.now().plusSeconds(delaySeconds));
+        commuteRecordRepository.save(record);
+
+        if (attempts >= maxAttempts) {
+            log.error("估算通勤记录对账失败次数已达上限，不再自动对账: recordId={}", record.getId(), e);
+        } else {
+            log.warn("估算通勤记录对账失败: recordId={}, 第{}次, {}秒后重试", record.getId(), attempts, delaySeconds, e);
+        }
+    }
+
+    private boolean isQuotaExhausted(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ResponseStatusException
+                    && ((ResponseStatusException) cause).getStatus() == HttpStatus.TOO_MANY_REQUESTS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private CommuteCalculationResponse calculate(WorkAnalysis analysis, String commuteType) {
+        String home = analysis.getHomeLongitude() + "," + analysis.getHomeLatitude();
+        String company = analysis.getCompanyLongitude() + "," + analysis.getCompanyLatitude();
+        boolean evening = "evening".equals(commuteType);
+
+        return mapApiService.calculateCommuteAsync(
+                evening ? company : home,
+                evening ? home : company,
+                analysis.getCommuteMode().name(),
+                true,
+                MapCallPriority.BACKGROUND).join();
+    }
+}
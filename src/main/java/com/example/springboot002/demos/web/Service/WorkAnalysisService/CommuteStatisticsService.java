@@ -0,0 +1,271 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteStatisticsResponse;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteDurationSketch;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteDurationSketchId;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteRecord;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteStatistics;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteStatisticsId;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteDurationSketchRepository;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteRecordRepository;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteStatisticsRepository;
+import com.example.springboot002.demos.web.Service.AdvisoryLockService;
+import com.example.springboot002.demos.web.Util.DurationSketch;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 通勤统计预聚合
+ * 每个工作分析按 (通勤类型, 是否高峰) 维护 count/sum/min/max/平方和，
+ * 写入实际通勤记录时增量累加，查询统计时只读取预聚合行，不再扫描通勤记录。
+ * 另按 (工作分析, 通勤类型) 维护时长分布草图，用于 p50/p90/p99。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CommuteStatisticsService {
+
+    private static final String STATISTICS_LOCK = "commute-statistics-init";
+
+    private final CommuteStatisticsRepository statisticsRepository;
+    private final CommuteDurationSketchRepository sketchRepository;
+    private final CommuteRecordRepository commuteRecordRepository;
+    private final AdvisoryLockService advisoryLockService;
+
+    /**
+     * 将已保存的实际通勤记录累加到统计中，需在保存记录的同一事务内调用
+     */
+    @Transactional
+    public void accumulate(Collection<CommuteRecord> records) {
+        Map<CommuteStatisticsId, Delta> deltas = new LinkedHashMap<>();
+        Map<CommuteDurationSketchId, DurationSketch> sketchDeltas = new LinkedHashMap<>();
+        for (CommuteRecord record : records) {
+            if (record.getActualDurationMinutes() == null || record.getCommuteType() == null) {
+                continue;
+            }
+            CommuteStatisticsId key = new CommuteStatisticsId(record.getWorkAnalysisId(),
+                    record.getCommuteType(), Boolean.TRUE.equals(record.getIsPeakHour()));
+            deltas.computeIfAbsent(key, k -> new Delta()).add(record.getActualDurationMinutes());
+            sketchDeltas.computeIfAbsent(
+                    new CommuteDurationSketchId(record.getWorkAnalysisId(), record.getCommuteType()),
+                    k -> new DurationSketch()).add(record.getActualDurationMinutes());
+        }
+
+        // 每个工作分析只检查一次；首次写入时按通勤记录整体初始化（已包含本次记录）
+        Map<String, Boolean> initialized = new HashMap<>();
+        for (Map.Entry<CommuteStatisticsId, Delta> entry : deltas.entrySet()) {
+            String workAnalysisId = entry.getKey().getWorkAnalysisId();
+            if (initialized.computeIfAbsent(workAnalysisId, this::ensureInitialized)) {
+                continue;
+            }
+
+            Delta delta = entry.getValue();
+            statisticsRepository.accumulate(workAnalysisId, entry.getKey().getCommuteType(),
+                    entry.getKey().getIsPeakHour(), delta.count, delta.sum, delta.min, delta.max, delta.sumSq);
+        }
+
+        sketchDeltas.forEach(this::mergeSketch);
+    }
+
+    /**
+     * 读取预聚合统计
+     */
+    @Transactional
+    public CommuteStatisticsResponse getStatistics(String workAnalysisId) {
+        List<CommuteStatistics> rows = statisticsRepository.findByIdWorkAnalysisId(workAnalysisId);
+        if (rows.isEmpty() && ensureInitialized(workAnalysisId)) {
+            rows = statisticsRepository.findByIdWorkAnalysisId(workAnalysisId);
+        }
+
+        Delta morning = new Delta();
+        Delta evening = new Delta();
+        Delta peak = new Delta();
+        Delta offPeak = new Delta();
+        for (CommuteStatistics row : rows) {
+            if ("morning".equals(row.getId().getCommuteType())) {
+                morning.merge(row);
+            } else if ("evening".equals(row.getId().getCommuteType())) {
+                evening.merge(row);
+            }
+            if (Boolean.TRUE.equals(row.getId().getIsPeakHour())) {
+                peak.merge(row);
+            } else {
+                offPeak.merge(row);
+            }
+        }
+
+        CommuteStatisticsResponse response = new CommuteStatisticsResponse();
+        response.setAverageMorningDuration(morning.average());
+        response.setAverageEveningDuration(evening.average());
+        response.setTotalRecords((int) (peak.count + offPeak.count));
+        response.setMinMorningDuration(morning.minOrNull());
+        response.setMaxMorningDuration(morning.maxOrNull());
+        response.setMorningDurationStdDev(morning.stdDev());
+        response.setMinEveningDuration(evening.minOrNull());
+        response.setMaxEveningDuration(evening.maxOrNull());
+        response.setEveningDurationStdDev(evening.stdDev());
+        response.setAveragePeakDuration(peak.average());
+        response.setAverageOffPeakDuration(offPeak.average());
+
+        DurationSketch morningSketch = loadSketch(workAnalysisId, "morning");
+        response.setMorningP50(morningSketch.quantile(0.5));
+        response.setMorningP90(morningSketch.quantile(0.9));
+        response.setMorningP99(morningSketch.quantile(0.99));
+        DurationSketch eveningSketch = loadSketch(workAnalysisId, "evening");
+        response.setEveningP50(eveningSketch.quantile(0.5));
+        response.setEveningP90(eveningSketch.quantile(0.9));
+        response.setEveningP99(eveningSketch.quantile(0.99));
+        return response;
+    }
+
+    /**
+     * 合并多个工作分析同一通勤类型的时长分布（用于公司、区域等维度汇总）
+     */
+    public DurationSketch mergeSketches(Collection<String> workAnalysisIds, String commuteType) {
+        DurationSketch merged = new DurationSketch();
+        for (CommuteDurationSketch row : sketchRepository
+                .findByIdWorkAnalysisIdInAndIdCommuteType(workAnalysisIds, commuteType)) {
+            merged.merge(DurationSketch.fromBytes(row.getSketch()));
+        }
+        return merged;
+    }
+
+    /**
+     * 统计行不存在时按已有通勤记录初始化，并补齐零值行作为已初始化标记，之后读写都不再扫描通勤记录；
+     * 返回是否由本次初始化。同一工作分析的初始化由 advisory 锁串行化，
+     * 并发的首次写入者等锁后看到已初始化，改走增量累加。
+     */
+    private boolean ensureInitialized(String workAnalysisId) {
+        if (statisticsRepository.existsByIdWorkAnalysisId(workAnalysisId)) {
+            return false;
+        }
+        advisoryLockService.lock(STATISTICS_LOCK, workAnalysisId);
+        if (statisticsRepository.existsByIdWorkAnalysisId(workAnalysisId)) {
+            return false;
+        }
+        int rebuilt = statisticsRepository.rebuild(workAnalysisId);
+        statisticsRepository.initialize(workAnalysisId);
+        if (rebuilt > 0) {
+            log.info("通勤统计已按历史记录初始化: workAnalysisId={}", workAnalysisId);
+        }
+        return true;
+    }
+
+    /**
+     * 在行锁内把增量草图合并进已存储的草图
+     */
+    private void mergeSketch(CommuteDurationSketchId id, DurationSketch delta) {
+        if (initSketch(id)) {
+            // 新建行已按历史记录（含本次记录）构建
+            return;
+        }
+        CommuteDurationSketch row = sketchRepository.findForUpdate(id)
+                .orElseThrow(() -> new IllegalStateException("通勤时长分布不存在: " + id));
+        DurationSketch sketch = DurationSketch.fromBytes(row.getSketch());
+        sketch.merge(delta);
+        saveSketch(row, sketch);
+    }
+
+    private DurationSketch loadSketch(String workAnalysisId, String commuteType) {
+        CommuteDurationSketchId id = new CommuteDurationSketchId(workAnalysisId, commuteType);
+        initSketch(id);
+        return sketchRepository.findById(id)
+                .map(row -> DurationSketch.fromBytes(row.getSketch()))
+                .orElseGet(DurationSketch::new);
+    }
+
+    /**
+     * 草图行不存在时新建并按已有通勤记录填充；返回是否由本次新建
+     * 并发新建时后到者会阻塞在唯一键上，等先到者提交后走增量合并
+     */
+    private boolean initSketch(CommuteDurationSketchId id) {
+        if (sketchRepository.existsById(id)) {
+            return false;
+        }
+        if (sketchRepository.insertIfAbsent(id.getWorkAnalysisId(), id.getCommuteType(),
+                new DurationSketch().toBytes()) == 0) {
+            return false;
+        }
+
+        DurationSketch sketch = new DurationSketch();
+        for (Integer duration : commuteRecordRepository
+                .findActualDurations(id.getWorkAnalysisId(), id.getCommuteType())) {
+            sketch.add(duration);
+        }
+        CommuteDurationSketch row = sketchRepository.findForUpdate(id)
+                .orElseThrow(() -> new IllegalStateException("通勤时长分布不存在: " + id));
+        saveSketch(row, sketch);
+        return true;
+    }
+
+    private void saveSketch(CommuteDurationSketch row, DurationSketch sketch) {
+        row.setSketch(sketch.toBytes());
+        row.setTotalCount(sketch.getTotalCount());
+        row.setUpdatedAt(LocalDateTime.now());
+        sketchRepository.save(row);
+    }
+
+    /**
+     * count/sum/min/max/平方和，可合并
+     */
+    private static final class Delta {
+        private long count;
+        private long sum;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+        private long sumSq;
+
+        private void add(int duration) {
+            count++;
+            sum += duration;
+            min = Math.min(min, duration);
+            max = Math.max(max, duration);
+            sumSq += (long) duration * duration;
+        }
+
+        private void merge(CommuteStatistics row) {
+            if (row.getRecordCount() == null || row.getRecordCount() == 0) {
+                return;
+            }
+            count += row.getRecordCount();
+            sum += row.getDurationSum();
+            sumSq += row.getDurationSumSq();
+            if (row.getDurationMin() != null) {
+                min = Math.min(min, row.getDurationMin());
+            }
+            if (row.getDurationMax() != null) {
+                max = Math.max(max, row.getDurationMax());
+            }
+        }
+
+        private Integer average() {
+            return count > 0 ? (int) (sum / count) : null;
+        }
+
+        private Integer minOrNull() {
+            return count > 0 ? min : null;
+        }
+
+        private Integer maxOrNull() {
+            return count > 0 ? max : null;
+        }
+
+        private Double stdDev() {
+            if (count == 0) {
+                return null;
+            }
+            double mean = (double) sum / count;
+            double variance = Math.max(0, (double) sumSq / count - mean * mean);
+            return Math.round(Math.sqrt(variance) * 100) / 100.0;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest.ActualCommuteRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolationException;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 通勤打卡写缓冲（write-behind）
+ * 打卡事件追加到 Redis Stream（预写日志）后立即返回；各节点以同一消费组按批读取，
+ * 落库后 XACK 并删除。落库失败的条目留在本节点的待确认列表中，
+ * 定期认领空闲超时的待确认条目（包括已宕机节点的）重新落库（至少一次）。
+ * 批量落库因数据问题失败时二分定位，无法写入的单条事件转入死信流。
+ * 日志积压超过容量时直接返回 429。
+ */
+@Slf4j
+@Service
+public class CommuteWriteBuffer {
+
+    private static final String WAL_STREAM_KEY = "commute:checkin:wal";
+    private static final String DEAD_LETTER_STREAM_KEY = "commute:checkin:dead-letter";
+    private static final String CONSUMER_GROUP = "commute-write-buffer";
+    // 没有待确认条目且空闲超过该时长的消费者（已下线的节点）从消费组中删除
+    private static final long STALE_CONSUMER_MS = TimeUnit.DAYS.toMillis(1);
+
+    private final WorkAnalysisService workAnalysisService;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int maxFlushAttempts;
+    private final long reclaimIntervalMs;
+    private final long reclaimIdleMs;
+    private final Consumer consumer;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong reclaimed = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public CommuteWriteBuffer(WorkAnalysisService workAnalysisService,
+                              StringRedisTemplate stringRedisTemplate,
+                              @Value("${commute.write-buffer.capacity:10000}") int capacity,
+                              @Value("${commute.write-buffer.batch-size:200}") int batchSize,
+                              @Value("${commute.write-buffer.flush-interval-ms:1000}") long flushIntervalMs,
+                              @Value("${commute.write-buffer.max-flush-attempts:3}") int maxFlushAttempts,
+                              @Value("${commute.write-buffer.reclaim-interval-ms:30000}") long reclaimIntervalMs,
+                              @Value("${commute.write-buffer.reclaim-idle-ms:60000}") long reclaimIdleMs) {
+        this.workAnalysisService = workAnalysisService;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxFlushAttempts = maxFlushAttempts;
+        this.reclaimIntervalMs = reclaimIntervalMs;
+        this.reclaimIdleMs = reclaimIdleMs;
+        this.consumer = Consumer.from(CONSUMER_GROUP, consumerName());
+    }
+
+    @PostConstruct
+    public void start() {
+        createGroup();
+        running = true;
+        flusher = new Thread(this::run, "commute-write-buffer");
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        // 未落库的事件仍在日志中，由其他节点或下次启动认领
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * 接收一条打卡事件，写入预写日志后即返回
+     *
+     * @throws ResponseStatusException 429，日志积压超过容量
+     */
+    public void submit(ActualCommuteRequest request) {
+        if (request.getRecordDate() == null) {
+            // 以接收时间作为事件时间，避免落库延迟影响高峰判断
+            request.setRecordDate(LocalDateTime.now());
+        }
+
+        try {
+            Long backlog = stringRedisTemplate.opsForStream().size(WAL_STREAM_KEY);
+            if (backlog != null && backlog >= capacity) {
+                rejected.incrementAndGet();
+                throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "通勤打卡繁忙,请稍后重试");
+            }
+            stringRedisTemplate.opsForStream().add(WAL_STREAM_KEY, toFields(request));
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // 预写日志不可用时退化为同步写入，保证已确认的事件不丢失
+            log.warn("通勤打卡预写日志写入失败,改为同步写入", e);
+            workAnalysisService.recordActualCommutes(Collections.singletonList(request));
+            return;
+        }
+        accepted.incrementAndGet();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity", capacity);
+        stats.put("consumer", consumer.getName());
+        try {
+            stats.put("buffered", stringRedisTemplate.opsForStream().size(WAL_STREAM_KEY));
+            stats.put("deadLetters", stringRedisTemplate.opsForStream().size(DEAD_LETTER_STREAM_KEY));
+        } catch (RuntimeException e) {
+            stats.put("buffered", null);
+        }
+        stats.put("accepted", accepted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("flushed", flushed.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("reclaimed", reclaimed.get());
+        stats.put("deadLettered", deadLettered.get());
+        return stats;
+    }
+
+    private void run() {
+        long nextReclaim = 0;
+        while (running) {
+            try {
+                if (System.currentTimeMillis() >= nextReclaim) {
+                    reclaim();
+                    nextReclaim = System.currentTimeMillis() + reclaimIntervalMs;
+                }
+                List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+                        consumer, StreamReadOptions.empty().count(batchSize),
+                        StreamOffset.create(WAL_STREAM_KEY, ReadOffset.lastConsumed()));
+                if (records != null && !records.isEmpty()) {
+                    process(records);
+                }
+                // 不满一批时等一个刷新间隔再读，攒批
+                if (records == null || records.size() < batchSize) {
+                    Thread.sleep(flushIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (RuntimeException e) {
+                log.warn("通勤打卡预写日志读取失败", e);
+                sleepQuietly(flushIntervalMs);
+            }
+        }
+    }
+
+    /**
+     * 认领空闲超时的待确认条目：本节点落库失败的批次，以及已宕机节点读取后未确认的条目
+     */
+    private void reclaim() {
+        PendingMessages pending = stringRedisTemplate.opsForStream()
+                .pending(WAL_STREAM_KEY, CONSUMER_GROUP, Range.unbounded(), batchSize);
+        List<RecordId> idle = new ArrayList<>();
+        for (PendingMessage message : pending) {
+            if (message.getElapsedTimeSinceLastDelivery().toMillis() >= reclaimIdleMs) {
+                idle.add(message.getId());
+            }
+        }
+        if (!idle.isEmpty()) {
+            // XCLAIM 按空闲时长再判断一次，多个节点同时认领时只有一个成功
+            List<MapRecord<String, Object, Object>> claimed = stringRedisTemplate.opsForStream().claim(
+                    WAL_STREAM_KEY, CONSUMER_GROUP, consumer.getName(), Duration.ofMillis(reclaimIdleMs),
+                    idle.toArray(new RecordId[0]));
+            if (claimed != null && !claimed.isEmpty()) {
+                log.info("认领待确认的通勤打卡: {}条", claimed.size());
+                reclaimed.addAndGet(claimed.size());
+                process(claimed);
+            }
+        }
+        removeStaleConsumers();
+    }
+
+    private void removeStaleConsumers() {
+        StreamInfo.XInfoConsumers consumers = stringRedisTemplate.opsForStream()
+                .consumers(WAL_STREAM_KEY, CONSUMER_GROUP);
+        consumers.forEach(info -> {
+            if (info.pendingCount() == 0 && info.idleTimeMs() > STALE_CONSUMER_MS
+                    && !info.consumerName().equals(consumer.getName())) {
+                stringRedisTemplate.opsForStream().deleteConsumer(WAL_STREAM_KEY,
+                        Consumer.from(CONSUMER_GROUP, info.consumerName()));
+            }
+        });
+    }
+
+    private void process(List<MapRecord<String, Object, Object>> records) {
+        List<BufferedEvent> batch = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            try {
+                batch.add(new BufferedEvent(record.getId(), fromFields(record.getValue())));
+            } catch (RuntimeException e) {
+                deadLetter(record.getId(), record.getValue(), e);
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch, maxFlushAttempts);
+        }
+    }
+
+    /**
+     * 批量落库后确认并删除日志；数据问题导致失败时二分重试，定位到单条后转入死信流。
+     * 其他失败（如数据库不可用）保留为待确认，等下一轮认领重试。
+     */
+    private void flush(List<BufferedEvent> batch, int attempts) {
+        List<ActualCommuteRequest> requests = new ArrayList<>(batch.size());
+        for (BufferedEvent event : batch) {
+            requests.add(event.request);
+        }
+
+        RuntimeException failure = null;
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            try {
+                workAnalysisService.recordActualCommutes(requests);
+                flushed.addAndGet(requests.size());
+                acknowledge(batch);
+                return;
+            } catch (RuntimeException e) {
+                failure = e;
+                if (isPoison(e)) {
+                    break;
+                }
+                log.warn("通勤打卡批量落库失败: {}条, 第{}次", requests.size(), attempt, e);
+                if (attempt < attempts) {
+                    sleepQuietly(flushIntervalMs * attempt);
+                }
+            }
+        }
+
+        if (!isPoison(failure)) {
+            flushFailures.addAndGet(requests.size());
+            log.error("通勤打卡批量落库放弃,保留待确认等待重新认领: {}条", requests.size());
+            return;
+        }
+        if (batch.size() == 1) {
+            BufferedEvent event = batch.get(0);
+            deadLetter(event.walId, toFields(event.request), failure);
+            return;
+        }
+        int mid = batch.size() / 2;
+        flush(batch.subList(0, mid), 1);
+        flush(batch.subList(mid, batch.size()), 1);
+    }
+
+    private void acknowledge(List<BufferedEvent> batch) {
+        RecordId[] ids = new RecordId[batch.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = batch.get(i).walId;
+        }
+        try {
+            stringRedisTemplate.opsForStream().acknowledge(WAL_STREAM_KEY, CONSUMER_GROUP, ids);
+            stringRedisTemplate.opsForStream().delete(WAL_STREAM_KEY, ids);
+        } catch (RuntimeException e) {
+            // 确认失败只会在重新认领时产生重复记录
+            log.warn("通勤打卡预写日志确认失败: {}条", ids.length, e);
+        }
+    }
+
+    /**
+     * 无法落库的事件连同失败原因写入死信流，并从预写日志中确认删除
+     */
+    private void deadLetter(RecordId walId, Map<?, ?> fields, Exception cause) {
+        Map<String, String> content = new HashMap<>();
+        fields.forEach((key, value) -> content.put(String.valueOf(key), String.valueOf(value)));
+        content.put("walId", walId.getValue());
+        content.put("error", String.valueOf(rootCause(cause).getMessage()));
+        try {
+            stringRedisTemplate.opsForStream().add(DEAD_LETTER_STREAM_KEY, content);
+            stringRedisTemplate.opsForStream().acknowledge(WAL_STREAM_KEY, CONSUMER_GROUP, walId);
+            stringRedisTemplate.opsForStream().delete(WAL_STREAM_KEY, walId);
+            deadLettered.incrementAndGet();
+            log.error("通勤打卡无法落库,已转入死信流: walId={}", walId.getValue(), cause);
+        } catch (RuntimeException e) {
+            log.warn("通勤打卡死信写入失败: walId={}", walId.getValue(), e);
+        }
+    }
+
+    /**
+     * 事件本身的数据问题（超长、约束冲突等），重试无意义
+     */
+    private boolean isPoison(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException
+                    || cause instanceof ConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Throwable rootCause(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private void createGroup() {
+        try {
+            // 从头开始消费，升级前遗留在日志中的事件也会被落库
+            stringRedisTemplate.opsForStream().createGroup(WAL_STREAM_KEY, ReadOffset.from("0"), CONSUMER_GROUP);
+        } catch (RuntimeException e) {
+            // 消费组已存在（BUSYGROUP）
+            log.debug("通勤打卡消费组已存在: {}", e.getMessage());
+        }
+    }
+
+    private static String consumerName() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        // 每次启动使用新名称，上次运行遗留的待确认条目按空闲超时认领
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private Map<String, String> toFields(ActualCommuteRequest request) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("workAnalysisId", request.getWorkAnalysisId());
+        fields.put("commuteType", request.getCommuteType());
+        fields.put("actualDurationMinutes", String.valueOf(request.getActualDurationMinutes()));
+        fields.put("recordDate", request.getRecordDate().toString());
+        if (request.getCommuteModes() != null) {
+            fields.put("commuteModes", request.getCommuteModes());
+        }
+        return fields;
+    }
+
+    private ActualCommuteRequest fromFields(Map<Object, Object> fields) {
+        ActualCommuteRequest request = new ActualCommuteRequest();
+        request.setWorkAnalysisId((String) fields.get("workAnalysisId"));
+        request.setCommuteType((String) fields.get("commuteType"));
+        request.setActualDurationMinutes(Integer.valueOf((String) fields.get("actualDurationMinutes")));
+        request.setRecordDate(LocalDateTime.parse((String) fields.get("recordDate")));
+        request.setCommuteModes((String) fields.get("commuteModes"));
+        return request;
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private static final class BufferedEvent {
+        private final RecordId walId;
+        private final ActualCommuteRequest request;
+
+        private BufferedEvent(RecordId walId, ActualCommuteRequest request) {
+            this.walId = walId;
+            this.request = request;
+        }
+    }
+}
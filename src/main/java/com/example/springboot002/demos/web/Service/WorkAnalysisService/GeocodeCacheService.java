@@ -0,0 +1,152 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.Util.LruCache;
+import com.example.springboot002.demos.web.Util.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 地理编码两级缓存
+ * 一级：进程内有界 LRU；二级：Redis（按规范化后的地址文本作为key）
+ */
+@Slf4j
+@Service
+public class GeocodeCacheService {
+
+    // Redis key 前缀
+    private static final String GEOCODE_PREFIX = "map:geocode:";
+
+    private final RedisUtil redisUtil;
+    private final LruCache<String, double[]> localCache;
+    private final long ttlMillis;
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong redisHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public GeocodeCacheService(RedisUtil redisUtil,
+                               @Value("${map.geocode-cache.local-max-size:10000}") int localMaxSize,
+                               @Value("${map.geocode-cache.ttl-hours:720}") long ttlHours) {
+        this.redisUtil = redisUtil;
+        this.localCache = new LruCache<>(localMaxSize);
+        this.ttlMillis = TimeUnit.HOURS.toMillis(ttlHours);
+    }
+
+    /**
+     * 规范化地址文本：全角转半角、合并空白、统一小写
+     */
+    public String normalize(String address) {
+        if (address == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(address.length());
+        boolean lastWhitespace = false;
+        for (char c : address.trim().toCharArray()) {
+            if (c == '　') {
+                c = ' ';
+            } else if (c >= '！' && c <= '～') {
+                c = (char) (c - 0xFEE0);
+            }
+            if (Character.isWhitespace(c)) {
+                if (!lastWhitespace) {
+                    sb.append(' ');
+                }
+                lastWhitespace = true;
+                continue;
+            }
+            lastWhitespace = false;
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString().trim();
+    }
+
+    /**
+     * 查询缓存坐标，未命中返回 null
+     */
+    public double[] get(String normalizedAddress) {
+        double[] coords = localCache.get(normalizedAddress);
+        if (coords != null) {
+            localHits.incrementAndGet();
+            return coords;
+        }
+
+        try {
+            String value = redisUtil.get(GEOCODE_PREFIX + normalizedAddress);
+            if (value != null) {
+                coords = parseCoords(value);
+                localCache.put(normalizedAddress, coords, ttlMillis);
+                redisHits.incrementAndGet();
+                return coords;
+            }
+        } catch (Exception e) {
+            // Redis 不可用时降级为仅本地缓存
+            log.warn("读取地理编码缓存失败: {}", e.getMessage());
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 写入两级缓存
+     */
+    public void put(String normalizedAddress, double[] coords) {
+        localCache.put(normalizedAddress, coords, ttlMillis);
+        try {
+            redisUtil.set(GEOCODE_PREFIX + normalizedAddress, coords[0] + "," + coords[1],
+                    ttlMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("写入地理编码缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 删除单个地址的缓存
+     */
+    public void evict(String address) {
+        String normalized = normalize(address);
+        localCache.remove(normalized);
+        redisUtil.delete(GEOCODE_PREFIX + normalized);
+        log.info("已删除地理编码缓存: {}", normalized);
+    }
+
+    /**
+     * 清空全部地理编码缓存
+     */
+    public long evictAll() {
+        localCache.clear();
+        long deleted = redisUtil.deleteByPattern(GEOCODE_PREFIX + "*");
+        log.info("已清空地理编码缓存, Redis删除{}条", deleted);
+        return deleted;
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> stats() {
+        long local = localHits.get();
+        long redis = redisHits.get();
+        long miss = misses.get();
+        long total = local + redis + miss;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localHits", local);
+        stats.put("redisHits", redis);
+        stats.put("misses", miss);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) (local + redis) / total);
+        stats.put("localSize", localCache.size());
+        stats.put("localMaxSize", localCache.getMaxSize());
+        return stats;
+    }
+
+    private double[] parseCoords(String value) {
+        String[] parts = value.split(",");
+        return new double[]{Double.parseDouble(parts[0]), Double.parseDouble(parts[1])};
+    }
+}
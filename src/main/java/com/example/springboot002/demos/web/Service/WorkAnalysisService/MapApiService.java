@@ -1,168 +1,430 @@
 package com.example.springboot002.demos.web.Service.WorkAnalysisService;
 
 import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteCalculationResponse;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.springboot002.demos.web.Util.SingleFlight;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
 import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Service
 public class MapApiService {
 
+    // "经度,纬度" 格式的坐标
+    private static final Pattern COORDINATE_PATTERN =
+            Pattern.compile("^\\s*-?\\d+(\\.\\d+)?\\s*,\\s*-?\\d+(\\.\\d+)?\\s*$");
+
     @Value("${map.api.key}")
     private String apiKey;
 
     @Value("${map.api.base-url}")
     private String baseUrl;
 
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
-
-    public MapApiService(RestTemplate restTemplate, ObjectMapper objectMapper) {
-        this.restTemplate = restTemplate;
-        this.objectMapper = objectMapper;
+    private final WebClient mapWebClient;
+    private final MapResponseParser responseParser;
+    private final GeocodeCacheService geocodeCacheService;
+    private final RouteCacheService routeCacheService;
+    private final AsyncTaskExecutor mapApiExecutor;
+    private final MapQuotaGovernor quotaGovernor;
+    private final MapCircuitBreaker circuitBreaker;
+    private final CommuteEstimator commuteEstimator;
+    private final PeakDurationService peakDurationService;
+    private final CommuteCalibrationService calibrationService;
+    private final AddressPointIndex addressPointIndex;
+
+    // 相同地址/路线的并发查询合并为一次上游调用
+    private final SingleFlight<String, double[]> geocodeFlight = new SingleFlight<>();
+    private final SingleFlight<String, RouteCacheService.CachedRoute> routeFlight = new SingleFlight<>();
+
+    public MapApiService(WebClient mapWebClient, MapResponseParser responseParser,
+                         GeocodeCacheService geocodeCacheService,
+                         RouteCacheService routeCacheService,
+                         @Qualifier("mapApiExecutor") AsyncTaskExecutor mapApiExecutor,
+                         MapQuotaGovernor quotaGovernor,
+                         MapCircuitBreaker circuitBreaker,
+                         CommuteEstimator commuteEstimator,
+                         PeakDurationService peakDurationService,
+                         CommuteCalibrationService calibrationService,
+                         AddressPointIndex addressPointIndex) {
+        this.mapWebClient = mapWebClient;
+        this.responseParser = responseParser;
+        this.geocodeCacheService = geocodeCacheService;
+        this.routeCacheService = routeCacheService;
+        this.mapApiExecutor = mapApiExecutor;
+        this.quotaGovernor = quotaGovernor;
+        this.circuitBreaker = circuitBreaker;
+        this.commuteEstimator = commuteEstimator;
+        this.peakDurationService = peakDurationService;
+        this.calibrationService = calibrationService;
+        this.addressPointIndex = addressPointIndex;
     }
 
     /**
-     * 计算通勤距离和时长
+     * 计算通勤距离和时长（同步版本）
      */
     public CommuteCalculationResponse calculateCommute(String origin, String destination,
                                                        String mode, boolean isPeakHour) {
-        try {
-            String url = buildApiUrl(origin, destination, mode);
-            log.info("调用地图API: {}", url);
+        return await(calculateCommuteAsync(origin, destination, mode, isPeakHour));
+    }
+
+    /**
+     * 计算通勤距离和时长（同步版本，按出发时间使用对应时段的校准系数）
+     */
+    public CommuteCalculationResponse calculateCommute(String origin, String destination, String mode,
+                                                       boolean isPeakHour, LocalTime departureTime) {
+        return await(calculateCommuteAsync(origin, destination, mode, isPeakHour, departureTime,
+                MapCallPriority.INTERACTIVE));
+    }
+
+    /**
+     * 计算通勤距离和时长（异步版本，按交互请求优先级）
+     */
+    public CompletableFuture<CommuteCalculationResponse> calculateCommuteAsync(String origin, String destination,
+                                                                               String mode, boolean isPeakHour) {
+        return calculateCommuteAsync(origin, destination, mode, isPeakHour, MapCallPriority.INTERACTIVE);
+    }
+
+    /**
+     * 计算通勤距离和时长（异步版本，优先读取路线缓存，高峰修正在查询之后进行）
+     * 熔断打开时使用离线估算，结果标记为 estimated 且不写入缓存
+     */
+    public CompletableFuture<CommuteCalculationResponse> calculateCommuteAsync(String origin, String destination,
+                                                                               String mode, boolean isPeakHour,
+                                                                               MapCallPriority priority) {
+        return calculateCommuteAsync(origin, destination, mode, isPeakHour, null, priority);
+    }
 
-            String response = restTemplate.getForObject(url, String.class);
-            JsonNode root = objectMapper.readTree(response);
+    /**
+     * 计算通勤距离和时长；修正时长优先使用由实际打卡数据校准的系数，
+     * 其次是高峰时段实测时长，最后是固定系数
+     *
+     * @param departureTime 出发时间，为空时使用高峰/平峰整体系数
+     */
+    public CompletableFuture<CommuteCalculationResponse> calculateCommuteAsync(String origin, String destination,
+                                                                               String mode, boolean isPeakHour,
+                                                                               LocalTime departureTime,
+                                                                               MapCallPriority priority) {
+        String cacheKey = routeKey(origin, destination, mode);
+        RouteCacheService.CachedRoute cached = routeCacheService.get(cacheKey);
+
+        CompletableFuture<RouteCacheService.CachedRoute> future;
+        if (cached != null) {
+            if (routeCacheService.isStale(cached)) {
+                routeCacheService.refreshAsync(cacheKey,
+                        () -> loadRoute(cacheKey, origin, destination, mode, MapCallPriority.BACKGROUND));
+            }
+            future = CompletableFuture.completedFuture(cached);
+        } else {
+            future = loadRoute(cacheKey, origin, destination, mode, priority);
+        }
 
-            CommuteCalculationResponse result = parseApiResponse(root, mode);
+        // 合并的调用共享同一个路线结果，每个调用方各自构建响应
+        return future.handle((route, error) -> {
+            CommuteCalculationResponse result;
+            if (error == null) {
+                result = buildResponse(route.getDistanceMeters(), route.getDurationMinutes());
+                result.setEstimated(false);
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (!(cause instanceof CircuitOpenException)) {
+                    throw cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+                }
+                int[] estimate = commuteEstimator.estimate(origin, destination, mode);
+                result = buildResponse(estimate[0], estimate[1]);
+                result.setEstimated(true);
+            }
 
-            // 高峰期时间修正
-            if (isPeakHour) {
-                result.setCorrectedDuration(applyPeakCorrection(result.getDurationMinutes()));
+            Double factor = result.getEstimated() ? null : calibrationService.correctionFactor(
+                    cacheKey, toApiMode(mode), isPeakHour, departureTime);
+            if (factor != null) {
+                result.setCorrectedDuration((int) Math.round(result.getDurationMinutes() * factor));
+                result.setCalibrated(true);
+            } else if (isPeakHour) {
+                // 高峰时长使用该路线高峰时段的实测值，与查询时刻无关
+                Integer observed = peakDurationService.observedPeakDuration(cacheKey);
+                result.setCorrectedDuration(observed != null ? observed
+                        : peakDurationService.applyFallbackFactor(result.getDurationMinutes()));
+                result.setPeakObserved(observed != null);
             } else {
                 result.setCorrectedDuration(result.getDurationMinutes());
             }
-
             return result;
+        });
+    }
 
-        } catch (Exception e) {
-            log.error("地图API调用失败", e);
-            throw new RuntimeException("无法计算通勤时间,请检查地址信息", e);
+    /**
+     * 加载路线并写入缓存，相同key的并发调用合并
+     */
+    private CompletableFuture<RouteCacheService.CachedRoute> loadRoute(String cacheKey, String origin,
+                                                                       String destination, String mode,
+                                                                       MapCallPriority priority) {
+        return routeFlight.execute(cacheKey, () -> fetchRouteAsync(origin, destination, mode, priority)
+                .thenApplyAsync(result -> routeCacheService.put(cacheKey,
+                        result.getDistanceMeters(), result.getDurationMinutes()), mapApiExecutor));
+    }
+
+    /**
+     * 路线key（与路线缓存、高峰时段数据共用）
+     */
+    public String routeKey(String origin, String destination, String mode) {
+        return routeCacheService.buildKey(origin, destination, toApiMode(mode));
+    }
+
+    /**
+     * 按当前实时路况查询路线，不读写路线缓存（缓存只保存非高峰的原始时长），按后台优先级限流
+     */
+    public CompletableFuture<CommuteCalculationResponse> fetchLiveRouteAsync(String origin, String destination,
+                                                                             String mode) {
+        try {
+            return fetchRouteAsync(origin, destination, mode, MapCallPriority.BACKGROUND);
+        } catch (RuntimeException e) {
+            CompletableFuture<CommuteCalculationResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
         }
     }
 
     /**
-     * 地理编码 - 地址转坐标
+     * 调用地图API计算路线（不做高峰修正）
+     */
+    private CompletableFuture<CommuteCalculationResponse> fetchRouteAsync(String origin, String destination,
+                                                                          String mode, MapCallPriority priority) {
+        URI uri = buildApiUrl(origin, destination, mode);
+        log.info("调用地图API: {}", uri);
+
+        return callApi(uri, MapQuotaGovernor.Endpoint.DIRECTION, priority)
+                .map(body -> parseRoute(body, mode))
+                .doOnError(e -> log.error("地图API调用失败", e))
+                .onErrorMap(e -> new RuntimeException("无法计算通勤时间,请检查地址信息", e))
+                .toFuture();
+    }
+
+    /**
+     * 地理编码 - 地址转坐标（同步版本）
      */
     public double[] geocode(String address) {
-        try {
-            String url = UriComponentsBuilder.fromHttpUrl(baseUrl + "/geocode/geo")
-                    .queryParam("key", apiKey)
-                    .queryParam("address", address)
-                    .build()
-                    .toUriString();
-
-            String response = restTemplate.getForObject(url, String.class);
-            JsonNode root = objectMapper.readTree(response);
-
-            if ("1".equals(root.path("status").asText())) {
-                String location = root.path("geocodes").get(0).path("location").asText();
-                String[] coords = location.split(",");
-                return new double[]{Double.parseDouble(coords[0]), Double.parseDouble(coords[1])};
+        return await(geocodeAsync(address));
+    }
+
+    /**
+     * 地理编码 - 地址转坐标（异步版本，按交互请求优先级）
+     */
+    public CompletableFuture<double[]> geocodeAsync(String address) {
+        return geocodeAsync(address, MapCallPriority.INTERACTIVE);
+    }
+
+    /**
+     * 地理编码 - 地址转坐标（异步版本，优先读取缓存）
+     */
+    public CompletableFuture<double[]> geocodeAsync(String address, MapCallPriority priority) {
+        return geocodeAsync(address, priority, null);
+    }
+
+    /**
+     * 地理编码 - 地址转坐标（异步版本，优先读取缓存）
+     * 上游返回的坐标附近有文本匹配的已知地址时改用已知坐标，使相同位置命中同一路线缓存
+     *
+     * @param near 地址大致所在的坐标（如修改前的坐标），附近有文本匹配的已知地址时直接复用，不调用地图服务
+     */
+    public CompletableFuture<double[]> geocodeAsync(String address, MapCallPriority priority, double[] near) {
+        String normalized = geocodeCacheService.normalize(address);
+        double[] cached = geocodeCacheService.get(normalized);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (near != null) {
+            double[] known = addressPointIndex.nearest(address, near[0], near[1]);
+            if (known != null) {
+                return CompletableFuture.completedFuture(known);
             }
+        }
 
-            throw new RuntimeException("地址解析失败");
+        return geocodeFlight.execute(normalized, () -> fetchGeocodeAsync(address, priority).thenApplyAsync(coords -> {
+            double[] known = addressPointIndex.nearest(address, coords[0], coords[1]);
+            double[] resolved = known != null ? known : coords;
+            geocodeCacheService.put(normalized, resolved);
+            addressPointIndex.add(address, resolved[0], resolved[1]);
+            return resolved;
+        }, mapApiExecutor));
+    }
+
+    /**
+     * 将地址或坐标统一解析为 "经度,纬度" 坐标
+     */
+    public CompletableFuture<String> resolveLocationAsync(String location) {
+        return resolveLocationAsync(location, MapCallPriority.INTERACTIVE);
+    }
 
-        } catch (Exception e) {
-            log.error("地理编码失败: {}", address, e);
-            throw new RuntimeException("地址解析失败", e);
+    /**
+     * 将地址或坐标统一解析为 "经度,纬度" 坐标，按指定优先级限流
+     */
+    public CompletableFuture<String> resolveLocationAsync(String location, MapCallPriority priority) {
+        if (COORDINATE_PATTERN.matcher(location).matches()) {
+            return CompletableFuture.completedFuture(location.replaceAll("\\s", ""));
         }
+        return geocodeAsync(location, priority).thenApply(coords -> coords[0] + "," + coords[1]);
     }
 
     /**
-     * 构建API URL
+     * 并发请求合并统计
      */
-    private String buildApiUrl(String origin, String destination, String mode) {
-        String apiMode = convertToApiMode(mode);
-        String endpoint = "TRANSIT".equals(apiMode) ? "/direction/transit/integrated" : "/direction/driving";
+    public Map<String, Object> coalescingStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("geocode", geocodeFlight.stats());
+        stats.put("route", routeFlight.stats());
+        return stats;
+    }
 
-        return UriComponentsBuilder.fromHttpUrl(baseUrl + endpoint)
+    /**
+     * 调用地图API进行地理编码
+     */
+    private CompletableFuture<double[]> fetchGeocodeAsync(String address, MapCallPriority priority) {
+        URI uri = UriComponentsBuilder.fromHttpUrl(baseUrl + "/geocode/geo")
                 .queryParam("key", apiKey)
-                .queryParam("origin", origin)
-                .queryParam("destination", destination)
-                .queryParam("extensions", "base")
+                .queryParam("address", address)
                 .build()
-                .toUriString();
+                .encode()
+                .toUri();
+
+        return callApi(uri, MapQuotaGovernor.Endpoint.GEOCODE, priority)
+                .map(body -> readBody(body, responseParser::parseGeocode))
+                .doOnError(e -> log.error("地理编码失败: {}", address, e))
+                .onErrorMap(e -> new RuntimeException("地址解析失败", e))
+                .toFuture();
     }
 
     /**
-     * 解析API响应
+     * 经熔断器和配额检查后发起调用，需要排队时延迟订阅（不占用线程）
      */
-    private CommuteCalculationResponse parseApiResponse(JsonNode root, String mode) {
-        CommuteCalculationResponse response = new CommuteCalculationResponse();
-
-        if (!"1".equals(root.path("status").asText())) {
-            throw new RuntimeException("API返回错误: " + root.path("info").asText());
+    private Mono<DataBuffer> callApi(URI uri, MapQuotaGovernor.Endpoint endpoint, MapCallPriority priority) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new CircuitOpenException();
         }
 
-        JsonNode route;
-        if ("TRANSIT".equals(convertToApiMode(mode))) {
-            route = root.path("route").path("transits").get(0);
-        } else {
-            route = root.path("route").path("paths").get(0);
+        long waitNanos;
+        try {
+            waitNanos = quotaGovernor.acquire(endpoint, priority);
+        } catch (RuntimeException e) {
+            circuitBreaker.releasePermission();
+            throw e;
         }
 
-        int distance = route.path("distance").asInt();
-        int duration = route.path("duration").asInt() / 60; // 秒转分钟
+        // 响应体以原始字节缓冲区返回，由流式解析器直接读取，不解码为 String
+        Mono<DataBuffer> request = Mono.defer(() -> {
+            long start = System.nanoTime();
+            return DataBufferUtils.join(mapWebClient.get()
+                            .uri(uri)
+                            .retrieve()
+                            .bodyToFlux(DataBuffer.class))
+                    .doOnSuccess(body -> circuitBreaker.onSuccess(System.nanoTime() - start))
+                    .doOnError(e -> circuitBreaker.onError())
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+        }).doOnCancel(circuitBreaker::releasePermission);
+        return waitNanos > 0 ? Mono.delay(Duration.ofNanos(waitNanos)).then(request) : request;
+    }
 
-        response.setDistanceMeters(distance);
-        response.setDistanceText(formatDistance(distance));
-        response.setDurationMinutes(duration);
-        response.setDurationText(duration + "分钟");
+    /**
+     * 等待异步结果，还原原始异常
+     */
+    private <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
 
-        return response;
+    /**
+     * 熔断打开时拒绝上游调用
+     */
+    private static class CircuitOpenException extends ResponseStatusException {
+        CircuitOpenException() {
+            super(HttpStatus.SERVICE_UNAVAILABLE, "地图服务暂不可用,请稍后重试");
+        }
     }
 
     /**
-     * 高峰期时间修正
+     * 从响应缓冲区流式解析，解析完成后释放缓冲区
      */
-    private Integer applyPeakCorrection(Integer baseDuration) {
-        BigDecimal correction = getPeakCorrectionFactor();
-        return BigDecimal.valueOf(baseDuration)
-                .multiply(correction)
-                .intValue();
+    private <T> T readBody(DataBuffer body, Function<InputStream, T> parser) {
+        try (InputStream in = body.asInputStream(true)) {
+            return parser.apply(in);
+        } catch (IOException e) {
+            throw new RuntimeException("地图API响应解析失败", e);
+        }
     }
 
     /**
-     * 获取高峰期修正系数
+     * 构建API URL
      */
-    private BigDecimal getPeakCorrectionFactor() {
-        LocalTime now = LocalTime.now();
+    private URI buildApiUrl(String origin, String destination, String mode) {
+        String apiMode = toApiMode(mode);
+        String endpoint = "TRANSIT".equals(apiMode) ? "/direction/transit/integrated" : "/direction/driving";
 
-        // 早高峰 7:00-9:30
-        if (now.isAfter(LocalTime.of(7, 0)) && now.isBefore(LocalTime.of(9, 30))) {
-            return new BigDecimal("1.3");
-        }
-        // 晚高峰 17:00-19:30
-        if (now.isAfter(LocalTime.of(17, 0)) && now.isBefore(LocalTime.of(19, 30))) {
-            return new BigDecimal("1.25");
-        }
+        return UriComponentsBuilder.fromHttpUrl(baseUrl + endpoint)
+                .queryParam("key", apiKey)
+                .queryParam("origin", origin)
+                .queryParam("destination", destination)
+                .queryParam("extensions", "base")
+                .build()
+                .encode()
+                .toUri();
+    }
 
-        return BigDecimal.ONE;
+    /**
+     * 解析API响应
+     */
+    private CommuteCalculationResponse parseRoute(DataBuffer body, String mode) {
+        boolean transit = "TRANSIT".equals(toApiMode(mode));
+        int[] route = readBody(body, in -> responseParser.parseRoute(in, transit));
+
+        int distance = route[0];
+        int duration = route[1] / 60; // 秒转分钟
+
+        return buildResponse(distance, duration);
+    }
+
+    /**
+     * 构建路线响应
+     */
+    private CommuteCalculationResponse buildResponse(int distance, int duration) {
+        CommuteCalculationResponse response = new CommuteCalculationResponse();
+        response.setDistanceMeters(distance);
+        response.setDistanceText(formatDistance(distance));
+        response.setDurationMinutes(duration);
+        response.setDurationText(duration + "分钟");
+        return response;
     }
 
     /**
      * 转换通勤模式到API参数
      */
-    private String convertToApiMode(String mode) {
+    public static String toApiMode(String mode) {
         if (mode == null) {
             return "DRIVING";
         }
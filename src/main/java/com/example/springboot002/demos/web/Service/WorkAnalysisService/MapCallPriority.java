@@ -0,0 +1,17 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+// 地图API调用优先级
+public enum MapCallPriority {
+    INTERACTIVE("用户交互请求"),
+    BACKGROUND("后台重算/刷新");
+
+    private final String description;
+
+    MapCallPriority(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 地图API熔断器
+ * 基于最近 N 次调用的失败率（含慢调用）打开熔断，打开期间直接拒绝上游调用；
+ * 冷却期过后进入半开状态放行少量试探调用，全部成功则关闭，任一失败重新打开。
+ */
+@Slf4j
+@Service
+public class MapCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenPermits;
+
+    // 最近 N 次调用结果的环形缓冲区，true 表示失败
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenInFlight;
+    private int halfOpenSuccesses;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong openCount = new AtomicLong();
+
+    public MapCircuitBreaker(@Value("${map.circuit.window-size:20}") int windowSize,
+                             @Value("${map.circuit.minimum-calls:10}") int minimumCalls,
+                             @Value("${map.circuit.failure-rate-threshold:0.5}") double failureRateThreshold,
+                             @Value("${map.circuit.slow-call-ms:5000}") long slowCallMs,
+                             @Value("${map.circuit.open-seconds:30}") long openSeconds,
+                             @Value("${map.circuit.half-open-permits:3}") int halfOpenPermits) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+        this.openNanos = TimeUnit.SECONDS.toNanos(openSeconds);
+        this.halfOpenPermits = halfOpenPermits;
+        this.window = new boolean[windowSize];
+    }
+
+    /**
+     * 是否允许调用上游；打开状态下冷却期结束后转为半开并放行试探调用
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && halfOpenInFlight < halfOpenPermits) {
+            halfOpenInFlight++;
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 归还未实际发起调用的半开试探名额
+     */
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+        }
+    }
+
+    /**
+     * 熔断器当前是否关闭（用于后台对账判断上游是否已恢复）
+     */
+    public synchronized boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * 记录调用成功，耗时超过阈值按失败计
+     */
+    public void onSuccess(long elapsedNanos) {
+        record(elapsedNanos > slowCallNanos);
+    }
+
+    /**
+     * 记录调用失败
+     */
+    public void onError() {
+        record(true);
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state.name());
+        stats.put("windowCalls", windowCount);
+        stats.put("windowFailures", windowFailures);
+        stats.put("rejected", rejected.get());
+        stats.put("openCount", openCount.get());
+        return stats;
+    }
+
+    private synchronized void record(boolean failure) {
+        if (state == State.HALF_OPEN) {
+            halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+            if (failure) {
+                transitionTo(State.OPEN);
+            } else if (++halfOpenSuccesses >= halfOpenPermits) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+
+        if (windowCount == windowSize) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % windowSize;
+
+        if (windowCount >= minimumCalls && (double) windowFailures / windowCount >= failureRateThreshold) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State newState) {
+        log.warn("地图API熔断器状态变更: {} -> {}", state, newState);
+        state = newState;
+        halfOpenInFlight = 0;
+        halfOpenSuccesses = 0;
+        if (newState == State.OPEN) {
+            openedAt = System.nanoTime();
+            openCount.incrementAndGet();
+        }
+        if (newState == State.CLOSED) {
+            windowIndex = 0;
+            windowCount = 0;
+            windowFailures = 0;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.Util.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 地图服务配额控制
+ * 地理编码、路线规划各自独立的令牌桶（QPS）和日配额。
+ * 令牌不足时按预约方式排队（返回需要延迟的时间，不阻塞线程），等待时间有上限；
+ * 后台调用预支令牌后，桶内至少还要留出 N 个交互请求能在其等待上限内拿到的令牌，保证交互请求优先。
+ * 日配额先 INCR 占用，超过上限或限流拒绝时回滚。
+ */
+@Slf4j
+@Service
+public class MapQuotaGovernor {
+
+    // Redis key 前缀
+    private static final String QUOTA_PREFIX = "map:quota:";
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    public enum Endpoint {
+        GEOCODE, DIRECTION
+    }
+
+    private final RedisUtil redisUtil;
+    private final Map<Endpoint, TokenBucket> buckets = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Long> dailyLimits = new EnumMap<>(Endpoint.class);
+
+    private final long interactiveMaxWaitNanos;
+    private final long backgroundMaxWaitNanos;
+    private final double backgroundDailyShare;
+
+    public MapQuotaGovernor(RedisUtil redisUtil,
+                            @Value("${map.quota.geocode.qps:20}") double geocodeQps,
+                            @Value("${map.quota.geocode.daily-limit:300000}") long geocodeDailyLimit,
+                            @Value("${map.quota.direction.qps:20}") double directionQps,
+                            @Value("${map.quota.direction.daily-limit:300000}") long directionDailyLimit,
+                            @Value("${map.quota.interactive-max-wait-ms:2000}") long interactiveMaxWaitMs,
+                            @Value("${map.quota.background-max-wait-ms:10000}") long backgroundMaxWaitMs,
+                            @Value("${map.quota.background-reserve-tokens:5}") double backgroundReserveTokens,
+                            @Value("${map.quota.background-daily-share:0.8}") double backgroundDailyShare) {
+        this.redisUtil = redisUtil;
+        this.interactiveMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(interactiveMaxWaitMs);
+        this.backgroundMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(backgroundMaxWaitMs);
+        this.backgroundDailyShare = backgroundDailyShare;
+        buckets.put(Endpoint.GEOCODE, new TokenBucket(geocodeQps, backgroundReserveTokens));
+        buckets.put(Endpoint.DIRECTION, new TokenBucket(directionQps, backgroundReserveTokens));
+        dailyLimits.put(Endpoint.GEOCODE, geocodeDailyLimit);
+        dailyLimits.put(Endpoint.DIRECTION, directionDailyLimit);
+    }
+
+    /**
+     * 申请一次调用配额
+     *
+     * @return 调用前需要等待的纳秒数（0 表示可立即调用）
+     * @throws ResponseStatusException 429，排队超时或日配额已用完
+     */
+    public long acquire(Endpoint endpoint, MapCallPriority priority) {
+        TokenBucket bucket = buckets.get(endpoint);
+
+        long dailyLimit = dailyLimits.get(endpoint);
+        if (priority == MapCallPriority.BACKGROUND) {
+            dailyLimit = (long) (dailyLimit * backgroundDailyShare);
+        }
+        if (!bucket.tryCountDaily(endpoint, dailyLimit)) {
+            bucket.rejectedDaily.incrementAndGet();
+            log.warn("地图API日配额已用完: endpoint={}, priority={}", endpoint, priority);
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "地图服务今日额度已用完,请明天再试");
+        }
+
+        long waitNanos = priority == MapCallPriority.INTERACTIVE
+                ? bucket.reserve(Double.NEGATIVE_INFINITY, interactiveMaxWaitNanos)
+                : bucket.reserve(bucket.backgroundFloor, backgroundMaxWaitNanos);
+        if (waitNanos < 0) {
+            bucket.uncountDaily(endpoint);
+            bucket.rejectedRate.incrementAndGet();
+            log.warn("地图API限流排队超时: endpoint={}, priority={}", endpoint, priority);
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "地图服务繁忙,请稍后重试");
+        }
+
+        if (waitNanos > 0) {
+            bucket.delayed.incrementAndGet();
+        }
+        bucket.granted.incrementAndGet();
+        return waitNanos;
+    }
+
+    /**
+     * 配额使用统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        buckets.forEach((endpoint, bucket) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("qps", bucket.ratePerSecond);
+            item.put("availableTokens", bucket.available());
+            item.put("granted", bucket.granted.get());
+            item.put("delayed", bucket.delayed.get());
+            item.put("rejectedRate", bucket.rejectedRate.get());
+            item.put("rejectedDaily", bucket.rejectedDaily.get());
+            item.put("dailyUsed", bucket.dailyUsed(endpoint));
+            item.put("dailyLimit", dailyLimits.get(endpoint));
+            stats.put(endpoint.name().toLowerCase(), item);
+        });
+        return stats;
+    }
+
+    /**
+     * 令牌桶，容量等于每秒速率；令牌可以预支（为负），预支部分即排队等待时间
+     */
+    private final class TokenBucket {
+        private final double ratePerSecond;
+        private final double capacity;
+        // 后台调用取令牌后余额的下限：交互请求在等待上限内还能拿到预留数量的令牌
+        private final double backgroundFloor;
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        // Redis 不可用时的本地日计数
+        private String localDay = "";
+        private final AtomicLong localDailyCount = new AtomicLong();
+
+        private final AtomicLong granted = new AtomicLong();
+        private final AtomicLong delayed = new AtomicLong();
+        private final AtomicLong rejectedRate = new AtomicLong();
+        private final AtomicLong rejectedDaily = new AtomicLong();
+
+        private TokenBucket(double ratePerSecond, double backgroundReserveTokens) {
+            this.ratePerSecond = ratePerSecond;
+            this.capacity = ratePerSecond;
+            this.tokens = ratePerSecond;
+            this.backgroundFloor = backgroundReserveTokens
+                    - interactiveMaxWaitNanos / (double) TimeUnit.SECONDS.toNanos(1) * ratePerSecond;
+        }
+
+        /**
+         * 预约一个令牌，取走后余额不得低于 minBalance
+         *
+         * @return 需要等待的纳秒数；低于余额下限或超过 maxWaitNanos 时返回 -1 且不扣减令牌
+         */
+        private synchronized long reserve(double minBalance, long maxWaitNanos) {
+            refill();
+            if (tokens - 1 < minBalance) {
+                return -1;
+            }
+            double deficit = 1 - tokens;
+            long waitNanos = deficit <= 0 ? 0 : (long) (deficit / ratePerSecond * TimeUnit.SECONDS.toNanos(1));
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            tokens -= 1;
+            return waitNanos;
+        }
+
+        private synchronized double available() {
+            refill();
+            return tokens;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            tokens = Math.min(capacity, tokens + elapsedSeconds * ratePerSecond);
+            lastRefillNanos = now;
+        }
+
+        /**
+         * 占用一次日配额；计数超过上限时回滚并返回 false
+         */
+        private boolean tryCountDaily(Endpoint endpoint, long limit) {
+            String key = dailyKey(endpoint);
+            Long count;
+            try {
+                count = redisUtil.increment(key);
+                if (count != null && count == 1) {
+                    redisUtil.expire(key, 2, TimeUnit.DAYS);
+                }
+            } catch (Exception e) {
+                log.warn("记录地图API日配额失败: {}", e.getMessage());
+                synchronized (this) {
+                    localCount();
+                    count = localDailyCount.incrementAndGet();
+                }
+            }
+            if (count != null && count > limit) {
+                uncountDaily(endpoint);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * 回滚一次日配额占用
+         */
+        private void uncountDaily(Endpoint endpoint) {
+            try {
+                redisUtil.decrement(dailyKey(endpoint));
+            } catch (Exception e) {
+                synchronized (this) {
+                    if (localCount() > 0) {
+                        localDailyCount.decrementAndGet();
+                    }
+                }
+            }
+        }
+
+        private long dailyUsed(Endpoint endpoint) {
+            try {
+                String value = redisUtil.get(dailyKey(endpoint));
+                return value != null ? Long.parseLong(value) : 0;
+            } catch (Exception e) {
+                return localCount();
+            }
+        }
+
+        private synchronized long localCount() {
+            String today = LocalDate.now().format(DAY_FORMAT);
+            if (!today.equals(localDay)) {
+                localDay = today;
+                localDailyCount.set(0);
+            }
+            return localDailyCount.get();
+        }
+
+        private String dailyKey(Endpoint endpoint) {
+            return QUOTA_PREFIX + endpoint.name().toLowerCase() + ":" + LocalDate.now().format(DAY_FORMAT);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 地图API响应流式解析
+ * 只读取需要的字段（status/info、第一条路线的 distance/duration、第一个地理编码的 location），
+ * 其余子树直接跳过，拿到所需字段后立即停止，不构建完整的 JsonNode 树。
+ */
+@Component
+public class MapResponseParser {
+
+    private final JsonFactory jsonFactory;
+
+    public MapResponseParser(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * 解析地理编码响应，返回 [经度, 纬度]
+     */
+    public double[] parseGeocode(InputStream in) {
+        String status = null;
+        String location = null;
+
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            expectObject(parser);
+            while (!(status != null && location != null) && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("status".equals(field)) {
+                    status = parser.getValueAsString();
+                } else if ("geocodes".equals(field) && value == JsonToken.START_ARRAY) {
+                    location = readFirstElementField(parser, "location");
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("地图API响应解析失败", e);
+        }
+
+        if (!"1".equals(status) || location == null) {
+            throw new RuntimeException("地址解析失败");
+        }
+        String[] coords = location.split(",");
+        return new double[]{Double.parseDouble(coords[0]), Double.parseDouble(coords[1])};
+    }
+
+    /**
+     * 解析路线规划响应，返回 [距离(米), 时长(秒)]
+     *
+     * @param transit 公交路线读取 route.transits，否则读取 route.paths
+     */
+    public int[] parseRoute(InputStream in, boolean transit) {
+        String status = null;
+        String info = null;
+        int[] route = null;
+        String listField = transit ? "transits" : "paths";
+
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            expectObject(parser);
+            while (!(status != null && route != null) && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("status".equals(field)) {
+                    status = parser.getValueAsString();
+                } else if ("info".equals(field)) {
+                    info = parser.getValueAsString();
+                } else if ("route".equals(field) && value == JsonToken.START_OBJECT) {
+                    route = readFirstRoute(parser, listField);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("地图API响应解析失败", e);
+        }
+
+        if (!"1".equals(status)) {
+            throw new RuntimeException("API返回错误: " + info);
+        }
+        if (route == null) {
+            throw new RuntimeException("API返回错误: 未找到可用路线");
+        }
+        return route;
+    }
+
+    /**
+     * 在 route 对象中读取列表第一项的 distance/duration，parser 停在 route 对象结束处
+     */
+    private int[] readFirstRoute(JsonParser parser, String listField) throws IOException {
+        int[] result = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (listField.equals(field) && value == JsonToken.START_ARRAY) {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_OBJECT) {
+                    result = readDistanceAndDuration(parser);
+                    token = parser.nextToken();
+                }
+                skipToArrayEnd(parser, token);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 读取单条路线对象的 distance/duration，parser 停在该对象结束处
+     */
+    private int[] readDistanceAndDuration(JsonParser parser) throws IOException {
+        int distance = 0;
+        int duration = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("distance".equals(field)) {
+                distance = parser.getValueAsInt();
+            } else if ("duration".equals(field)) {
+                duration = parser.getValueAsInt();
+            } else {
+                // steps/segments 等大字段直接跳过
+                parser.skipChildren();
+            }
+        }
+        return new int[]{distance, duration};
+    }
+
+    /**
+     * 读取数组第一个对象元素的指定字段，parser 停在数组结束处
+     */
+    private String readFirstElementField(JsonParser parser, String name) throws IOException {
+        String result = null;
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (name.equals(field) && parser.currentToken() == JsonToken.VALUE_STRING) {
+                    result = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            token = parser.nextToken();
+        }
+        skipToArrayEnd(parser, token);
+        return result;
+    }
+
+    /**
+     * 跳过数组剩余元素，token 为当前所在的元素起始位置
+     */
+    private void skipToArrayEnd(JsonParser parser, JsonToken token) throws IOException {
+        while (token != null && token != JsonToken.END_ARRAY) {
+            parser.skipChildren();
+            token = parser.nextToken();
+        }
+    }
+
+    private void expectObject(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("地图API响应不是JSON对象");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.PeakSlotDuration;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.PeakSlotDurationRepository;
+import com.example.springboot002.demos.web.Util.LruCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 高峰时段实测时长
+ * 高峰期间按时段保存的实时路况时长；查询高峰通勤时取该路线各时段实测值的平均，
+ * 没有实测数据时才退回固定修正系数，结果与查询发生的时刻无关。
+ */
+@Service
+public class PeakDurationService {
+
+    // 早高峰 7:00-9:30，晚高峰 17:00-19:30
+    private static final LocalTime MORNING_START = LocalTime.of(7, 0);
+    private static final LocalTime MORNING_END = LocalTime.of(9, 30);
+    private static final LocalTime EVENING_START = LocalTime.of(17, 0);
+    private static final LocalTime EVENING_END = LocalTime.of(19, 30);
+
+    private final PeakSlotDurationRepository peakSlotDurationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LruCache<String, Integer> peakCache;
+    private final int slotMinutes;
+    private final long maxAgeDays;
+    private final BigDecimal fallbackFactor;
+    private final long cacheTtlMillis;
+
+    public PeakDurationService(PeakSlotDurationRepository peakSlotDurationRepository,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${map.peak.slot-minutes:15}") int slotMinutes,
+                               @Value("${map.peak.max-age-days:14}") long maxAgeDays,
+                               @Value("${map.peak.fallback-factor:1.3}") BigDecimal fallbackFactor,
+                               @Value("${map.peak.cache-max-size:20000}") int cacheMaxSize,
+                               @Value("${map.peak.cache-ttl-minutes:10}") long cacheTtlMinutes) {
+        this.peakSlotDurationRepository = peakSlotDurationRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.slotMinutes = slotMinutes;
+        this.maxAgeDays = maxAgeDays;
+        this.fallbackFactor = fallbackFactor;
+        this.peakCache = new LruCache<>(cacheMaxSize);
+        this.cacheTtlMillis = TimeUnit.MINUTES.toMillis(cacheTtlMinutes);
+    }
+
+    /**
+     * 没有实测数据时按固定系数修正原始时长
+     */
+    public int applyFallbackFactor(int baseDuration) {
+        return BigDecimal.valueOf(baseDuration).multiply(fallbackFactor).intValue();
+    }
+
+    /**
+     * 该路线各高峰时段实测时长的平均值，没有有效数据时返回 null
+     */
+    public Integer observedPeakDuration(String routeKey) {
+        Integer cached = peakCache.get(routeKey);
+        if (cached != null) {
+            return cached > 0 ? cached : null;
+        }
+
+        LocalDateTime since = LocalDateTime.now().minusDays(maxAgeDays);
+        long sum = 0;
+        int count = 0;
+        for (PeakSlotDuration slot : peakSlotDurationRepository.findByIdRouteKeyOrderByIdSlotAsc(routeKey)) {
+            if (!slot.getSampledAt().isBefore(since)) {
+                sum += slot.getDurationMinutes();
+                count++;
+            }
+        }
+        int average = count > 0 ? (int) Math.round((double) sum / count) : 0;
+        // 没有数据也缓存（记为 0），避免每次查询都访问数据库
+        peakCache.put(routeKey, average, cacheTtlMillis);
+        return average > 0 ? average : null;
+    }
+
+    /**
+     * 路线的全部时段数据
+     */
+    public List<PeakSlotDuration> getSlots(String routeKey) {
+        if (routeKey == null) {
+            return Collections.emptyList();
+        }
+        return peakSlotDurationRepository.findByIdRouteKeyOrderByIdSlotAsc(routeKey);
+    }
+
+    /**
+     * 记录一次实测时长，并使本节点的汇总缓存失效
+     */
+    public void record(String routeKey, int slot, int distanceMeters, int durationMinutes, LocalDateTime sampledAt) {
+        transactionTemplate.execute(status ->
+                peakSlotDurationRepository.upsertSample(routeKey, slot, durationMinutes, distanceMeters, sampledAt));
+        peakCache.remove(routeKey);
+    }
+
+    public int slotOf(LocalTime time) {
+        return (time.getHour() * 60 + time.getMinute()) / slotMinutes;
+    }
+
+    public LocalTime slotStart(int slot) {
+        return LocalTime.MIN.plusMinutes((long) slot * slotMinutes);
+    }
+
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    public boolean isMorningPeak(LocalTime time) {
+        return !time.isBefore(MORNING_START) && time.isBefore(MORNING_END);
+    }
+
+    public boolean isEveningPeak(LocalTime time) {
+        return !time.isBefore(EVENING_START) && time.isBefore(EVENING_END);
+    }
+}
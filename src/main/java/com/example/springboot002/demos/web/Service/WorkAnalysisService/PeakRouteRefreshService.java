@@ -0,0 +1,225 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteCalculationResponse;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.PeakSlotDuration;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkAnalysis;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.PeakSlotDurationRepository;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.WorkAnalysisRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 高峰路线定时刷新
+ * 工作日早晚高峰期间，每个时段为活跃工作分析的通勤路线查询一次实时路况时长并按时段保存
+ * （早高峰刷新 家→公司，晚高峰刷新 公司→家）。同一路线当天同一时段只刷新一次，
+ * 每个时段有调用上限，调用在时段内均匀错开，并按后台优先级经过配额限流。
+ * 多节点部署时每个时段先在 Redis 中认领（SET NX，有效期为一个时段），只有认领成功的节点执行刷新。
+ */
+@Slf4j
+@Service
+public class PeakRouteRefreshService {
+
+    // 每批查询已刷新路线的 key 数量
+    private static final int KEY_QUERY_CHUNK = 500;
+    private static final String SLOT_CLAIM_PREFIX = "peak-route-refresh:claim:";
+
+    private final WorkAnalysisRepository workAnalysisRepository;
+    private final PeakSlotDurationRepository peakSlotDurationRepository;
+    private final PeakDurationService peakDurationService;
+    private final MapApiService mapApiService;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final int maxRoutesPerSlot;
+    private final int maxCandidates;
+    private final long activeDays;
+    private final long callTimeoutMs;
+
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "peak-route-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong refreshed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public PeakRouteRefreshService(WorkAnalysisRepository workAnalysisRepository,
+                                   PeakSlotDurationRepository peakSlotDurationRepository,
+                                   PeakDurationService peakDurationService,
+                                   MapApiService mapApiService,
+                                   StringRedisTemplate stringRedisTemplate,
+                                   @Value("${map.peak.refresh.max-routes-per-slot:200}") int maxRoutesPerSlot,
+                                   @Value("${map.peak.refresh.max-candidates:5000}") int maxCandidates,
+                                   @Value("${map.peak.refresh.active-days:30}") long activeDays,
+                                   @Value("${map.peak.refresh.call-timeout-ms:15000}") long callTimeoutMs) {
+        this.workAnalysisRepository = workAnalysisRepository;
+        this.peakSlotDurationRepository = peakSlotDurationRepository;
+        this.peakDurationService = peakDurationService;
+        this.mapApiService = mapApiService;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.maxRoutesPerSlot = maxRoutesPerSlot;
+        this.maxCandidates = maxCandidates;
+        this.activeDays = activeDays;
+        this.callTimeoutMs = callTimeoutMs;
+    }
+
+    /**
+     * 每个时段开始时触发，选出本时段要刷新的路线并在时段内错开执行
+     */
+    @Scheduled(cron = "${map.peak.refresh.cron:0 0/15 7-9,17-19 * * MON-FRI}")
+    public void refreshCurrentSlot() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalTime time = now.toLocalTime();
+        boolean morning = peakDurationService.isMorningPeak(time);
+        if (!morning && !peakDurationService.isEveningPeak(time)) {
+            return;
+        }
+        int slot = peakDurationService.slotOf(time);
+        if (!claimSlot(now.toLocalDate(), slot)) {
+            log.debug("高峰路线刷新时段已由其他节点认领: {}", peakDurationService.slotStart(slot));
+            return;
+        }
+
+        List<RouteTarget> targets = selectTargets(morning, slot, now.toLocalDate());
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        // 在本时段的前 80% 时间内均匀错开，避免时段开始时集中消耗配额
+        long windowMillis = TimeUnit.MINUTES.toMillis(peakDurationService.getSlotMinutes()) * 4 / 5;
+        long spacingMillis = windowMillis / targets.size();
+        for (int i = 0; i < targets.size(); i++) {
+            RouteTarget target = targets.get(i);
+            dispatcher.schedule(() -> refresh(target, slot), i * spacingMillis, TimeUnit.MILLISECONDS);
+        }
+        scheduled.addAndGet(targets.size());
+        log.info("高峰路线刷新: 时段={}, {}条路线, 间隔{}ms",
+                peakDurationService.slotStart(slot), targets.size(), spacingMillis);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("scheduled", scheduled.get());
+        stats.put("refreshed", refreshed.get());
+        stats.put("failed", failed.get());
+        stats.put("skipped", skipped.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * 认领当天的该时段；Redis 不可用时不刷新，避免各节点重复调用地图API
+     */
+    private boolean claimSlot(LocalDate today, int slot) {
+        try {
+            return Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(
+                    SLOT_CLAIM_PREFIX + today + ":" + slot, "1",
+                    Duration.ofMinutes(peakDurationService.getSlotMinutes())));
+        } catch (RuntimeException e) {
+            log.warn("高峰路线刷新时段认领失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 活跃工作分析按路线去重，排除今天本时段已刷新的路线；超过上限时随机抽取，保证各路线轮流覆盖
+     */
+    private List<RouteTarget> selectTargets(boolean morning, int slot, LocalDate today) {
+        List<WorkAnalysis> active = workAnalysisRepository.findActiveSince(
+                LocalDateTime.now().minusDays(activeDays), PageRequest.of(0, maxCandidates));
+
+        Map<String, RouteTarget> routes = new LinkedHashMap<>();
+        for (WorkAnalysis analysis : active) {
+            String home = analysis.getHomeLongitude() + "," + analysis.getHomeLatitude();
+            String company = analysis.getCompanyLongitude() + "," + analysis.getCompanyLatitude();
+            String origin = morning ? home : company;
+            String destination = morning ? company : home;
+            String mode = analysis.getCommuteMode() != null ? analysis.getCommuteMode().name() : null;
+            String routeKey = mapApiService.routeKey(origin, destination, mode);
+            routes.putIfAbsent(routeKey, new RouteTarget(routeKey, origin, destination, mode));
+        }
+
+        Set<String> done = new HashSet<>();
+        List<String> keys = new ArrayList<>(routes.keySet());
+        for (int i = 0; i < keys.size(); i += KEY_QUERY_CHUNK) {
+            List<String> chunk = keys.subList(i, Math.min(keys.size(), i + KEY_QUERY_CHUNK));
+            for (PeakSlotDuration existing : peakSlotDurationRepository
+                    .findByIdRouteKeyInAndIdSlotAndSampledAtGreaterThanEqual(chunk, slot, today.atStartOfDay())) {
+                done.add(existing.getId().getRouteKey());
+            }
+        }
+
+        List<RouteTarget> targets = new ArrayList<>();
+        for (RouteTarget target : routes.values()) {
+            if (!done.contains(target.routeKey)) {
+                targets.add(target);
+            }
+        }
+        if (targets.size() > maxRoutesPerSlot) {
+            skipped.addAndGet(targets.size() - maxRoutesPerSlot);
+            Collections.shuffle(targets);
+            targets = new ArrayList<>(targets.subList(0, maxRoutesPerSlot));
+        }
+        return targets;
+    }
+
+    private void refresh(RouteTarget target, int slot) {
+        try {
+            CommuteCalculationResponse result = mapApiService
+                    .fetchLiveRouteAsync(target.origin, target.destination, target.mode)
+                    .get(callTimeoutMs, TimeUnit.MILLISECONDS);
+            peakDurationService.record(target.routeKey, slot,
+                    result.getDistanceMeters(), result.getDurationMinutes(), LocalDateTime.now());
+            refreshed.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // 熔断打开、配额耗尽或上游失败时跳过，下一个时段再刷新
+            failed.incrementAndGet();
+            log.debug("高峰路线刷新失败: {}", target.routeKey, e);
+        }
+    }
+
+    /**
+     * 待刷新的路线
+     */
+    private static final class RouteTarget {
+        private final String routeKey;
+        private final String origin;
+        private final String destination;
+        private final String mode;
+
+        private RouteTarget(String routeKey, String origin, String destination, String mode) {
+            this.routeKey = routeKey;
+            this.origin = origin;
+            this.destination = destination;
+            this.mode = mode;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.Util.LruCache;
+import com.example.springboot002.demos.web.Util.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 路线结果缓存
+ * key 为 (起点, 终点, 出行方式)，坐标按网格量化，同一栋楼的用户共享结果。
+ * 缓存的是未做高峰修正的原始时长，修正在查询之后进行。
+ * 过了新鲜期的条目仍可返回（stale-while-revalidate），同时在后台刷新。
+ */
+@Slf4j
+@Service
+public class RouteCacheService {
+
+    // Redis key 前缀
+    private static final String ROUTE_PREFIX = "map:route:";
+
+    private final RedisUtil redisUtil;
+    private final GeocodeCacheService geocodeCacheService;
+    private final LruCache<String, CachedRoute> localCache;
+
+    private final double gridSize;
+    private final long freshMillis;
+    private final long maxStaleMillis;
+
+    // 正在后台刷新的key，避免同一路线重复刷新
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    public RouteCacheService(RedisUtil redisUtil,
+                             GeocodeCacheService geocodeCacheService,
+                             @Value("${map.route-cache.local-max-size:20000}") int localMaxSize,
+                             @Value("${map.route-cache.grid-size:0.001}") double gridSize,
+                             @Value("${map.route-cache.fresh-minutes:360}") long freshMinutes,
+                             @Value("${map.route-cache.max-stale-hours:168}") long maxStaleHours) {
+        this.redisUtil = redisUtil;
+        this.geocodeCacheService = geocodeCacheService;
+        this.localCache = new LruCache<>(localMaxSize);
+        this.gridSize = gridSize;
+        this.freshMillis = TimeUnit.MINUTES.toMillis(freshMinutes);
+        this.maxStaleMillis = TimeUnit.HOURS.toMillis(maxStaleHours);
+    }
+
+    /**
+     * 构建缓存key，坐标按网格量化，非坐标文本按地址规范化
+     */
+    public String buildKey(String origin, String destination, String apiMode) {
+        return apiMode + ":" + quantize(origin) + ":" + quantize(destination);
+    }
+
+    /**
+     * 查询缓存，超过最大陈旧时间的条目视为未命中
+     */
+    public CachedRoute get(String key) {
+        CachedRoute route = localCache.get(key);
+        if (route == null) {
+            route = readRedis(key);
+            if (route != null) {
+                localCache.put(key, route, maxStaleMillis);
+            }
+        }
+
+        if (route == null || route.ageMillis() > maxStaleMillis) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (isStale(route)) {
+            staleHits.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return route;
+    }
+
+    /**
+     * 写入两级缓存
+     */
+    public CachedRoute put(String key, int distanceMeters, int durationMinutes) {
+        CachedRoute route = new CachedRoute(distanceMeters, durationMinutes, System.currentTimeMillis());
+        localCache.put(key, route, maxStaleMillis);
+        try {
+            redisUtil.set(ROUTE_PREFIX + key,
+                    route.getDistanceMeters() + "," + route.getDurationMinutes() + "," + route.getFetchedAt(),
+                    maxStaleMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("写入路线缓存失败: {}", e.getMessage());
+        }
+        return route;
+    }
+
+    public boolean isStale(CachedRoute route) {
+        return route.ageMillis() > freshMillis;
+    }
+
+    /**
+     * 后台刷新陈旧条目，调用方不等待结果；loader 完成时负责写入缓存
+     */
+    public void refreshAsync(String key, Supplier<? extends CompletableFuture<?>> loader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            loader.get().whenComplete((fresh, e) -> {
+                refreshing.remove(key);
+                if (e != null) {
+                    log.warn("后台刷新路线缓存失败: {}", key, e);
+                } else {
+                    refreshes.incrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(key);
+            log.warn("后台刷新路线缓存失败: {}", key, e);
+        }
+    }
+
+    /**
+     * 清空全部路线缓存
+     */
+    public long evictAll() {
+        localCache.clear();
+        long deleted = redisUtil.deleteByPattern(ROUTE_PREFIX + "*");
+        log.info("已清空路线缓存, Redis删除{}条", deleted);
+        return deleted;
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> stats() {
+        long hit = hits.get();
+        long stale = staleHits.get();
+        long miss = misses.get();
+        long total = hit + stale + miss;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hit);
+        stats.put("staleHits", stale);
+        stats.put("misses", miss);
+        stats.put("backgroundRefreshes", refreshes.get());
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) (hit + stale) / total);
+        stats.put("localSize", localCache.size());
+        stats.put("gridSize", gridSize);
+        return stats;
+    }
+
+    private CachedRoute readRedis(String key) {
+        try {
+            String value = redisUtil.get(ROUTE_PREFIX + key);
+            if (value == null) {
+                return null;
+            }
+            String[] parts = value.split(",");
+            return new CachedRoute(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                    Long.parseLong(parts[2]));
+        } catch (Exception e) {
+            log.warn("读取路线缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String quantize(String location) {
+        String[] parts = location.split(",");
+        if (parts.length == 2) {
+            try {
+                long lng = Math.round(Double.parseDouble(parts[0].trim()) / gridSize);
+                long lat = Math.round(Double.parseDouble(parts[1].trim()) / gridSize);
+                return lng + "_" + lat;
+            } catch (NumberFormatException ignored) {
+                // 不是坐标，按地址文本处理
+            }
+        }
+        return geocodeCacheService.normalize(location);
+    }
+
+    /**
+     * 缓存的路线结果（未做高峰修正）
+     */
+    public static final class CachedRoute {
+        private final int distanceMeters;
+        private final int durationMinutes;
+        private final long fetchedAt;
+
+        CachedRoute(int distanceMeters, int durationMinutes, long fetchedAt) {
+            this.distanceMeters = distanceMeters;
+            this.durationMinutes = durationMinutes;
+            this.fetchedAt = fetchedAt;
+        }
+
+        public int getDistanceMeters() {
+            return distanceMeters;
+        }
+
+        public int getDurationMinutes() {
+            return durationMinutes;
+        }
+
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+
+        long ageMillis() {
+            return System.currentTimeMillis() - fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest.ScenarioRequest;
+import com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest.ScenarioVariantRequest;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteCalculationResponse;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.ScenarioResponse;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.ScenarioResultResponse;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteMode;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkAnalysis;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkTimeValue;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.WorkAnalysisRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 假设场景模拟
+ * 在基准工作分析上覆盖地址、通勤方式、薪资、工作天数，多个场景并行计算早晚高峰通勤和时间价值。
+ * 地址解析和路线计算都走带缓存、请求合并的地图层，相同地址只解析一次；不写数据库，也不修改基准分析。
+ * 一次请求的调用次数随场景数放大，按后台优先级限流，不挤占交互请求的配额。
+ */
+@Slf4j
+@Service
+public class ScenarioSimulationService {
+
+    private static final String RANK_BY_COMMUTE = "dailyCommuteMinutes";
+
+    private final WorkAnalysisRepository workAnalysisRepository;
+    private final MapApiService mapApiService;
+    private final TimeValueCalculator timeValueCalculator;
+    private final long timeoutMs;
+
+    public ScenarioSimulationService(WorkAnalysisRepository workAnalysisRepository,
+                                     MapApiService mapApiService,
+                                     TimeValueCalculator timeValueCalculator,
+                                     @Value("${scenario.timeout-ms:20000}") long timeoutMs) {
+        this.workAnalysisRepository = workAnalysisRepository;
+        this.mapApiService = mapApiService;
+        this.timeValueCalculator = timeValueCalculator;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * 模拟一组场景并排序返回
+     */
+    public ScenarioResponse simulate(String workAnalysisId, ScenarioRequest request) {
+        long start = System.nanoTime();
+        WorkAnalysis base = workAnalysisRepository.findById(workAnalysisId)
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "Work analysis not found with id: " + workAnalysisId));
+        if (base.getHomeLongitude() == null || base.getCompanyLongitude() == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "工作分析的地址尚未解析完成");
+        }
+
+        String baseHome = base.getHomeLongitude() + "," + base.getHomeLatitude();
+        String baseCompany = base.getCompanyLongitude() + "," + base.getCompanyLatitude();
+
+        // 每个不同的地址只解析一次，基准地址直接使用已保存的坐标
+        Map<String, CompletableFuture<String>> locations = new HashMap<>();
+        List<Evaluation> evaluations = new ArrayList<>();
+        evaluations.add(start(base, new ScenarioVariantRequest(), "基准", baseHome, baseCompany, locations));
+        for (int i = 0; i < request.getScenarios().size(); i++) {
+            ScenarioVariantRequest variant = request.getScenarios().get(i);
+            String name = variant.getName() != null ? variant.getName() : "场景" + (i + 1);
+            evaluations.add(start(base, variant, name, baseHome, baseCompany, locations));
+        }
+
+        awaitAll(evaluations, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+
+        List<ScenarioResultResponse> results = new ArrayList<>();
+        for (Evaluation evaluation : evaluations) {
+            results.add(finish(evaluation));
+        }
+        ScenarioResultResponse baseline = results.remove(0);
+        for (ScenarioResultResponse result : results) {
+            if (result.getEffectiveHourlyWage() != null && baseline.getEffectiveHourlyWage() != null) {
+                result.setEffectiveHourlyWageDelta(
+                        result.getEffectiveHourlyWage().subtract(baseline.getEffectiveHourlyWage()));
+            }
+        }
+        rank(results, request.getRankBy());
+
+        ScenarioResponse response = new ScenarioResponse();
+        response.setBaseline(baseline);
+        response.setResults(results);
+        response.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return response;
+    }
+
+    /**
+     * 启动单个场景的计算（早晚高峰路线并行）
+     */
+    private Evaluation start(WorkAnalysis base, ScenarioVariantRequest variant, String name,
+                             String baseHome, String baseCompany,
+                             Map<String, CompletableFuture<String>> locations) {
+        Evaluation evaluation = new Evaluation(name);
+        ScenarioResultResponse result = evaluation.result;
+        result.setHomeAddress(variant.getHomeAddress() != null ? variant.getHomeAddress() : base.getHomeAddress());
+        result.setCompanyAddress(variant.getCompanyAddress() != null
+                ? variant.getCompanyAddress() : base.getCompanyAddress());
+        result.setCommuteMode(variant.getCommuteMode() != null
+                ? parseCommuteMode(variant.getCommuteMode()).name() : base.getCommuteMode().name());
+
+        boolean salaryOverridden = variant.getMonthlySalary() != null || variant.getAnnualSalary() != null;
+        evaluation.monthlySalary = salaryOverridden ? variant.getMonthlySalary() : base.getMonthlySalary();
+        evaluation.annualSalary = salaryOverridden ? variant.getAnnualSalary() : base.getAnnualSalary();
+        evaluation.workDaysPerMonth = variant.getWorkDaysPerMonth() != null
+                ? variant.getWorkDaysPerMonth() : base.getWorkDaysPerMonth();
+
+        CompletableFuture<String> home = variant.getHomeAddress() != null
+                ? locations.computeIfAbsent(variant.getHomeAddress(),
+                        key -> mapApiService.resolveLocationAsync(key, MapCallPriority.BACKGROUND))
+                : CompletableFuture.completedFuture(baseHome);
+        CompletableFuture<String> company = variant.getCompanyAddress() != null
+                ? locations.computeIfAbsent(variant.getCompanyAddress(),
+                        key -> mapApiService.resolveLocationAsync(key, MapCallPriority.BACKGROUND))
+                : CompletableFuture.completedFuture(baseCompany);
+
+        String mode = result.getCommuteMode();
+        evaluation.morning = home.thenCombine(company, (from, to) -> new String[]{from, to})
+                .thenCompose(pair -> mapApiService.calculateCommuteAsync(
+                        pair[0], pair[1], mode, true, MapCallPriority.BACKGROUND));
+        evaluation.evening = home.thenCombine(company, (from, to) -> new String[]{to, from})
+                .thenCompose(pair -> mapApiService.calculateCommuteAsync(
+                        pair[0], pair[1], mode, true, MapCallPriority.BACKGROUND));
+        return evaluation;
+    }
+
+    /**
+     * 在总超时时间内等待所有场景，超时未完成的取消
+     */
+    private void awaitAll(List<Evaluation> evaluations, long deadline) {
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (Evaluation evaluation : evaluations) {
+            futures.add(evaluation.morning);
+            futures.add(evaluation.evening);
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // 各场景结果在 finish 中逐一检查
+        }
+        for (CompletableFuture<?> future : futures) {
+            if (!future.isDone()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private ScenarioResultResponse finish(Evaluation evaluation) {
+        ScenarioResultResponse result = evaluation.result;
+        CommuteCalculationResponse morning;
+        CommuteCalculationResponse evening;
+        try {
+            morning = evaluation.morning.join();
+            evening = evaluation.evening.join();
+        } catch (CancellationException e) {
+            result.setError("计算超时");
+            return result;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            result.setError(cause instanceof ResponseStatusException
+                    ? ((ResponseStatusException) cause).getReason() : cause.getMessage());
+            return result;
+        }
+
+        result.setMorningMinutes(morning.getCorrectedDuration());
+        result.setEveningMinutes(evening.getCorrectedDuration());
+        result.setDailyCommuteMinutes(morning.getCorrectedDuration() + evening.getCorrectedDuration());
+        result.setDistanceMeters(morning.getDistanceMeters());
+        result.setEstimated(Boolean.TRUE.equals(morning.getEstimated()) || Boolean.TRUE.equals(evening.getEstimated()));
+
+        WorkTimeValue value = new WorkTimeValue();
+        timeValueCalculator.calculate(evaluation.monthlySalary, evaluation.annualSalary,
+                evaluation.workDaysPerMonth, result.getDailyCommuteMinutes(), value);
+        result.setMonthlyIncome(value.getMonthlyIncome());
+        result.setNominalHourlyWage(value.getNominalHourlyWage());
+        result.setEffectiveHourlyWage(value.getEffectiveHourlyWage());
+        result.setCommuteCostShare(value.getCommuteCostShare());
+        result.setYearlyCommuteHours(value.getYearlyCommuteHours());
+        return result;
+    }
+
+    /**
+     * 排序：默认按实际时薪降序（相同时通勤短的在前），失败的场景排在最后且不参与排名
+     */
+    private void rank(List<ScenarioResultResponse> results, String rankBy) {
+        Comparator<ScenarioResultResponse> byCommute = Comparator.comparing(
+                ScenarioResultResponse::getDailyCommuteMinutes, Comparator.nullsLast(Comparator.naturalOrder()));
+        Comparator<ScenarioResultResponse> order = RANK_BY_COMMUTE.equals(rankBy)
+                ? byCommute
+                : Comparator.comparing(ScenarioResultResponse::getEffectiveHourlyWage,
+                        Comparator.nullsLast(Comparator.<BigDecimal>reverseOrder())).thenComparing(byCommute);
+
+        results.sort(Comparator.comparing((ScenarioResultResponse r) -> r.getError() != null).thenComparing(order));
+        int rank = 1;
+        for (ScenarioResultResponse result : results) {
+            if (result.getError() == null) {
+                result.setRank(rank++);
+            }
+        }
+    }
+
+    private CommuteMode parseCommuteMode(String mode) {
+        try {
+            return CommuteMode.valueOf(mode.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的通勤方式: " + mode);
+        }
+    }
+
+    /**
+     * 单个场景的计算状态
+     */
+    private static final class Evaluation {
+        private final ScenarioResultResponse result = new ScenarioResultResponse();
+        private BigDecimal monthlySalary;
+        private BigDecimal annualSalary;
+        private Integer workDaysPerMonth;
+        private CompletableFuture<CommuteCalculationResponse> morning;
+        private CompletableFuture<CommuteCalculationResponse> evening;
+
+        private Evaluation(String name) {
+            result.setName(name);
+        }
+    }
+}
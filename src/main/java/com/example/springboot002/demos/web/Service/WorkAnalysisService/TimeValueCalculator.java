@@ -0,0 +1,73 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkTimeValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 时间价值计算
+ * 月收入 ÷ (工作时长 + 通勤时长) 得到实际时薪；通勤占用比例 = 通勤时长 ÷ (工作时长 + 通勤时长)，
+ * 即 1 - 实际时薪/名义时薪。只做计算，不访问数据库。
+ */
+@Component
+public class TimeValueCalculator {
+
+    private static final BigDecimal TWELVE = BigDecimal.valueOf(12);
+    private static final BigDecimal SIXTY = BigDecimal.valueOf(60);
+
+    private final BigDecimal workHoursPerDay;
+
+    public TimeValueCalculator(@Value("${time-value.work-hours-per-day:8}") BigDecimal workHoursPerDay) {
+        this.workHoursPerDay = workHoursPerDay;
+    }
+
+    /**
+     * 计算结果写入 target；收入或工作天数缺失时相关指标为 null，通勤时长未知时通勤相关指标为 null
+     *
+     * @param dailyCommuteMinutes 每个工作日往返通勤分钟数，未知时为 null
+     */
+    public void calculate(BigDecimal monthlySalary, BigDecimal annualSalary, Integer workDaysPerMonth,
+                          Integer dailyCommuteMinutes, WorkTimeValue target) {
+        BigDecimal income = annualSalary != null && annualSalary.signum() > 0
+                ? annualSalary.divide(TWELVE, 2, RoundingMode.HALF_UP)
+                : monthlySalary;
+        int days = workDaysPerMonth != null && workDaysPerMonth > 0 ? workDaysPerMonth : 22;
+        BigDecimal workHours = workHoursPerDay.multiply(BigDecimal.valueOf(days));
+        BigDecimal nominal = income != null && workHours.signum() > 0
+                ? income.divide(workHours, 2, RoundingMode.HALF_UP) : null;
+
+        target.setMonthlyIncome(income);
+        target.setDailyCommuteMinutes(dailyCommuteMinutes);
+        target.setMonthlyWorkHours(workHours.setScale(2, RoundingMode.HALF_UP));
+        target.setNominalHourlyWage(nominal);
+
+        if (dailyCommuteMinutes == null) {
+            // 没有规划也没有打卡，不能按 0 分钟通勤给出实际时薪
+            target.setMonthlyCommuteHours(null);
+            target.setYearlyCommuteHours(null);
+            target.setCommuteCostShare(null);
+            target.setEffectiveHourlyWage(null);
+            target.setMonthlyCommuteCost(null);
+            return;
+        }
+
+        BigDecimal commuteHours = BigDecimal.valueOf((long) Math.max(0, dailyCommuteMinutes) * days)
+                .divide(SIXTY, 2, RoundingMode.HALF_UP);
+        BigDecimal totalHours = workHours.add(commuteHours);
+        target.setMonthlyCommuteHours(commuteHours);
+        target.setYearlyCommuteHours(commuteHours.multiply(TWELVE).setScale(2, RoundingMode.HALF_UP));
+        target.setCommuteCostShare(totalHours.signum() > 0
+                ? commuteHours.divide(totalHours, 4, RoundingMode.HALF_UP) : BigDecimal.ZERO);
+
+        if (nominal == null) {
+            target.setEffectiveHourlyWage(null);
+            target.setMonthlyCommuteCost(null);
+            return;
+        }
+        target.setEffectiveHourlyWage(income.divide(totalHours, 2, RoundingMode.HALF_UP));
+        target.setMonthlyCommuteCost(income.multiply(commuteHours).divide(workHours, 2, RoundingMode.HALF_UP));
+    }
+}
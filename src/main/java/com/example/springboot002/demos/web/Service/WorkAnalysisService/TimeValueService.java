@@ -0,0 +1,196 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.TimeValueResponse;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteStatistics;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkAnalysis;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkTimeValue;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteRecordRepository;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteStatisticsRepository;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.WorkAnalysisRepository;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.WorkTimeValueRepository;
+import com.example.springboot002.demos.web.Service.AdvisoryLockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 时间价值物化
+ * 工资、工作天数、通勤记录等输入变化时，在同一事务内把结果标记为过期（输入版本加一）；
+ * 后台定时重算过期结果，读取时按主键直接返回物化结果，只有缺失或过期时才当场重算。
+ * 重算时先锁定结果行，计算期间发生的输入变化会在本次提交后再次标记过期，由下一轮重算。
+ * 多个节点同时执行定时重算时按工作分析ID取 advisory 锁，已被其他节点处理的直接跳过。
+ */
+@Slf4j
+@Service
+public class TimeValueService {
+
+    private final WorkTimeValueRepository timeValueRepository;
+    private final WorkAnalysisRepository workAnalysisRepository;
+    private final CommuteStatisticsRepository statisticsRepository;
+    private final CommuteRecordRepository commuteRecordRepository;
+    private final TimeValueCalculator calculator;
+    private final TransactionTemplate transactionTemplate;
+    private final AdvisoryLockService advisoryLockService;
+    private final int refreshBatchSize;
+
+    public TimeValueService(WorkTimeValueRepository timeValueRepository,
+                            WorkAnalysisRepository workAnalysisRepository,
+                            CommuteStatisticsRepository statisticsRepository,
+                            CommuteRecordRepository commuteRecordRepository,
+                            TimeValueCalculator calculator,
+                            TransactionTemplate transactionTemplate,
+                            AdvisoryLockService advisoryLockService,
+                            @Value("${time-value.refresh-batch-size:200}") int refreshBatchSize) {
+        this.timeValueRepository = timeValueRepository;
+        this.workAnalysisRepository = workAnalysisRepository;
+        this.statisticsRepository = statisticsRepository;
+        this.commuteRecordRepository = commuteRecordRepository;
+        this.calculator = calculator;
+        this.transactionTemplate = transactionTemplate;
+        this.advisoryLockService = advisoryLockService;
+        this.refreshBatchSize = refreshBatchSize;
+    }
+
+    /**
+     * 标记时间价值过期，需在修改输入的事务中调用
+     */
+    public void markStale(Collection<String> workAnalysisIds) {
+        if (!workAnalysisIds.isEmpty()) {
+            timeValueRepository.markStale(workAnalysisIds);
+        }
+    }
+
+    public void markStale(String workAnalysisId) {
+        markStale(Collections.singleton(workAnalysisId));
+    }
+
+    /**
+     * 获取时间价值：通常只是一次主键查询
+     */
+    public TimeValueResponse getTimeValue(String workAnalysisId) {
+        WorkTimeValue value = timeValueRepository.findById(workAnalysisId).orElse(null);
+        if (value == null || Boolean.TRUE.equals(value.getStale()) || value.getComputedAt() == null) {
+            value = recompute(workAnalysisId, false);
+        }
+        return convertToResponse(value);
+    }
+
+    /**
+     * 定时重算过期的时间价值
+     */
+    @Scheduled(fixedDelayString = "${time-value.refresh-interval-ms:2000}")
+    public void refreshStale() {
+        List<String> ids = timeValueRepository.findStaleIds(PageRequest.of(0, refreshBatchSize));
+        for (String id : ids) {
+            try {
+                recompute(id, true);
+            } catch (RuntimeException e) {
+                log.warn("时间价值重算失败: workAnalysisId={}", id, e);
+            }
+        }
+    }
+
+    /**
+     * 先锁定结果行再读取输入：标记过期与修改输入在同一事务中，拿到锁时之前的修改均已提交可见，
+     * 之后的修改会等待本事务提交后再次标记过期。拿到锁后结果已是最新（其他节点刚重算过）时直接返回。
+     *
+     * @param skipIfBusy 其他节点正在重算同一条时跳过，返回 null
+     */
+    private WorkTimeValue recompute(String workAnalysisId, boolean skipIfBusy) {
+        return transactionTemplate.execute(status -> {
+            if (skipIfBusy && !advisoryLockService.tryLock("time-value", workAnalysisId)) {
+                return null;
+            }
+            WorkTimeValue value = timeValueRepository.findForUpdate(workAnalysisId).orElse(null);
+            if (value != null && !Boolean.TRUE.equals(value.getStale()) && value.getComputedAt() != null) {
+                return value;
+            }
+            if (value == null) {
+                timeValueRepository.markStale(Collections.singleton(workAnalysisId));
+                value = timeValueRepository.findForUpdate(workAnalysisId)
+                        .orElseThrow(() -> new ResponseStatusException(
+                                HttpStatus.NOT_FOUND, "Work analysis not found with id: " + workAnalysisId));
+            }
+            WorkAnalysis analysis = workAnalysisRepository.findById(workAnalysisId)
+                    .orElseThrow(() -> new ResponseStatusException(
+                            HttpStatus.NOT_FOUND, "Work analysis not found with id: " + workAnalysisId));
+
+            String[] source = new String[1];
+            Integer dailyCommuteMinutes = dailyCommuteMinutes(workAnalysisId, source);
+            calculator.calculate(analysis.getMonthlySalary(), analysis.getAnnualSalary(),
+                    analysis.getWorkDaysPerMonth(), dailyCommuteMinutes, value);
+            value.setCommuteSource(source[0]);
+            value.setComputedGeneration(value.getInputGeneration());
+            value.setStale(false);
+            value.setComputedAt(LocalDateTime.now());
+            return timeValueRepository.save(value);
+        });
+    }
+
+    /**
+     * 每日往返通勤时长：早晚各自优先使用实际打卡均值，没有打卡时使用最近一次路线规划时长
+     */
+    private Integer dailyCommuteMinutes(String workAnalysisId, String[] source) {
+        Map<String, long[]> actual = new HashMap<>();
+        for (CommuteStatistics stats : statisticsRepository.findByIdWorkAnalysisId(workAnalysisId)) {
+            long[] sum = actual.computeIfAbsent(stats.getId().getCommuteType(), k -> new long[2]);
+            sum[0] += stats.getDurationSum();
+            sum[1] += stats.getRecordCount();
+        }
+        Map<String, Integer> planned = new HashMap<>();
+        for (Object[] row : commuteRecordRepository.findLatestPlannedDurations(workAnalysisId)) {
+            planned.put((String) row[0], ((Number) row[1]).intValue());
+        }
+
+        int total = 0;
+        int actualLegs = 0;
+        int plannedLegs = 0;
+        for (String type : new String[]{"morning", "evening"}) {
+            long[] sum = actual.get(type);
+            if (sum != null && sum[1] > 0) {
+                total += Math.round((double) sum[0] / sum[1]);
+                actualLegs++;
+            } else if (planned.containsKey(type)) {
+                total += planned.get(type);
+                plannedLegs++;
+            }
+        }
+
+        if (actualLegs == 0 && plannedLegs == 0) {
+            source[0] = null;
+            return null;
+        }
+        source[0] = plannedLegs == 0 ? "actual" : actualLegs == 0 ? "planned" : "mixed";
+        return total;
+    }
+
+    private TimeValueResponse convertToResponse(WorkTimeValue value) {
+        TimeValueResponse response = new TimeValueResponse();
+        response.setWorkAnalysisId(value.getWorkAnalysisId());
+        response.setMonthlyIncome(value.getMonthlyIncome());
+        response.setDailyCommuteMinutes(value.getDailyCommuteMinutes());
+        response.setCommuteSource(value.getCommuteSource());
+        response.setMonthlyWorkHours(value.getMonthlyWorkHours());
+        response.setMonthlyCommuteHours(value.getMonthlyCommuteHours());
+        response.setNominalHourlyWage(value.getNominalHourlyWage());
+        response.setEffectiveHourlyWage(value.getEffectiveHourlyWage());
+        response.setCommuteCostShare(value.getCommuteCostShare());
+        response.setMonthlyCommuteCost(value.getMonthlyCommuteCost());
+        response.setYearlyCommuteHours(value.getYearlyCommuteHours());
+        response.setGeneration(value.getComputedGeneration());
+        response.setComputedAt(value.getComputedAt());
+        return response;
+    }
+}
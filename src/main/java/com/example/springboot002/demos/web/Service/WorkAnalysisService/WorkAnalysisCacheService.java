@@ -0,0 +1,295 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.WorkAnalysisResponse;
+import com.example.springboot002.demos.web.Service.ResourceVersionService;
+import com.example.springboot002.demos.web.Util.LruCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 工作分析读缓存
+ * 一级：进程内有界 LRU（短 TTL）；二级：Redis。按 ID 和用户ID 两种 key 分别缓存。
+ * 更新后在事务提交时删除 Redis 条目，并通过 Redis pub/sub 广播，所有节点清除本地条目。
+ * 每个 key 另有一个失效代数，失效时自增；回填 Redis 时用 Lua 比对加载前读到的代数，
+ * 加载期间其他节点已失效则放弃回填，避免旧值覆盖。
+ * 写入缓存时同时在资源版本表中记录 ETag，供条件 GET 直接比对。
+ */
+@Slf4j
+@Service
+public class WorkAnalysisCacheService implements MessageListener {
+
+    // Redis key 前缀
+    private static final String ID_PREFIX = "work-analysis:id:";
+    private static final String USER_PREFIX = "work-analysis:user:";
+    private static final String INVALIDATE_CHANNEL = "work-analysis:invalidate";
+    private static final String GENERATION_SUFFIX = ":gen";
+
+    // KEYS[1]=缓存 key, KEYS[2]=代数 key；ARGV[1]=加载前的代数, ARGV[2]=值, ARGV[3]=TTL 毫秒
+    private static final RedisScript<Long> PUT_IF_GENERATION_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[2]) or '0') ~= ARGV[1] then return 0 end "
+                    + "redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) return 1", Long.class);
+    // KEYS[1]=缓存 key, KEYS[2]=代数 key；ARGV[1]=代数 TTL 毫秒
+    private static final RedisScript<Long> INVALIDATE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[1]) local gen = redis.call('INCR', KEYS[2]) "
+                    + "redis.call('PEXPIRE', KEYS[2], ARGV[1]) return gen", Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final ResourceVersionService resourceVersionService;
+    private final LruCache<String, CachedAnalysis> localCache;
+    private final long localTtlMillis;
+    private final long redisTtlMillis;
+
+    // 每次收到失效消息加一；加载期间发生失效则不回填缓存，避免写回旧值
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong redisHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidationsPublished = new AtomicLong();
+    private final AtomicLong invalidationsReceived = new AtomicLong();
+    private final AtomicLong staleWritesSkipped = new AtomicLong();
+    private final AtomicLong propagationMillisTotal = new AtomicLong();
+    private final AtomicLong servedAgeMillisTotal = new AtomicLong();
+    private final AtomicLong servedAgeMillisMax = new AtomicLong();
+
+    public WorkAnalysisCacheService(StringRedisTemplate stringRedisTemplate,
+                                    RedisMessageListenerContainer listenerContainer,
+                                    ObjectMapper objectMapper,
+                                    ResourceVersionService resourceVersionService,
+                                    @Value("${work-analysis.cache.local-max-size:5000}") int localMaxSize,
+                                    @Value("${work-analysis.cache.local-ttl-seconds:60}") long localTtlSeconds,
+                                    @Value("${work-analysis.cache.redis-ttl-minutes:30}") long redisTtlMinutes) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.objectMapper = objectMapper;
+        this.resourceVersionService = resourceVersionService;
+        this.localCache = new LruCache<>(localMaxSize);
+        this.localTtlMillis = TimeUnit.SECONDS.toMillis(localTtlSeconds);
+        this.redisTtlMillis = TimeUnit.MINUTES.toMillis(redisTtlMinutes);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    public WorkAnalysisResponse getById(String id, Supplier<WorkAnalysisResponse> loader) {
+        return get(ID_PREFIX + id, loader);
+    }
+
+    public WorkAnalysisResponse getByUserId(String userId, Supplier<WorkAnalysisResponse> loader) {
+        return get(USER_PREFIX + userId, loader);
+    }
+
+    /**
+     * 资源版本表中记录的当前 ETag，未记录时返回 null
+     */
+    public String currentETagById(String id) {
+        return resourceVersionService.get(ID_PREFIX + id);
+    }
+
+    public String currentETagByUserId(String userId) {
+        return resourceVersionService.get(USER_PREFIX + userId);
+    }
+
+    /**
+     * 失效指定工作分析的缓存；在事务中调用时推迟到提交之后执行
+     */
+    public void invalidate(String id, String userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doInvalidate(id, userId);
+                }
+            });
+        } else {
+            doInvalidate(id, userId);
+        }
+    }
+
+    /**
+     * 收到其他节点（包括本节点）的失效广播
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", -1);
+        if (parts.length != 3) {
+            return;
+        }
+        evictLocal(parts[1], parts[2]);
+        invalidationsReceived.incrementAndGet();
+        propagationMillisTotal.addAndGet(Math.max(0, System.currentTimeMillis() - Long.parseLong(parts[0])));
+    }
+
+    /**
+     * 缓存命中与数据新鲜度统计
+     */
+    public Map<String, Object> stats() {
+        long local = localHits.get();
+        long redis = redisHits.get();
+        long miss = misses.get();
+        long total = local + redis + miss;
+        long received = invalidationsReceived.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localHits", local);
+        stats.put("redisHits", redis);
+        stats.put("misses", miss);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) (local + redis) / total);
+        stats.put("localSize", localCache.size());
+        stats.put("localMaxSize", localCache.getMaxSize());
+        // 命中时返回数据距离写入缓存的时间
+        stats.put("servedAgeAvgMs", local + redis == 0 ? 0 : servedAgeMillisTotal.get() / (local + redis));
+        stats.put("servedAgeMaxMs", servedAgeMillisMax.get());
+        stats.put("invalidationsPublished", invalidationsPublished.get());
+        stats.put("invalidationsReceived", received);
+        // 加载期间被其他节点失效而放弃的回填次数
+        stats.put("staleWritesSkipped", staleWritesSkipped.get());
+        // 失效广播从发出到本节点收到的平均耗时
+        stats.put("invalidationPropagationAvgMs", received == 0 ? 0 : propagationMillisTotal.get() / received);
+        return stats;
+    }
+
+    private WorkAnalysisResponse get(String key, Supplier<WorkAnalysisResponse> loader) {
+        CachedAnalysis cached = localCache.get(key);
+        if (cached != null) {
+            localHits.incrementAndGet();
+            recordServedAge(cached);
+            return cached.getValue();
+        }
+
+        long epoch = invalidationEpoch.get();
+        String generation = null;
+        try {
+            List<String> values = stringRedisTemplate.opsForValue().multiGet(Arrays.asList(key, key + GENERATION_SUFFIX));
+            String json = values != null ? values.get(0) : null;
+            generation = values != null && values.get(1) != null ? values.get(1) : "0";
+            if (json != null) {
+                cached = objectMapper.readValue(json, CachedAnalysis.class);
+                if (invalidationEpoch.get() == epoch) {
+                    localCache.put(key, cached, localTtlMillis);
+                }
+                redisHits.incrementAndGet();
+                recordServedAge(cached);
+                return cached.getValue();
+            }
+        } catch (Exception e) {
+            // Redis 不可用时降级为仅本地缓存
+            log.warn("读取工作分析缓存失败: {}", e.getMessage());
+        }
+
+        misses.incrementAndGet();
+        String etagGeneration = resourceVersionService.generation(key);
+        WorkAnalysisResponse value = loader.get();
+        if (invalidationEpoch.get() == epoch) {
+            put(key, new CachedAnalysis(value, System.currentTimeMillis()), generation, etagGeneration);
+        }
+        return value;
+    }
+
+    /**
+     * 回填缓存；generation、etagGeneration 为加载前读到的缓存和资源版本代数，Redis 不可用时为 null，只写本地
+     */
+    private void put(String key, CachedAnalysis cached, String generation, String etagGeneration) {
+        localCache.put(key, cached, localTtlMillis);
+        if (generation != null) {
+            try {
+                Long written = stringRedisTemplate.execute(PUT_IF_GENERATION_SCRIPT,
+                        Arrays.asList(key, key + GENERATION_SUFFIX),
+                        generation, objectMapper.writeValueAsString(cached), String.valueOf(redisTtlMillis));
+                if (written == null || written == 0) {
+                    staleWritesSkipped.incrementAndGet();
+                    localCache.remove(key);
+                    return;
+                }
+            } catch (Exception e) {
+                log.warn("写入工作分析缓存失败: {}", e.getMessage());
+            }
+        }
+        WorkAnalysisResponse value = cached.getValue();
+        resourceVersionService.put(key, ResourceVersionService.etag(value.getVersion(), value.getUpdatedAt()),
+                etagGeneration);
+    }
+
+    private void doInvalidate(String id, String userId) {
+        evictLocal(id, userId);
+        resourceVersionService.evict(ID_PREFIX + id);
+        if (userId != null) {
+            resourceVersionService.evict(USER_PREFIX + userId);
+        }
+        try {
+            invalidateRedis(ID_PREFIX + id);
+            if (userId != null) {
+                invalidateRedis(USER_PREFIX + userId);
+            }
+            stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL,
+                    System.currentTimeMillis() + "|" + id + "|" + (userId != null ? userId : ""));
+            invalidationsPublished.incrementAndGet();
+        } catch (Exception e) {
+            // 广播失败时其他节点依赖本地 TTL 过期
+            log.warn("工作分析缓存失效广播失败: id={}, {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * 删除 Redis 条目并自增代数；代数保留时间比缓存 TTL 长，覆盖最慢的加载
+     */
+    private void invalidateRedis(String key) {
+        stringRedisTemplate.execute(INVALIDATE_SCRIPT, Arrays.asList(key, key + GENERATION_SUFFIX),
+                String.valueOf(redisTtlMillis * 2));
+    }
+
+    private void evictLocal(String id, String userId) {
+        invalidationEpoch.incrementAndGet();
+        if (!id.isEmpty()) {
+            localCache.remove(ID_PREFIX + id);
+        }
+        if (userId != null && !userId.isEmpty()) {
+            localCache.remove(USER_PREFIX + userId);
+        }
+    }
+
+    private void recordServedAge(CachedAnalysis cached) {
+        long age = Math.max(0, System.currentTimeMillis() - cached.getCachedAt());
+        servedAgeMillisTotal.addAndGet(age);
+        servedAgeMillisMax.accumulateAndGet(age, Math::max);
+    }
+
+    /**
+     * 缓存条目：响应及写入缓存的时间
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CachedAnalysis {
+        private WorkAnalysisResponse value;
+        private long cachedAt;
+    }
+}
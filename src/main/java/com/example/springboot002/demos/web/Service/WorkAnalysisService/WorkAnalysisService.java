@@ -4,25 +4,53 @@ import com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest.Actua
 import com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest.CommuteCalculationRequest;
 import com.example.springboot002.demos.web.DTO.Request.WorkAnalysisRequest.WorkAnalysisRequest;
 import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteCalculationResponse;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteRecordPageResponse;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteRecordResponse;
 import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.CommuteStatisticsResponse;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.PeakSlotResponse;
+import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.TimeValueResponse;
 import com.example.springboot002.demos.web.DTO.Response.WorkAnalysisResponse.WorkAnalysisResponse;
 import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteMode;
 import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteRecord;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.CommuteStatus;
+import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.PeakSlotDuration;
 import com.example.springboot002.demos.web.Entity.WorkAnalysisEntity.WorkAnalysis;
+import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteRecomputeJobRepository;
 import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.CommuteRecordRepository;
 import com.example.springboot002.demos.web.Repository.WorkAnalysisRespository.WorkAnalysisRepository;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -31,12 +59,30 @@ public class WorkAnalysisService {
 
     private final WorkAnalysisRepository workAnalysisRepository;
     private final CommuteRecordRepository commuteRecordRepository;
+    private final CommuteRecomputeJobRepository commuteRecomputeJobRepository;
     private final MapApiService mapApiService;
+    private final CommuteStatisticsService commuteStatisticsService;
+    private final WorkAnalysisCacheService workAnalysisCacheService;
+    private final TransactionTemplate transactionTemplate;
+    private final PeakDurationService peakDurationService;
+    private final CommuteCalibrationService commuteCalibrationService;
+    private final TimeValueService timeValueService;
+    private final CommuteHeatmapService commuteHeatmapService;
+    private final AddressPointIndex addressPointIndex;
+
+    private static final int MAX_RECORD_PAGE_SIZE = 100;
+
+    // peak_correction_factor 列为 NUMERIC(3,2)
+    private static final BigDecimal MAX_PEAK_CORRECTION_FACTOR = new BigDecimal("9.99");
+
+    // 创建/更新流程中地图调用的总超时时间
+    @Value("${map.pipeline.timeout-ms:15000}")
+    private long pipelineTimeoutMs;
 
     /**
      * 创建工作分析记录
+     * 先在事务外完成地址解析和路线计算，再在短事务内写入，地图调用期间不占用数据库连接
      */
-    @Transactional
     public WorkAnalysisResponse createWorkAnalysis(WorkAnalysisRequest request) {
         log.info("创建工作分析记录: userId={}", request.getUserId());
 
@@ -48,30 +94,49 @@ public class WorkAnalysisService {
         analysis.setHomeAddress(request.getHomeAddress());
         analysis.setCompanyAddress(request.getCompanyAddress());
         analysis.setCommuteMode(parseCommuteMode(request.getCommuteMode()));
-
-        // 地址转坐标
-        if (request.getHomeLongitude() == null || request.getHomeLatitude() == null) {
-            double[] homeCoords = mapApiService.geocode(request.getHomeAddress());
-            analysis.setHomeLongitude(homeCoords[0]);
-            analysis.setHomeLatitude(homeCoords[1]);
-        } else {
-            analysis.setHomeLongitude(request.getHomeLongitude());
-            analysis.setHomeLatitude(request.getHomeLatitude());
-        }
-
-        if (request.getCompanyLongitude() == null || request.getCompanyLatitude() == null) {
-            double[] companyCoords = mapApiService.geocode(request.getCompanyAddress());
-            analysis.setCompanyLongitude(companyCoords[0]);
-            analysis.setCompanyLatitude(companyCoords[1]);
-        } else {
-            analysis.setCompanyLongitude(request.getCompanyLongitude());
-            analysis.setCompanyLatitude(request.getCompanyLatitude());
-        }
-
-        WorkAnalysis saved = workAnalysisRepository.save(analysis);
-
-        // 计算初始通勤信息
-        calculateAndSaveCommuteInfo(saved);
+        analysis.setCommuteStatus(CommuteStatus.READY);
+
+        long deadline = pipelineDeadline();
+
+        // 地址转坐标（家庭、公司地址并行解析）
+        CompletableFuture<double[]> homeFuture =
+                request.getHomeLongitude() == null || request.getHomeLatitude() == null
+                        ? mapApiService.geocodeAsync(request.getHomeAddress())
+                        : CompletableFuture.completedFuture(
+                        new double[]{request.getHomeLongitude(), request.getHomeLatitude()});
+        CompletableFuture<double[]> companyFuture =
+                request.getCompanyLongitude() == null || request.getCompanyLatitude() == null
+                        ? mapApiService.geocodeAsync(request.getCompanyAddress())
+                        : CompletableFuture.completedFuture(
+                        new double[]{request.getCompanyLongitude(), request.getCompanyLatitude()});
+
+        Map<String, CompletableFuture<?>> legs = new LinkedHashMap<>();
+        legs.put("家庭地址解析", homeFuture);
+        legs.put("公司地址解析", companyFuture);
+        awaitLegs(legs, deadline);
+
+        double[] homeCoords = homeFuture.join();
+        double[] companyCoords = companyFuture.join();
+        analysis.setHomeLongitude(homeCoords[0]);
+        analysis.setHomeLatitude(homeCoords[1]);
+        analysis.setCompanyLongitude(companyCoords[0]);
+        analysis.setCompanyLatitude(companyCoords[1]);
+
+        // 计算初始通勤信息（记录的 workAnalysisId 在写入时回填）
+        List<CommuteRecord> records = buildCommuteRecords(analysis, deadline, MapCallPriority.INTERACTIVE);
+
+        WorkAnalysis saved = transactionTemplate.execute(status -> {
+            commuteHeatmapService.syncResident(analysis);
+            WorkAnalysis persisted = workAnalysisRepository.save(analysis);
+            for (CommuteRecord record : records) {
+                record.setWorkAnalysisId(persisted.getId());
+            }
+            commuteRecordRepository.saveAll(records);
+            timeValueService.markStale(persisted.getId());
+            workAnalysisCacheService.invalidate(persisted.getId(), persisted.getUserId());
+            return persisted;
+        });
+        addressPointIndex.add(saved);
 
         return convertToResponse(saved);
     }
@@ -85,13 +150,26 @@ public class WorkAnalysisService {
             );
         }
 
-        WorkAnalysis analysis = workAnalysisRepository.findById(id)
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Work analysis not found with id: " + id
-                ));
+        return workAnalysisCacheService.getById(id, () -> {
+            WorkAnalysis analysis = workAnalysisRepository.findById(id)
+                    .orElseThrow(() -> new ResponseStatusException(
+                            HttpStatus.NOT_FOUND,
+                            "Work analysis not found with id: " + id
+                    ));
 
-        return convertToResponse(analysis);
+            return convertToResponse(analysis);
+        });
+    }
+
+    /**
+     * 工作分析当前 ETag（只查资源版本表，不查数据库），未记录时返回 null
+     */
+    public String getWorkAnalysisETag(String id) {
+        return workAnalysisCacheService.currentETagById(id);
+    }
+
+    public String getWorkAnalysisETagByUserId(String userId) {
+        return workAnalysisCacheService.currentETagByUserId(userId);
     }
 
     /**
@@ -104,13 +182,15 @@ public class WorkAnalysisService {
             );
         }
 
-        WorkAnalysis analysis = workAnalysisRepository.findByUserId(userId)
-                .orElseThrow(() -> new ResponseStatusException(
-                        HttpStatus.NOT_FOUND,
-                        "Work analysis not found with id: " + userId
-                ));
+        return workAnalysisCacheService.getByUserId(userId, () -> {
+            WorkAnalysis analysis = workAnalysisRepository.findByUserId(userId)
+                    .orElseThrow(() -> new ResponseStatusException(
+                            HttpStatus.NOT_FOUND,
+                            "Work analysis not found with id: " + userId
+                    ));
 
-        return convertToResponse(analysis);
+            return convertToResponse(analysis);
+        });
     }
 
     /**
@@ -131,34 +211,38 @@ public class WorkAnalysisService {
             analysis.setWorkDaysPerMonth(request.getWorkDaysPerMonth());
         }
 
-        // 如果地址变更,重新计算坐标和通勤信息
-        boolean addressChanged = false;
+        // 如果地址或通勤方式变更,坐标和通勤信息交给后台任务重新计算，接口立即返回 PENDING
+        boolean homeChanged = false;
+        boolean companyChanged = false;
+        boolean modeChanged = false;
+
         if (request.getHomeAddress() != null && !request.getHomeAddress().equals(analysis.getHomeAddress())) {
             analysis.setHomeAddress(request.getHomeAddress());
-            double[] coords = mapApiService.geocode(request.getHomeAddress());
-            analysis.setHomeLongitude(coords[0]);
-            analysis.setHomeLatitude(coords[1]);
-            addressChanged = true;
+            homeChanged = true;
         }
-
         if (request.getCompanyAddress() != null && !request.getCompanyAddress().equals(analysis.getCompanyAddress())) {
             analysis.setCompanyAddress(request.getCompanyAddress());
-            double[] coords = mapApiService.geocode(request.getCompanyAddress());
-            analysis.setCompanyLongitude(coords[0]);
-            analysis.setCompanyLatitude(coords[1]);
-            addressChanged = true;
+            companyChanged = true;
         }
-
         if (request.getCommuteMode() != null) {
             analysis.setCommuteMode(parseCommuteMode(request.getCommuteMode()));
-            addressChanged = true;
+            modeChanged = true;
         }
 
-        WorkAnalysis updated = workAnalysisRepository.save(analysis);
+        if (homeChanged || companyChanged || modeChanged) {
+            analysis.setCommuteStatus(CommuteStatus.PENDING);
+            commuteRecomputeJobRepository.enqueue(analysis.getId(), homeChanged, companyChanged);
+        }
 
-        if (addressChanged) {
-            calculateAndSaveCommuteInfo(updated);
+        WorkAnalysis updated;
+        try {
+            updated = workAnalysisRepository.saveAndFlush(analysis);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // 读取后被并发请求或后台重算修改，版本号不一致
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "工作分析记录已被修改，请刷新后重试");
         }
+        timeValueService.markStale(updated.getId());
+        workAnalysisCacheService.invalidate(updated.getId(), updated.getUserId());
 
         return convertToResponse(updated);
     }
@@ -176,10 +260,11 @@ public class WorkAnalysisService {
                 : analysis.getCompanyLongitude() + "," + analysis.getCompanyLatitude();
         String mode = request.getMode() != null ? request.getMode()
                 : analysis.getCommuteMode().name();
+        LocalTime departureTime = request.getDepartureTime();
         boolean isPeakHour = request.getIsPeakHour() != null ? request.getIsPeakHour()
-                : isCurrentlyPeakHour();
+                : departureTime != null ? isPeakHour(departureTime) : isCurrentlyPeakHour();
 
-        return mapApiService.calculateCommute(origin, destination, mode, isPeakHour);
+        return mapApiService.calculateCommute(origin, destination, mode, isPeakHour, departureTime);
     }
 
     /**
@@ -187,47 +272,225 @@ public class WorkAnalysisService {
      */
     @Transactional
     public void recordActualCommute(ActualCommuteRequest request) {
-        CommuteRecord record = new CommuteRecord();
-        record.setWorkAnalysisId(request.getWorkAnalysisId());
-        record.setCommuteType(request.getCommuteType());
-        record.setActualDurationMinutes(request.getActualDurationMinutes());
-        record.setCommuteModes(request.getCommuteModes());
-        record.setIsPeakHour(isCurrentlyPeakHour());
-        record.setRecordDate(LocalDateTime.now());
-
-        commuteRecordRepository.save(record);
+        recordActualCommutes(Collections.singletonList(request));
         log.info("记录实际通勤时间: {}分钟, 类型: {}",
                 request.getActualDurationMinutes(), request.getCommuteType());
     }
 
+    /**
+     * 批量记录实际通勤时间（JDBC 批量插入，统计按批次合并后更新）
+     *
+     * @return 写入的记录数
+     */
+    @Transactional
+    public int recordActualCommutes(List<ActualCommuteRequest> requests) {
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+
+        List<CommuteRecord> records = new ArrayList<>(requests.size());
+        for (ActualCommuteRequest request : requests) {
+            LocalDateTime recordDate = request.getRecordDate() != null ? request.getRecordDate() : now;
+            CommuteRecord record = new CommuteRecord();
+            record.setWorkAnalysisId(request.getWorkAnalysisId());
+            record.setCommuteType(request.getCommuteType());
+            record.setActualDurationMinutes(request.getActualDurationMinutes());
+            record.setCommuteModes(request.getCommuteModes());
+            record.setIsPeakHour(isPeakHour(recordDate.toLocalTime()));
+            record.setRecordDate(recordDate);
+            records.add(record);
+        }
+
+        commuteRecordRepository.saveAll(records);
+        commuteRecordRepository.flush();
+        commuteStatisticsService.accumulate(records);
+        commuteHeatmapService.accumulate(records);
+        timeValueService.markStale(records.stream()
+                .map(CommuteRecord::getWorkAnalysisId)
+                .collect(Collectors.toSet()));
+        commuteCalibrationService.observeAfterCommit(records);
+
+        if (records.size() > 1) {
+            long elapsedMicros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            log.info("批量写入通勤记录: {}条, 耗时{}ms, {}条/秒", records.size(), elapsedMicros / 1000,
+                    records.size() * 1_000_000L / elapsedMicros);
+        }
+        return records.size();
+    }
+
     /**
      * 获取通勤统计信息
      */
     public CommuteStatisticsResponse getCommuteStatistics(String workAnalysisId) {
-        Double avgMorning = commuteRecordRepository.getAverageDurationByType(workAnalysisId, "morning");
-        Double avgEvening = commuteRecordRepository.getAverageDurationByType(workAnalysisId, "evening");
-
-        List<CommuteRecord> recentRecords = commuteRecordRepository
-                .findByWorkAnalysisIdOrderByRecordDateDesc(workAnalysisId);
+        return commuteStatisticsService.getStatistics(workAnalysisId);
+    }
 
-        CommuteStatisticsResponse response = new CommuteStatisticsResponse();
-        response.setAverageMorningDuration(avgMorning != null ? avgMorning.intValue() : null);
-        response.setAverageEveningDuration(avgEvening != null ? avgEvening.intValue() : null);
-        response.setTotalRecords(recentRecords.size());
+    /**
+     * 分页获取通勤记录（按记录时间倒序，游标分页）
+     *
+     * @param cursor 上一页返回的 nextCursor，第一页传 null
+     */
+    public CommuteRecordPageResponse getCommuteRecords(String workAnalysisId, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_RECORD_PAGE_SIZE));
+        // 多取一条用于判断是否还有下一页
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+        List<CommuteRecordResponse> records;
+        if (cursor == null || cursor.isEmpty()) {
+            records = commuteRecordRepository.findRecordPage(workAnalysisId, limit);
+        } else {
+            String[] position = decodeCursor(cursor);
+            records = new ArrayList<>();
+            for (Object[] row : commuteRecordRepository.findRecordPageAfter(
+                    workAnalysisId, LocalDateTime.parse(position[0]), position[1], limit)) {
+                records.add(toRecordResponse(row));
+            }
+        }
 
+        CommuteRecordPageResponse response = new CommuteRecordPageResponse();
+        boolean hasMore = records.size() > pageSize;
+        if (hasMore) {
+            records = new ArrayList<>(records.subList(0, pageSize));
+            CommuteRecordResponse last = records.get(pageSize - 1);
+            response.setNextCursor(encodeCursor(last.getRecordDate(), last.getId()));
+        }
+        response.setRecords(records);
+        response.setHasMore(hasMore);
         return response;
     }
 
+    /**
+     * 获取时间价值（计入通勤后的实际时薪等）
+     */
+    public TimeValueResponse getTimeValue(String workAnalysisId) {
+        return timeValueService.getTimeValue(workAnalysisId);
+    }
+
+    /**
+     * 获取通勤路线各高峰时段的实测时长（早高峰 家→公司，晚高峰 公司→家）
+     */
+    public List<PeakSlotResponse> getPeakSlots(String workAnalysisId) {
+        WorkAnalysis analysis = workAnalysisRepository.findById(workAnalysisId)
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.NOT_FOUND, "Work analysis not found with id: " + workAnalysisId));
+
+        List<PeakSlotResponse> slots = new ArrayList<>();
+        if (analysis.getHomeLongitude() == null || analysis.getCompanyLongitude() == null) {
+            return slots;
+        }
+        String home = analysis.getHomeLongitude() + "," + analysis.getHomeLatitude();
+        String company = analysis.getCompanyLongitude() + "," + analysis.getCompanyLatitude();
+        String mode = analysis.getCommuteMode().name();
+        addPeakSlots(slots, "morning", mapApiService.routeKey(home, company, mode));
+        addPeakSlots(slots, "evening", mapApiService.routeKey(company, home, mode));
+        return slots;
+    }
+
     // ========== 私有辅助方法 ==========
 
-    private void calculateAndSaveCommuteInfo(WorkAnalysis analysis) {
+    private void addPeakSlots(List<PeakSlotResponse> slots, String commuteType, String routeKey) {
+        for (PeakSlotDuration slot : peakDurationService.getSlots(routeKey)) {
+            PeakSlotResponse response = new PeakSlotResponse();
+            response.setCommuteType(commuteType);
+            response.setSlotStart(peakDurationService.slotStart(slot.getId().getSlot()).toString());
+            response.setDurationMinutes(slot.getDurationMinutes());
+            response.setDistanceMeters(slot.getDistanceMeters());
+            response.setSampleCount(slot.getSampleCount());
+            response.setSampledAt(slot.getSampledAt());
+            slots.add(response);
+        }
+    }
+
+    /**
+     * 原生查询结果行转通勤记录列表项，列顺序见 CommuteRecordRepository.findRecordPageAfter
+     */
+    private CommuteRecordResponse toRecordResponse(Object[] row) {
+        return new CommuteRecordResponse((String) row[0], (String) row[1], toInteger(row[2]), toInteger(row[3]),
+                toInteger(row[4]), (String) row[5], (Boolean) row[6], (Boolean) row[7],
+                ((Timestamp) row[8]).toLocalDateTime());
+    }
+
+    private Integer toInteger(Object value) {
+        return value != null ? ((Number) value).intValue() : null;
+    }
+
+    private String encodeCursor(LocalDateTime recordDate, String id) {
+        String position = recordDate + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = position.split("\\|", 2);
+            if (parts.length != 2 || parts[1].isEmpty()) {
+                throw new IllegalArgumentException(position);
+            }
+            LocalDateTime.parse(parts[0]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "无效的分页游标");
+        }
+    }
+
+    /**
+     * 后台重算：重新解析标记的地址（直接写入传入的 analysis 坐标）并计算早晚高峰通勤记录。
+     * 只调用地图服务，不写数据库，也不占用事务。
+     */
+    public List<CommuteRecord> recomputeCommute(WorkAnalysis analysis, boolean geocodeHome, boolean geocodeCompany) {
+        long deadline = pipelineDeadline();
+
+        Map<String, CompletableFuture<?>> legs = new LinkedHashMap<>();
+        CompletableFuture<double[]> homeFuture = null;
+        CompletableFuture<double[]> companyFuture = null;
+        // 修改前的坐标作为新地址的大致位置，附近有文本匹配的已知地址时不调用地图服务
+        if (geocodeHome || analysis.getHomeLongitude() == null) {
+            homeFuture = mapApiService.geocodeAsync(analysis.getHomeAddress(), MapCallPriority.BACKGROUND,
+                    coordsOf(analysis.getHomeLongitude(), analysis.getHomeLatitude()));
+            legs.put("家庭地址解析", homeFuture);
+        }
+        if (geocodeCompany || analysis.getCompanyLongitude() == null) {
+            companyFuture = mapApiService.geocodeAsync(analysis.getCompanyAddress(), MapCallPriority.BACKGROUND,
+                    coordsOf(analysis.getCompanyLongitude(), analysis.getCompanyLatitude()));
+            legs.put("公司地址解析", companyFuture);
+        }
+        awaitLegs(legs, deadline);
+
+        if (homeFuture != null) {
+            double[] coords = homeFuture.join();
+            analysis.setHomeLongitude(coords[0]);
+            analysis.setHomeLatitude(coords[1]);
+        }
+        if (companyFuture != null) {
+            double[] coords = companyFuture.join();
+            analysis.setCompanyLongitude(coords[0]);
+            analysis.setCompanyLatitude(coords[1]);
+        }
+
+        return buildCommuteRecords(analysis, deadline, MapCallPriority.BACKGROUND);
+    }
+
+    private double[] coordsOf(Double longitude, Double latitude) {
+        return longitude != null && latitude != null ? new double[]{longitude, latitude} : null;
+    }
+
+    private List<CommuteRecord> buildCommuteRecords(WorkAnalysis analysis, long deadline, MapCallPriority priority) {
         String origin = analysis.getHomeLongitude() + "," + analysis.getHomeLatitude();
         String destination = analysis.getCompanyLongitude() + "," + analysis.getCompanyLatitude();
+        String mode = analysis.getCommuteMode().name();
+
+        // 早晚高峰路线并行计算
+        CompletableFuture<CommuteCalculationResponse> morningFuture =
+                mapApiService.calculateCommuteAsync(origin, destination, mode, true, priority);
+        CompletableFuture<CommuteCalculationResponse> eveningFuture =
+                mapApiService.calculateCommuteAsync(destination, origin, mode, true, priority);
 
-        // 计算早高峰通勤
-        CommuteCalculationResponse morning = mapApiService.calculateCommute(
-                origin, destination, analysis.getCommuteMode().name(), true);
+        Map<String, CompletableFuture<?>> legs = new LinkedHashMap<>();
+        legs.put("早高峰路线", morningFuture);
+        legs.put("晚高峰路线", eveningFuture);
+        awaitLegs(legs, deadline);
 
+        CommuteCalculationResponse morning = morningFuture.join();
         CommuteRecord morningRecord = new CommuteRecord();
         morningRecord.setWorkAnalysisId(analysis.getId());
         morningRecord.setCommuteType("morning");
@@ -235,13 +498,10 @@ public class WorkAnalysisService {
         morningRecord.setApiDurationMinutes(morning.getDurationMinutes());
         morningRecord.setDurationMinutes(morning.getCorrectedDuration());
         morningRecord.setIsPeakHour(true);
-        morningRecord.setPeakCorrectionFactor(new BigDecimal("1.3"));
-        commuteRecordRepository.save(morningRecord);
-
-        // 计算晚高峰通勤
-        CommuteCalculationResponse evening = mapApiService.calculateCommute(
-                destination, origin, analysis.getCommuteMode().name(), true);
+        morningRecord.setPeakCorrectionFactor(peakCorrectionFactor(morning));
+        morningRecord.setIsEstimated(morning.getEstimated());
 
+        CommuteCalculationResponse evening = eveningFuture.join();
         CommuteRecord eveningRecord = new CommuteRecord();
         eveningRecord.setWorkAnalysisId(analysis.getId());
         eveningRecord.setCommuteType("evening");
@@ -249,12 +509,79 @@ public class WorkAnalysisService {
         eveningRecord.setApiDurationMinutes(evening.getDurationMinutes());
         eveningRecord.setDurationMinutes(evening.getCorrectedDuration());
         eveningRecord.setIsPeakHour(true);
-        eveningRecord.setPeakCorrectionFactor(new BigDecimal("1.25"));
-        commuteRecordRepository.save(eveningRecord);
+        eveningRecord.setPeakCorrectionFactor(peakCorrectionFactor(evening));
+        eveningRecord.setIsEstimated(evening.getEstimated());
+
+        return Arrays.asList(morningRecord, eveningRecord);
+    }
+
+    /**
+     * 高峰时长相对原始时长的倍数（实测或固定系数）
+     */
+    private BigDecimal peakCorrectionFactor(CommuteCalculationResponse result) {
+        if (result.getDurationMinutes() == null || result.getDurationMinutes() <= 0) {
+            return BigDecimal.ONE;
+        }
+        BigDecimal factor = BigDecimal.valueOf(result.getCorrectedDuration())
+                .divide(BigDecimal.valueOf(result.getDurationMinutes()), 2, RoundingMode.HALF_UP);
+        return factor.min(MAX_PEAK_CORRECTION_FACTOR);
+    }
+
+    private long pipelineDeadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(pipelineTimeoutMs);
+    }
+
+    /**
+     * 在总超时时间内等待所有并行分段完成，任一分段失败或超时则按分段汇总报错
+     */
+    private void awaitLegs(Map<String, CompletableFuture<?>> legs, long deadline) {
+        if (legs.isEmpty()) {
+            return;
+        }
+
+        try {
+            CompletableFuture.allOf(legs.values().toArray(new CompletableFuture[0]))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // 各分段结果在下面逐一检查
+        }
+
+        List<String> failures = new ArrayList<>();
+        legs.forEach((name, future) -> {
+            if (!future.isDone()) {
+                future.cancel(true);
+                failures.add(name + ": 超时");
+            } else if (future.isCompletedExceptionally()) {
+                failures.add(name + ": " + failureMessage(future));
+            }
+        });
+
+        if (!failures.isEmpty()) {
+            log.warn("通勤计算分段失败: {}", failures);
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY,
+                    "通勤计算失败 - " + String.join("; ", failures));
+        }
+    }
+
+    private String failureMessage(CompletableFuture<?> future) {
+        try {
+            future.join();
+            return "";
+        } catch (CancellationException e) {
+            return "已取消";
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return cause.getMessage();
+        }
     }
 
     private boolean isCurrentlyPeakHour() {
-        LocalTime now = LocalTime.now();
+        return isPeakHour(LocalTime.now());
+    }
+
+    private boolean isPeakHour(LocalTime now) {
         return (now.isAfter(LocalTime.of(7, 0)) && now.isBefore(LocalTime.of(9, 30))) ||
                 (now.isAfter(LocalTime.of(17, 0)) && now.isBefore(LocalTime.of(19, 30)));
     }
@@ -273,6 +600,10 @@ public class WorkAnalysisService {
         response.setHomeAddress(analysis.getHomeAddress());
         response.setCompanyAddress(analysis.getCompanyAddress());
         response.setCommuteMode(analysis.getCommuteMode().name());
+        response.setCommuteStatus(analysis.getCommuteStatus() != null
+                ? analysis.getCommuteStatus().name() : CommuteStatus.READY.name());
+        response.setVersion(analysis.getVersion());
+        response.setUpdatedAt(analysis.getUpdatedAt());
         return response;
     }
 }
\ No newline at end of file
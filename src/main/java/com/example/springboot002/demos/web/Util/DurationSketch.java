@@ -0,0 +1,173 @@
+package com.example.springboot002.demos.web.Util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * 通勤时长分布草图（HDR 直方图风格的对数-线性分桶）
+ * 0~127 分钟按分钟精确计数，更大的值按 64 个子桶/倍程分桶（相对误差约 1.6%），
+ * 计数可直接相加，因此不同工作分析/用户的草图可合并用于公司、区域等维度的汇总。
+ * 序列化为稀疏的 varint 编码字节数组。非线程安全。
+ */
+public class DurationSketch {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int LINEAR_BUCKETS = 128;
+    private static final int SUB_BUCKETS = 64;
+    private static final int MAX_VALUE = 65535;
+    private static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    public void add(int value) {
+        add(value, 1);
+    }
+
+    public void add(int value, long count) {
+        if (count <= 0) {
+            return;
+        }
+        int clamped = Math.max(0, Math.min(MAX_VALUE, value));
+        counts[bucketIndex(clamped)] += count;
+        totalCount += count;
+        min = Math.min(min, clamped);
+        max = Math.max(max, clamped);
+    }
+
+    public void merge(DurationSketch other) {
+        if (other.totalCount == 0) {
+            return;
+        }
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * 分位数估计，q 取值 0~1；无数据时返回 null
+     */
+    public Integer quantile(double q) {
+        if (totalCount == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1, Math.max(0, q)) * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                int value = bucketMidpoint(i);
+                return Math.max(min, Math.min(max, value));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 序列化：版本号、最小/最大值、非空桶数，以及各非空桶的 (下标增量, 计数)，均为 varint
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, FORMAT_VERSION);
+        if (totalCount == 0) {
+            writeVarint(out, 0);
+            return out.toByteArray();
+        }
+
+        int nonEmpty = 0;
+        for (long count : counts) {
+            if (count > 0) {
+                nonEmpty++;
+            }
+        }
+        writeVarint(out, nonEmpty);
+        writeVarint(out, min);
+        writeVarint(out, max);
+
+        int previous = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] > 0) {
+                writeVarint(out, i - previous);
+                writeVarint(out, counts[i]);
+                previous = i;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static DurationSketch fromBytes(byte[] bytes) {
+        DurationSketch sketch = new DurationSketch();
+        if (bytes == null || bytes.length == 0) {
+            return sketch;
+        }
+
+        int[] position = {0};
+        int version = (int) readVarint(bytes, position);
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("不支持的草图版本: " + version);
+        }
+        int nonEmpty = (int) readVarint(bytes, position);
+        if (nonEmpty == 0) {
+            return sketch;
+        }
+        sketch.min = (int) readVarint(bytes, position);
+        sketch.max = (int) readVarint(bytes, position);
+
+        int index = 0;
+        for (int i = 0; i < nonEmpty; i++) {
+            index += (int) readVarint(bytes, position);
+            long count = readVarint(bytes, position);
+            sketch.counts[index] = count;
+            sketch.totalCount += count;
+        }
+        return sketch;
+    }
+
+    private static int bucketIndex(int value) {
+        if (value < LINEAR_BUCKETS) {
+            return value;
+        }
+        int shift = (31 - Integer.numberOfLeadingZeros(value)) - 6;
+        int sub = (value >>> shift) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + sub;
+    }
+
+    private static int bucketMidpoint(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        int sub = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        int lower = (sub + SUB_BUCKETS) << shift;
+        return lower + ((1 << shift) - 1) / 2;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] bytes, int[] position) {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            byte b = bytes[position[0]++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+    }
+}
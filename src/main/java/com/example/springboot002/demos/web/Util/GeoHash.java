@@ -0,0 +1,144 @@
+package com.example.springboot002.demos.web.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Geohash 编码
+ * 经纬度交替二分编码为 base32 字符串，前缀相同的格子在空间上相互包含，截断前缀即得到更粗的格子。
+ */
+public final class GeoHash {
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final int[] DECODE = new int[128];
+
+    public static final int MAX_PRECISION = 12;
+
+    static {
+        Arrays.fill(DECODE, -1);
+        for (int i = 0; i < BASE32.length; i++) {
+            DECODE[BASE32[i]] = i;
+        }
+    }
+
+    private GeoHash() {
+    }
+
+    /**
+     * 编码为指定长度的 geohash
+     */
+    public static String encode(double longitude, double latitude, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("geohash 长度必须在 1-" + MAX_PRECISION + " 之间: " + precision);
+        }
+        double minLng = -180, maxLng = 180;
+        double minLat = -90, maxLat = 90;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLng + maxLng) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLng = mid;
+                } else {
+                    ch <<= 1;
+                    maxLng = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch <<= 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+            if (++bit == 5) {
+                hash.append(BASE32[ch]);
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    /**
+     * 解码为格子范围 [最小经度, 最小纬度, 最大经度, 最大纬度]
+     */
+    public static double[] bounds(String hash) {
+        double minLng = -180, maxLng = 180;
+        double minLat = -90, maxLat = 90;
+        boolean evenBit = true;
+
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            int value = c < DECODE.length ? DECODE[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("无效的 geohash: " + hash);
+            }
+            for (int mask = 16; mask > 0; mask >>= 1) {
+                if (evenBit) {
+                    double mid = (minLng + maxLng) / 2;
+                    if ((value & mask) != 0) {
+                        minLng = mid;
+                    } else {
+                        maxLng = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if ((value & mask) != 0) {
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                evenBit = !evenBit;
+            }
+        }
+        return new double[]{minLng, minLat, maxLng, maxLat};
+    }
+
+    /**
+     * 格子中心点 [经度, 纬度]
+     */
+    public static double[] center(String hash) {
+        double[] bounds = bounds(hash);
+        return new double[]{(bounds[0] + bounds[2]) / 2, (bounds[1] + bounds[3]) / 2};
+    }
+
+    /**
+     * 同一精度下相邻的格子，dLng/dLat 为 -1、0、1；经度跨越 ±180 时回绕，超出南北极返回 null
+     */
+    public static String neighbor(String hash, int dLng, int dLat) {
+        double[] bounds = bounds(hash);
+        double latitude = (bounds[1] + bounds[3]) / 2 + dLat * (bounds[3] - bounds[1]);
+        if (latitude < -90 || latitude > 90) {
+            return null;
+        }
+        double longitude = (bounds[0] + bounds[2]) / 2 + dLng * (bounds[2] - bounds[0]);
+        longitude = ((longitude + 180) % 360 + 360) % 360 - 180;
+        return encode(longitude, latitude, hash.length());
+    }
+
+    /**
+     * 周围 8 个格子（北、东北、东、东南、南、西南、西、西北），靠近两极时不含超出范围的格子
+     */
+    public static List<String> neighbors(String hash) {
+        int[][] offsets = {{0, 1}, {1, 1}, {1, 0}, {1, -1}, {0, -1}, {-1, -1}, {-1, 0}, {-1, 1}};
+        List<String> neighbors = new ArrayList<>(offsets.length);
+        for (int[] offset : offsets) {
+            String neighbor = neighbor(hash, offset[0], offset[1]);
+            if (neighbor != null) {
+                neighbors.add(neighbor);
+            }
+        }
+        return neighbors;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.springboot002.demos.web.Util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 二维 KD 树
+ * 批量构建时按中位数切分保持平衡，之后可逐点插入（不自动再平衡，调用方可按 depth() 决定何时重建）；
+ * 支持矩形范围查询。当前维度相等时依次比较另一维度和加入顺序，坐标相同的点也能均分到两侧。
+ * 不删除节点，非线程安全，由调用方加锁。
+ */
+public class KdTree<T> {
+
+    private Node<T> root;
+    private int size;
+    // 最深节点的层数，根节点为 1
+    private int depth;
+    // 加入顺序，坐标完全相同时用于区分先后
+    private long nextSeq;
+
+    /**
+     * 按中位数递归切分构建平衡树
+     */
+    public static <T> KdTree<T> build(List<Point<T>> points) {
+        KdTree<T> tree = new KdTree<>();
+        List<Node<T>> nodes = new ArrayList<>(points.size());
+        for (Point<T> point : points) {
+            nodes.add(new Node<>(point, tree.nextSeq++));
+        }
+        tree.root = build(nodes, 0, nodes.size(), 0);
+        tree.size = nodes.size();
+        tree.depth = height(tree.root);
+        return tree;
+    }
+
+    public void insert(double x, double y, T value) {
+        Node<T> node = new Node<>(new Point<>(x, y, value), nextSeq++);
+        size++;
+        if (root == null) {
+            root = node;
+            depth = 1;
+            return;
+        }
+        Node<T> current = root;
+        int level = 0;
+        while (true) {
+            boolean left = compare(node, current, level) < 0;
+            Node<T> next = left ? current.left : current.right;
+            if (next == null) {
+                if (left) {
+                    current.left = node;
+                } else {
+                    current.right = node;
+                }
+                depth = Math.max(depth, level + 2);
+                return;
+            }
+            current = next;
+            level++;
+        }
+    }
+
+    /**
+     * 遍历落在矩形范围内（含边界）的点
+     */
+    public void search(double minX, double minY, double maxX, double maxY, Consumer<Point<T>> visitor) {
+        search(root, 0, minX, minY, maxX, maxY, visitor);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 树的层数；逐点插入不再平衡，层数可能远超 log2(size)
+     */
+    public int depth() {
+        return depth;
+    }
+
+    private static <T> Node<T> build(List<Node<T>> nodes, int from, int to, int depth) {
+        if (from >= to) {
+            return null;
+        }
+        Comparator<Node<T>> comparator = (a, b) -> compare(a, b, depth);
+        nodes.subList(from, to).sort(comparator);
+        int mid = (from + to) >>> 1;
+        Node<T> node = nodes.get(mid);
+        node.left = build(nodes, from, mid, depth + 1);
+        node.right = build(nodes, mid + 1, to, depth + 1);
+        return node;
+    }
+
+    private static int height(Node<?> node) {
+        return node == null ? 0 : 1 + Math.max(height(node.left), height(node.right));
+    }
+
+    private static <T> void search(Node<T> node, int depth, double minX, double minY, double maxX, double maxY,
+                                   Consumer<Point<T>> visitor) {
+        while (node != null) {
+            Point<T> point = node.point;
+            if (point.x >= minX && point.x <= maxX && point.y >= minY && point.y <= maxY) {
+                visitor.accept(point);
+            }
+            double value = depth % 2 == 0 ? point.x : point.y;
+            double min = depth % 2 == 0 ? minX : minY;
+            double max = depth % 2 == 0 ? maxX : maxY;
+            // 当前维度相等的点可能在任意一侧
+            boolean visitLeft = min <= value;
+            boolean visitRight = max >= value;
+            if (visitLeft && visitRight) {
+                search(node.left, depth + 1, minX, minY, maxX, maxY, visitor);
+                node = node.right;
+            } else {
+                node = visitLeft ? node.left : visitRight ? node.right : null;
+            }
+            depth++;
+        }
+    }
+
+    /**
+     * 先比较当前维度，相等时比较另一维度，再相等时按加入顺序
+     */
+    private static int compare(Node<?> a, Node<?> b, int depth) {
+        int result = depth % 2 == 0 ? Double.compare(a.point.x, b.point.x) : Double.compare(a.point.y, b.point.y);
+        if (result == 0) {
+            result = depth % 2 == 0 ? Double.compare(a.point.y, b.point.y) : Double.compare(a.point.x, b.point.x);
+        }
+        return result != 0 ? result : Long.compare(a.seq, b.seq);
+    }
+
+    /**
+     * 树中的点
+     */
+    public static final class Point<T> {
+        private final double x;
+        private final double y;
+        private final T value;
+
+        public Point(double x, double y, T value) {
+            this.x = x;
+            this.y = y;
+            this.value = value;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+
+    private static final class Node<T> {
+        private final Point<T> point;
+        private final long seq;
+        private Node<T> left;
+        private Node<T> right;
+
+        private Node(Point<T> point, long seq) {
+            this.point = point;
+            this.seq = seq;
+        }
+    }
+}
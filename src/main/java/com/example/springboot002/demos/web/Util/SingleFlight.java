@@ -0,0 +1,66 @@
+package com.example.springboot002.demos.web.Util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 并发请求合并（single-flight）
+ * 相同key的并发调用共享同一个进行中的 future，完成后即移除，不做结果缓存。
+ * 每个调用方拿到的是独立的派生 future，单个调用方取消不会影响其他调用方。
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * 执行调用，若相同key已在进行中则直接返回其 future
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> loader) {
+        calls.incrementAndGet();
+
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing.thenApply(Function.identity());
+        }
+
+        try {
+            loader.get().whenComplete((value, error) -> {
+                inFlight.remove(key, promise);
+                if (error != null) {
+                    promise.completeExceptionally(error);
+                } else {
+                    promise.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, promise);
+            promise.completeExceptionally(e);
+        }
+        return promise.thenApply(Function.identity());
+    }
+
+    /**
+     * 合并统计
+     */
+    public Map<String, Object> stats() {
+        long total = calls.get();
+        long merged = coalesced.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("calls", total);
+        stats.put("coalesced", merged);
+        stats.put("upstreamCalls", total - merged);
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+}
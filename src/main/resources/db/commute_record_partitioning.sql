@@ -0,0 +1,67 @@
+-- =====================================================================
+-- commute_record 按月范围分区迁移（PostgreSQL 11+）
+-- 在停机窗口内手工执行一次；之后由 CommutePartitionManager 按月预建分区、
+-- 汇总并删除超过保留期的分区。
+-- 分区表的主键必须包含分区键，因此主键改为 (id, record_date)。
+-- =====================================================================
+BEGIN;
+
+ALTER TABLE commute_record RENAME TO commute_record_legacy;
+ALTER TABLE commute_record_legacy RENAME CONSTRAINT commute_record_pkey TO commute_record_legacy_pkey;
+ALTER INDEX IF EXISTS idx_commute_record_analysis_date RENAME TO idx_commute_record_legacy_analysis_date;
+
+CREATE TABLE commute_record (
+    id                      VARCHAR(36)  NOT NULL,
+    work_analysis_id        VARCHAR(255) NOT NULL,
+    commute_type            VARCHAR(20),
+    distance_meters         INTEGER,
+    duration_minutes        INTEGER,
+    api_duration_minutes    INTEGER,
+    actual_duration_minutes INTEGER,
+    peak_correction_factor  NUMERIC(3, 2),
+    commute_modes           VARCHAR(200),
+    record_date             TIMESTAMP    NOT NULL,
+    is_peak_hour            BOOLEAN,
+    is_estimated            BOOLEAN,
+    reconcile_attempts      INTEGER,
+    reconcile_after         TIMESTAMP,
+    created_at              TIMESTAMP,
+    CONSTRAINT commute_record_pkey PRIMARY KEY (id, record_date)
+) PARTITION BY RANGE (record_date);
+
+CREATE INDEX idx_commute_record_analysis_date ON commute_record (work_analysis_id, record_date, id);
+
+-- 兜底分区：接收早于最早分区的补录数据，超过保留期后由定时任务汇总删除
+CREATE TABLE commute_record_default PARTITION OF commute_record DEFAULT;
+
+-- 为已有数据以及未来 3 个月建立月分区，命名 commute_record_pYYYYMM
+DO $$
+DECLARE
+    month_start DATE;
+    last_month  DATE;
+BEGIN
+    SELECT date_trunc('month', COALESCE(MIN(record_date), now()))::date
+    INTO month_start
+    FROM commute_record_legacy;
+    last_month := (date_trunc('month', now()) + INTERVAL '3 months')::date;
+
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF commute_record FOR VALUES FROM (%L) TO (%L)',
+                       'commute_record_p' || to_char(month_start, 'YYYYMM'),
+                       month_start,
+                       (month_start + INTERVAL '1 month')::date);
+        month_start := (month_start + INTERVAL '1 month')::date;
+    END LOOP;
+END $$;
+
+INSERT INTO commute_record (id, work_analysis_id, commute_type, distance_meters, duration_minutes,
+                            api_duration_minutes, actual_duration_minutes, peak_correction_factor,
+                            commute_modes, record_date, is_peak_hour, is_estimated, created_at)
+SELECT id, work_analysis_id, commute_type, distance_meters, duration_minutes,
+       api_duration_minutes, actual_duration_minutes, peak_correction_factor,
+       commute_modes, COALESCE(record_date, created_at, now()), is_peak_hour, is_estimated, created_at
+FROM commute_record_legacy;
+
+DROP TABLE commute_record_legacy;
+
+COMMIT;
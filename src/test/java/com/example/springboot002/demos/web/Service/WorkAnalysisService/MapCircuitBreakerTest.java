@@ -0,0 +1,130 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MapCircuitBreakerTest {
+
+    @Test
+    void staysClosedBelowMinimumCalls() {
+        MapCircuitBreaker breaker = breaker(60, 2);
+        for (int i = 0; i < 3; i++) {
+            breaker.onError();
+        }
+        assertTrue(breaker.isClosed());
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        MapCircuitBreaker breaker = breaker(60, 2);
+        breaker.onSuccess(0);
+        breaker.onSuccess(0);
+        breaker.onError();
+        breaker.onError();
+
+        assertFalse(breaker.isClosed());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals("OPEN", breaker.stats().get("state"));
+        assertEquals(1L, breaker.stats().get("rejected"));
+        assertEquals(1L, breaker.stats().get("openCount"));
+    }
+
+    @Test
+    void slowCallsCountAsFailures() {
+        MapCircuitBreaker breaker = breaker(60, 2);
+        long slow = TimeUnit.SECONDS.toNanos(2);
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess(slow);
+        }
+        assertFalse(breaker.isClosed());
+    }
+
+    @Test
+    void oldResultsLeaveTheWindow() {
+        MapCircuitBreaker breaker = breaker(60, 2);
+        for (int i = 0; i < 6; i++) {
+            breaker.onSuccess(0);
+        }
+        for (int i = 0; i < 3; i++) {
+            breaker.onError();
+        }
+        assertEquals(3, breaker.stats().get("windowFailures"));
+        // 窗口大小 10：再有 10 次成功后早先的失败全部移出
+        for (int i = 0; i < 10; i++) {
+            breaker.onSuccess(0);
+        }
+        assertTrue(breaker.isClosed());
+        assertEquals(0, breaker.stats().get("windowFailures"));
+    }
+
+    @Test
+    void halfOpenClosesAfterAllProbesSucceed() {
+        MapCircuitBreaker breaker = breaker(0, 2);
+        open(breaker);
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals("HALF_OPEN", breaker.stats().get("state"));
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+
+        breaker.onSuccess(0);
+        assertFalse(breaker.isClosed());
+        breaker.onSuccess(0);
+        assertTrue(breaker.isClosed());
+        assertEquals(0, breaker.stats().get("windowCalls"));
+    }
+
+    @Test
+    void halfOpenReopensOnProbeFailure() {
+        MapCircuitBreaker breaker = breaker(0, 2);
+        open(breaker);
+
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onError();
+        assertEquals("OPEN", breaker.stats().get("state"));
+        assertEquals(2L, breaker.stats().get("openCount"));
+    }
+
+    @Test
+    void releasedProbeCanBeReused() {
+        MapCircuitBreaker breaker = breaker(0, 1);
+        open(breaker);
+
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+        breaker.releasePermission();
+        assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void openStateRejectsUntilCooldownEnds() {
+        MapCircuitBreaker breaker = breaker(60, 2);
+        open(breaker);
+        for (int i = 0; i < 5; i++) {
+            assertFalse(breaker.tryAcquirePermission());
+        }
+        // 打开期间的调用结果不计入窗口
+        breaker.onSuccess(0);
+        assertEquals("OPEN", breaker.stats().get("state"));
+    }
+
+    /**
+     * 窗口 10 次、至少 4 次调用、失败率 50%、慢调用 1 秒
+     */
+    private static MapCircuitBreaker breaker(long openSeconds, int halfOpenPermits) {
+        return new MapCircuitBreaker(10, 4, 0.5, 1000, openSeconds, halfOpenPermits);
+    }
+
+    private static void open(MapCircuitBreaker breaker) {
+        for (int i = 0; i < 4; i++) {
+            breaker.onError();
+        }
+        assertEquals("OPEN", breaker.stats().get("state"));
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.example.springboot002.demos.web.Util.RedisUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MapQuotaGovernorTest {
+
+    private static final MapQuotaGovernor.Endpoint GEOCODE = MapQuotaGovernor.Endpoint.GEOCODE;
+    private static final MapQuotaGovernor.Endpoint DIRECTION = MapQuotaGovernor.Endpoint.DIRECTION;
+
+    @Test
+    void grantsBurstUpToCapacityThenRejectsWithoutWaiting() {
+        MapQuotaGovernor governor = governor(new InMemoryRedisUtil(), 0, 0);
+        assertEquals(0, governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE));
+        assertEquals(0, governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE));
+        assertTooManyRequests(() -> governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE));
+        // 限流拒绝的调用不占日配额
+        assertEquals(2L, stat(governor, "geocode", "dailyUsed"));
+        // 各接口独立计数
+        assertEquals(0, governor.acquire(DIRECTION, MapCallPriority.INTERACTIVE));
+    }
+
+    @Test
+    void queuesWithinMaxWait() {
+        MapQuotaGovernor governor = governor(new InMemoryRedisUtil(), 2000, 2000);
+        governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE);
+        governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE);
+
+        // 2 QPS：第 3 个令牌约需等待 500ms，第 4 个约 1000ms
+        long third = governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE);
+        long fourth = governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE);
+        assertTrue(third > TimeUnit.MILLISECONDS.toNanos(400) && third <= TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(fourth > third + TimeUnit.MILLISECONDS.toNanos(400));
+        assertEquals(2L, stat(governor, "geocode", "delayed"));
+    }
+
+    @Test
+    void refillsOverTime() throws InterruptedException {
+        MapQuotaGovernor governor = governor(new InMemoryRedisUtil(), 0, 0);
+        governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE);
+        governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE);
+        assertTooManyRequests(() -> governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE));
+
+        Thread.sleep(600);
+        assertEquals(0, governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE));
+    }
+
+    @Test
+    void backgroundCallsLeaveReserveForInteractive() {
+        MapQuotaGovernor governor = governor(new InMemoryRedisUtil(), 0, 0);
+        assertEquals(0, governor.acquire(GEOCODE, MapCallPriority.BACKGROUND));
+        // 桶内只剩预留的 1 个令牌，后台调用不能再用
+        assertTooManyRequests(() -> governor.acquire(GEOCODE, MapCallPriority.BACKGROUND));
+        assertEquals(0, governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE));
+    }
+
+    @Test
+    void queuedBackgroundCallsCannotLockOutInteractive() {
+        // 10 QPS，交互最多等 1 秒，后台最多等 10 秒，预留 2 个令牌
+        MapQuotaGovernor governor = new MapQuotaGovernor(new InMemoryRedisUtil(), 10, 1000, 10, 1000,
+                1000, 10000, 2, 1.0);
+        int background = 0;
+        while (true) {
+            try {
+                governor.acquire(GEOCODE, MapCallPriority.BACKGROUND);
+                background++;
+            } catch (ResponseStatusException e) {
+                assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatus());
+                break;
+            }
+            assertTrue(background < 100);
+        }
+        // 后台最多预支到交互等待上限内只剩预留的令牌：10 + 1 秒 × 10 QPS - 2
+        assertTrue(background >= 18 && background <= 19);
+
+        long maxWait = TimeUnit.SECONDS.toNanos(1);
+        assertTrue(governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE) <= maxWait);
+        assertTrue(governor.acquire(GEOCODE, MapCallPriority.INTERACTIVE) <= maxWait);
+    }
+
+    @Test
+    void backgroundDailyShareIsSmallerThanInteractiveLimit() {
+        InMemoryRedisUtil redis = new InMemoryRedisUtil();
+        MapQuotaGovernor governor = governor(redis, 0, 0);
+        // 路线规划日配额 4，后台只能用一半
+        governor.acquire(DIRECTION, MapCallPriority.BACKGROUND);
+        governor.acquire(DIRECTION, MapCallPriority.BACKGROUND);
+        assertTooManyRequests(() -> governor.acquire(DIRECTION, MapCallPriority.BACKGROUND));
+
+        governor.acquire(DIRECTION, MapCallPriority.INTERACTIVE);
+        governor.acquire(DIRECTION, MapCallPriority.INTERACTIVE);
+        assertTooManyRequests(() -> governor.acquire(DIRECTION, MapCallPriority.INTERACTIVE));
+        assertEquals(4L, stat(governor, "direction", "dailyUsed"));
+        assertEquals(2L, stat(governor, "direction", "rejectedDaily"));
+    }
+
+    @Test
+    void countsDailyUsageLocallyWhenRedisIsDown() {
+        InMemoryRedisUtil redis = new InMemoryRedisUtil();
+        redis.down = true;
+        MapQuotaGovernor governor = governor(redis, 0, 0);
+        for (int i = 0; i < 4; i++) {
+            governor.acquire(DIRECTION, MapCallPriority.INTERACTIVE);
+        }
+        assertTooManyRequests(() -> governor.acquire(DIRECTION, MapCallPriority.INTERACTIVE));
+    }
+
+    /**
+     * 地理编码 2 QPS、日配额 100；路线规划 100 QPS、日配额 4；后台预留 1 个令牌、日配额占比 50%
+     */
+    private static MapQuotaGovernor governor(RedisUtil redis, long interactiveMaxWaitMs, long backgroundMaxWaitMs) {
+        return new MapQuotaGovernor(redis, 2, 100, 100, 4,
+                interactiveMaxWaitMs, backgroundMaxWaitMs, 1, 0.5);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long stat(MapQuotaGovernor governor, String endpoint, String name) {
+        return ((Number) ((Map<String, Object>) governor.stats().get(endpoint)).get(name)).longValue();
+    }
+
+    private static void assertTooManyRequests(Runnable call) {
+        ResponseStatusException error = assertThrows(ResponseStatusException.class, call::run);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, error.getStatus());
+    }
+
+    /**
+     * 只实现日配额用到的计数操作
+     */
+    private static final class InMemoryRedisUtil extends RedisUtil {
+        private final Map<String, Long> values = new HashMap<>();
+        private boolean down;
+
+        @Override
+        public String get(String key) {
+            check();
+            Long value = values.get(key);
+            return value != null ? value.toString() : null;
+        }
+
+        @Override
+        public Long increment(String key) {
+            check();
+            return values.merge(key, 1L, Long::sum);
+        }
+
+        @Override
+        public Long decrement(String key) {
+            check();
+            return values.merge(key, -1L, Long::sum);
+        }
+
+        @Override
+        public Boolean expire(String key, long timeout, TimeUnit unit) {
+            check();
+            return values.containsKey(key);
+        }
+
+        private void check() {
+            if (down) {
+                throw new IllegalStateException("redis down");
+            }
+        }
+    }
+}
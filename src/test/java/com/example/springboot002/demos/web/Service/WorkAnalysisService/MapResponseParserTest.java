@@ -0,0 +1,96 @@
+package com.example.springboot002.demos.web.Service.WorkAnalysisService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MapResponseParserTest {
+
+    private final MapResponseParser parser = new MapResponseParser(new ObjectMapper());
+
+    @Test
+    void parsesGeocode() {
+        double[] coords = parser.parseGeocode(json("{\"status\":\"1\",\"info\":\"OK\",\"count\":\"2\",\"geocodes\":["
+                + "{\"formatted_address\":\"北京市东城区\",\"neighborhood\":{\"name\":[]},"
+                + "\"location\":\"116.397428,39.90923\"},{\"location\":\"0,0\"}]}"));
+        assertArrayEquals(new double[]{116.397428, 39.90923}, coords, 1e-9);
+    }
+
+    @Test
+    void parsesGeocodeWhenStatusComesLast() {
+        double[] coords = parser.parseGeocode(json(
+                "{\"geocodes\":[{\"location\":\"121.4737,31.2304\"}],\"status\":\"1\"}"));
+        assertArrayEquals(new double[]{121.4737, 31.2304}, coords, 1e-9);
+    }
+
+    @Test
+    void rejectsFailedOrEmptyGeocode() {
+        assertThrows(RuntimeException.class, () -> parser.parseGeocode(json(
+                "{\"status\":\"0\",\"info\":\"INVALID_USER_KEY\",\"geocodes\":[]}")));
+        assertThrows(RuntimeException.class, () -> parser.parseGeocode(json("{\"status\":\"1\",\"geocodes\":[]}")));
+        assertThrows(RuntimeException.class, () -> parser.parseGeocode(json(
+                "{\"status\":\"1\",\"geocodes\":[{\"location\":[]}]}")));
+        assertThrows(RuntimeException.class, () -> parser.parseGeocode(json(
+                "{\"status\":\"1\",\"geocodes\":[{\"location\":\"116.39\"}]}")));
+    }
+
+    @Test
+    void parsesFirstDrivingPath() {
+        int[] route = parser.parseRoute(json("{\"status\":\"1\",\"info\":\"OK\",\"route\":{\"origin\":\"a\","
+                + "\"paths\":[{\"distance\":\"12345\",\"duration\":\"1800\",\"steps\":[{\"instruction\":\"x\","
+                + "\"polyline\":\"1,2;3,4\"}]},{\"distance\":\"1\",\"duration\":\"1\"}]}}"), false);
+        assertArrayEquals(new int[]{12345, 1800}, route);
+    }
+
+    @Test
+    void parsesFirstTransit() {
+        int[] route = parser.parseRoute(json("{\"status\":\"1\",\"route\":{\"paths\":[{\"distance\":\"9\"}],"
+                + "\"transits\":[{\"segments\":[{\"bus\":{}}],\"distance\":5000,\"duration\":2400}]}}"), true);
+        assertArrayEquals(new int[]{5000, 2400}, route);
+    }
+
+    @Test
+    void reportsUpstreamErrorInfo() {
+        RuntimeException error = assertThrows(RuntimeException.class, () -> parser.parseRoute(json(
+                "{\"status\":\"0\",\"info\":\"DAILY_QUERY_OVER_LIMIT\"}"), false));
+        assertTrue(error.getMessage().contains("DAILY_QUERY_OVER_LIMIT"));
+    }
+
+    @Test
+    void rejectsRouteWithoutPaths() {
+        RuntimeException error = assertThrows(RuntimeException.class, () -> parser.parseRoute(json(
+                "{\"status\":\"1\",\"route\":{\"paths\":[]}}"), false));
+        assertTrue(error.getMessage().contains("未找到可用路线"));
+        assertThrows(RuntimeException.class, () -> parser.parseRoute(json("{\"status\":\"1\"}"), false));
+    }
+
+    @Test
+    void rejectsMalformedPayloads() {
+        assertThrows(RuntimeException.class, () -> parser.parseRoute(json(""), false));
+        assertThrows(RuntimeException.class, () -> parser.parseRoute(json("[1,2]"), false));
+        assertThrows(RuntimeException.class, () -> parser.parseRoute(json(
+                "{\"status\":\"1\",\"route\":{\"paths\":[{\"distance\":"), false));
+        assertThrows(RuntimeException.class, () -> parser.parseGeocode(json("<html>502 Bad Gateway</html>")));
+    }
+
+    @Test
+    void stopsReadingOnceRequiredFieldsAreFound() {
+        // 所需字段之后的内容不再读取，尾部截断不影响结果
+        int[] route = parser.parseRoute(json("{\"status\":\"1\",\"route\":{\"paths\":[{\"distance\":\"10\","
+                + "\"duration\":\"20\"}]},\"trailing\":[1,2,"), false);
+        assertEquals(10, route[0]);
+        assertEquals(20, route[1]);
+    }
+
+    private static InputStream json(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.springboot002.demos.web.Util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DurationSketchTest {
+
+    @Test
+    void emptySketchHasNoQuantile() {
+        DurationSketch sketch = new DurationSketch();
+        assertEquals(0, sketch.getTotalCount());
+        assertNull(sketch.quantile(0.5));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        DurationSketch sketch = new DurationSketch();
+        for (int minutes = 1; minutes <= 100; minutes++) {
+            sketch.add(minutes);
+        }
+        assertEquals(100, sketch.getTotalCount());
+        assertEquals(1, (int) sketch.quantile(0));
+        assertEquals(50, (int) sketch.quantile(0.5));
+        assertEquals(90, (int) sketch.quantile(0.9));
+        assertEquals(100, (int) sketch.quantile(1));
+    }
+
+    @Test
+    void largeValuesStayWithinRelativeError() {
+        Random random = new Random(42);
+        int[] values = new int[10000];
+        DurationSketch sketch = new DurationSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 100 + random.nextInt(5000);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : new double[]{0.1, 0.5, 0.9, 0.99}) {
+            int exact = values[(int) Math.ceil(q * values.length) - 1];
+            int estimate = sketch.quantile(q);
+            assertTrue(Math.abs(estimate - exact) <= exact * 0.02,
+                    "q=" + q + " exact=" + exact + " estimate=" + estimate);
+        }
+    }
+
+    @Test
+    void quantileIsClampedToObservedRange() {
+        DurationSketch sketch = new DurationSketch();
+        sketch.add(1000);
+        assertEquals(1000, (int) sketch.quantile(0.5));
+
+        sketch.add(-5);
+        sketch.add(1_000_000);
+        // 超出范围的值截断到 0 和 65535，大值按所在桶估计
+        assertEquals(0, (int) sketch.quantile(0));
+        int top = sketch.quantile(1);
+        assertTrue(top <= 65535 && top >= 65535 * 0.98, "top=" + top);
+    }
+
+    @Test
+    void mergeEqualsCombinedSketch() {
+        DurationSketch left = new DurationSketch();
+        DurationSketch right = new DurationSketch();
+        DurationSketch combined = new DurationSketch();
+        for (int i = 0; i < 500; i++) {
+            int value = (i * 37) % 400;
+            (i % 2 == 0 ? left : right).add(value);
+            combined.add(value);
+        }
+
+        left.merge(right);
+        left.merge(new DurationSketch());
+        assertEquals(combined.getTotalCount(), left.getTotalCount());
+        for (double q = 0; q <= 1; q += 0.05) {
+            assertEquals(combined.quantile(q), left.quantile(q));
+        }
+    }
+
+    @Test
+    void serializationRoundTrips() {
+        DurationSketch sketch = new DurationSketch();
+        sketch.add(5, 3);
+        sketch.add(45);
+        sketch.add(130, 2);
+        sketch.add(4000);
+
+        DurationSketch restored = DurationSketch.fromBytes(sketch.toBytes());
+        assertEquals(sketch.getTotalCount(), restored.getTotalCount());
+        for (double q = 0; q <= 1; q += 0.1) {
+            assertEquals(sketch.quantile(q), restored.quantile(q));
+        }
+
+        assertEquals(0, DurationSketch.fromBytes(new DurationSketch().toBytes()).getTotalCount());
+        assertEquals(0, DurationSketch.fromBytes(null).getTotalCount());
+        assertThrows(IllegalArgumentException.class, () -> DurationSketch.fromBytes(new byte[]{2, 0}));
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.springboot002.demos.web.Util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoHashTest {
+
+    @Test
+    void encodesKnownPoints() {
+        assertEquals("ezs42", GeoHash.encode(-5.6, 42.6, 5));
+        assertEquals("u4pruydqqvj", GeoHash.encode(10.40744, 57.64911, 11));
+    }
+
+    @Test
+    void shorterPrecisionIsPrefix() {
+        String full = GeoHash.encode(116.3975, 39.9087, GeoHash.MAX_PRECISION);
+        for (int precision = 1; precision < GeoHash.MAX_PRECISION; precision++) {
+            assertEquals(full.substring(0, precision), GeoHash.encode(116.3975, 39.9087, precision));
+        }
+    }
+
+    @Test
+    void boundsContainEncodedPoint() {
+        double[] bounds = GeoHash.bounds(GeoHash.encode(121.4737, 31.2304, 7));
+        assertTrue(bounds[0] <= 121.4737 && 121.4737 < bounds[2]);
+        assertTrue(bounds[1] <= 31.2304 && 31.2304 < bounds[3]);
+
+        double[] center = GeoHash.center("ezs42");
+        assertEquals("ezs42", GeoHash.encode(center[0], center[1], 5));
+    }
+
+    @Test
+    void rejectsInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.encode(0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.encode(0, 0, GeoHash.MAX_PRECISION + 1));
+        assertThrows(IllegalArgumentException.class, () -> GeoHash.bounds("ezs4a"));
+    }
+
+    @Test
+    void neighborsOfKnownCell() {
+        assertEquals(Arrays.asList("dqcjw", "dqcjx", "dqcjr", "dqcjp", "dqcjn", "dqcjj", "dqcjm", "dqcjt"),
+                GeoHash.neighbors("dqcjq"));
+    }
+
+    @Test
+    void neighborsShareEdges() {
+        String hash = GeoHash.encode(116.3975, 39.9087, 6);
+        double[] bounds = GeoHash.bounds(hash);
+
+        double[] north = GeoHash.bounds(GeoHash.neighbor(hash, 0, 1));
+        assertEquals(bounds[3], north[1], 1e-9);
+        assertArrayEquals(new double[]{bounds[0], bounds[2]}, new double[]{north[0], north[2]}, 1e-9);
+
+        double[] east = GeoHash.bounds(GeoHash.neighbor(hash, 1, 0));
+        assertEquals(bounds[2], east[0], 1e-9);
+        assertArrayEquals(new double[]{bounds[1], bounds[3]}, new double[]{east[1], east[3]}, 1e-9);
+
+        assertEquals(hash, GeoHash.neighbor(GeoHash.neighbor(hash, -1, -1), 1, 1));
+    }
+
+    @Test
+    void neighborsWrapLongitudeAndStopAtPoles() {
+        String east = GeoHash.encode(179.99, 0.01, 4);
+        String west = GeoHash.encode(-179.99, 0.01, 4);
+        assertEquals(west, GeoHash.neighbor(east, 1, 0));
+        assertEquals(east, GeoHash.neighbor(west, -1, 0));
+
+        String polar = GeoHash.encode(0.01, 89.99, 3);
+        assertNull(GeoHash.neighbor(polar, 0, 1));
+        List<String> neighbors = GeoHash.neighbors(polar);
+        assertEquals(5, neighbors.size());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.springboot002.demos.web.Util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KdTreeTest {
+
+    @Test
+    void rangeSearchMatchesLinearScan() {
+        Random random = new Random(7);
+        List<KdTree.Point<Integer>> points = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            points.add(new KdTree.Point<>(random.nextInt(100), random.nextInt(100), i));
+        }
+        KdTree<Integer> built = KdTree.build(points);
+        KdTree<Integer> inserted = new KdTree<>();
+        for (KdTree.Point<Integer> point : points) {
+            inserted.insert(point.getX(), point.getY(), point.getValue());
+        }
+
+        for (int i = 0; i < 200; i++) {
+            double minX = random.nextInt(100);
+            double minY = random.nextInt(100);
+            double maxX = minX + random.nextInt(20);
+            double maxY = minY + random.nextInt(20);
+            Set<Integer> expected = new HashSet<>();
+            for (KdTree.Point<Integer> point : points) {
+                if (point.getX() >= minX && point.getX() <= maxX && point.getY() >= minY && point.getY() <= maxY) {
+                    expected.add(point.getValue());
+                }
+            }
+            assertEquals(expected, search(built, minX, minY, maxX, maxY));
+            assertEquals(expected, search(inserted, minX, minY, maxX, maxY));
+        }
+    }
+
+    @Test
+    void nearestWithinRadiusFindsClosestPoint() {
+        KdTree<String> tree = new KdTree<>();
+        tree.insert(116.4000, 39.9000, "a");
+        tree.insert(116.4003, 39.9001, "b");
+        tree.insert(116.4100, 39.9100, "far");
+
+        double x = 116.4002;
+        double y = 39.9001;
+        double radius = 0.0005;
+        String[] best = new String[1];
+        double[] bestDistance = {Double.MAX_VALUE};
+        tree.search(x - radius, y - radius, x + radius, y + radius, point -> {
+            double distance = Math.hypot(point.getX() - x, point.getY() - y);
+            if (distance < bestDistance[0]) {
+                bestDistance[0] = distance;
+                best[0] = point.getValue();
+            }
+        });
+        assertEquals("b", best[0]);
+    }
+
+    @Test
+    void duplicateCoordinatesAreAllReturned() {
+        List<KdTree.Point<Integer>> points = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            points.add(new KdTree.Point<>(1, 1, i));
+        }
+        KdTree<Integer> tree = KdTree.build(points);
+        tree.insert(1, 1, 10);
+        assertEquals(11, search(tree, 1, 1, 1, 1).size());
+    }
+
+    @Test
+    void identicalPointsBuildBalancedTree() {
+        List<KdTree.Point<Integer>> points = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            points.add(new KdTree.Point<>(116.4, 39.9, i));
+        }
+        // 同一经度、不同纬度的点也不应退化
+        for (int i = 0; i < 5000; i++) {
+            points.add(new KdTree.Point<>(116.4, 39.0 + i * 1e-4, 5000 + i));
+        }
+        KdTree<Integer> tree = KdTree.build(points);
+        assertEquals(14, tree.depth());
+        assertEquals(5000, search(tree, 116.4, 39.9, 116.4, 39.9).size());
+        assertEquals(10000, search(tree, 116.4, 38.9, 116.4, 40.0).size());
+    }
+
+    @Test
+    void depthTracksBalance() {
+        List<KdTree.Point<Integer>> points = new ArrayList<>();
+        for (int i = 0; i < 1023; i++) {
+            points.add(new KdTree.Point<>(i, 1023 - i, i));
+        }
+        assertEquals(10, KdTree.build(points).depth());
+
+        // 单调插入退化为链，重建后恢复平衡
+        KdTree<Integer> skewed = new KdTree<>();
+        for (int i = 0; i < 100; i++) {
+            skewed.insert(i, i, i);
+        }
+        assertEquals(100, skewed.size());
+        assertEquals(100, skewed.depth());
+        assertTrue(KdTree.build(points.subList(0, 100)).depth() <= 7);
+    }
+
+    private static <T> Set<T> search(KdTree<T> tree, double minX, double minY, double maxX, double maxY) {
+        Set<T> found = new HashSet<>();
+        tree.search(minX, minY, maxX, maxY, point -> found.add(point.getValue()));
+        return found;
+    }
+}